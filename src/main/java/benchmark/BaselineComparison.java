@@ -0,0 +1,285 @@
+package benchmark;
+
+import benchmark.BaselineStore.Baseline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对比两个依赖版本在同一机器配置下的基线，逐个基准测试结果比较以下指标：
+ * <ul>
+ *     <li>吞吐量：越高越好，用每轮的吞吐量计算均值差的 95% 置信区间（Welch t 检验），
+ *     下降超过阈值且置信区间上界小于 0 时判为回退；任意一方只有一轮时只按阈值判断</li>
+ *     <li>p99 耗时、每个操作的分配字节数以及自定义指标（文件大小、chunk 数、GC 次数等）：越低越好，
+ *     只有一个值，没有置信区间，上升超过阈值时判为回退</li>
+ * </ul>
+ * 结果按 (基准测试类, 结果名称) 匹配，只出现在一方的结果单独列出。
+ * <p>
+ * 命令行用法：BaselineComparison &lt;基线版本&gt; [当前版本] [阈值百分比，默认 5]，
+ * 机器配置为当前机器（或 -Dbaseline.profile），版本为基线目录名（SNAPSHOT 版本包含 jar 哈希），
+ * 当前版本默认为当前 classpath 中的 tsfile 的基线版本，
+ * 报告写入 &lt;基线目录&gt;/&lt;机器配置 ID&gt;/compare-&lt;基线版本&gt;-vs-&lt;当前版本&gt;.md 和 .html，存在回退时退出码为 1。
+ */
+public class BaselineComparison {
+
+    public static final String THROUGHPUT = "throughput (ops/s)";
+    public static final String P99 = "p99 (ms)";
+    public static final String ALLOCATION = "alloc (B/op)";
+
+    // 自由度 1~30 的 t 分布 97.5% 分位数
+    private static final double[] T_975 = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+    private final double thresholdPercent;
+
+    /**
+     * @param thresholdPercent 判为回退的变化幅度（百分比），如 5 表示变差超过 5%
+     */
+    public BaselineComparison(double thresholdPercent) {
+        if (!(thresholdPercent >= 0)) {
+            throw new IllegalArgumentException("thresholdPercent must not be negative, but was " + thresholdPercent);
+        }
+        this.thresholdPercent = thresholdPercent;
+    }
+
+    /**
+     * 对比基线和当前结果
+     */
+    public ComparisonReport compare(List<Baseline> baselines, List<Baseline> currents) {
+        Map<String, BenchmarkResult> baselineResults = index(baselines);
+        Map<String, BenchmarkResult> currentResults = index(currents);
+        List<MetricChange> changes = new ArrayList<>();
+        List<String> unmatched = new ArrayList<>();
+        for (Map.Entry<String, BenchmarkResult> entry : baselineResults.entrySet()) {
+            BenchmarkResult current = currentResults.get(entry.getKey());
+            if (current == null) {
+                unmatched.add(entry.getKey() + "（仅基线）");
+                continue;
+            }
+            compare(entry.getKey(), entry.getValue(), current, changes);
+        }
+        for (String key : currentResults.keySet()) {
+            if (!baselineResults.containsKey(key)) {
+                unmatched.add(key + "（仅当前）");
+            }
+        }
+        return new ComparisonReport(environmentOf(baselines), environmentOf(currents), thresholdPercent,
+                changes, unmatched);
+    }
+
+    private void compare(String key, BenchmarkResult baseline, BenchmarkResult current, List<MetricChange> changes) {
+        double[] baselineSamples = throughputs(baseline);
+        double[] currentSamples = throughputs(current);
+        double baselineMean = mean(baselineSamples);
+        double currentMean = mean(currentSamples);
+        double ciLow = Double.NaN;
+        double ciHigh = Double.NaN;
+        if (baselineSamples.length > 1 && currentSamples.length > 1 && baselineMean > 0) {
+            double baselineVar = variance(baselineSamples, baselineMean) / baselineSamples.length;
+            double currentVar = variance(currentSamples, currentMean) / currentSamples.length;
+            double se = Math.sqrt(baselineVar + currentVar);
+            // Welch-Satterthwaite 自由度
+            double df = se == 0 ? Double.POSITIVE_INFINITY : Math.pow(se, 4)
+                    / (baselineVar * baselineVar / (baselineSamples.length - 1)
+                    + currentVar * currentVar / (currentSamples.length - 1));
+            double margin = tQuantile(df) * se;
+            ciLow = (currentMean - baselineMean - margin) / baselineMean * 100;
+            ciHigh = (currentMean - baselineMean + margin) / baselineMean * 100;
+        }
+        changes.add(change(key, THROUGHPUT, baselineMean, currentMean, true, ciLow, ciHigh));
+        changes.add(change(key, P99, baseline.percentileNanos(99) / 1e6, current.percentileNanos(99) / 1e6,
+                false, Double.NaN, Double.NaN));
+        changes.add(change(key, ALLOCATION, baseline.allocatedBytesPerOperation(),
+                current.allocatedBytesPerOperation(), false, Double.NaN, Double.NaN));
+        for (Map.Entry<String, Double> metric : baseline.getMetrics().entrySet()) {
+            Double currentValue = current.getMetrics().get(metric.getKey());
+            if (currentValue != null) {
+                changes.add(change(key, metric.getKey(), metric.getValue(), currentValue, false,
+                        Double.NaN, Double.NaN));
+            }
+        }
+    }
+
+    private MetricChange change(String key, String metric, double baselineValue, double currentValue,
+                                boolean higherIsBetter, double ciLow, double ciHigh) {
+        double changePercent;
+        if (baselineValue == 0) {
+            changePercent = currentValue == 0 ? 0 : Math.copySign(Double.POSITIVE_INFINITY, currentValue);
+        } else {
+            changePercent = (currentValue - baselineValue) / Math.abs(baselineValue) * 100;
+        }
+        // 统一换算为“变差的幅度”，正数表示变差
+        double worse = higherIsBetter ? -changePercent : changePercent;
+        boolean significantlyWorse = Double.isNaN(ciLow) || (higherIsBetter ? ciHigh < 0 : ciLow > 0);
+        boolean significantlyBetter = Double.isNaN(ciLow) || (higherIsBetter ? ciLow > 0 : ciHigh < 0);
+        MetricChange.Verdict verdict = worse > thresholdPercent && significantlyWorse ? MetricChange.Verdict.REGRESSION
+                : -worse > thresholdPercent && significantlyBetter ? MetricChange.Verdict.IMPROVEMENT
+                : MetricChange.Verdict.UNCHANGED;
+        return new MetricChange(key, metric, baselineValue, currentValue, changePercent, ciLow, ciHigh, verdict);
+    }
+
+    private static Map<String, BenchmarkResult> index(List<Baseline> baselines) {
+        Map<String, BenchmarkResult> results = new LinkedHashMap<>();
+        for (Baseline baseline : baselines) {
+            for (BenchmarkResult result : baseline.getResults()) {
+                results.put(baseline.getBenchmark() + " / " + result.getName(), result);
+            }
+        }
+        return results;
+    }
+
+    private static BenchmarkEnvironment environmentOf(List<Baseline> baselines) {
+        return baselines.isEmpty() ? null : baselines.get(0).getEnvironment();
+    }
+
+    private static double[] throughputs(BenchmarkResult result) {
+        long[] nanos = result.getIterationNanos();
+        double[] throughputs = new double[nanos.length];
+        for (int i = 0; i < nanos.length; i++) {
+            throughputs[i] = result.getOperationsPerIteration() / (nanos[i] / 1e9);
+        }
+        return throughputs;
+    }
+
+    private static double mean(double[] samples) {
+        double total = 0;
+        for (double sample : samples) {
+            total += sample;
+        }
+        return total / samples.length;
+    }
+
+    private static double variance(double[] samples, double mean) {
+        double total = 0;
+        for (double sample : samples) {
+            total += (sample - mean) * (sample - mean);
+        }
+        return total / (samples.length - 1);
+    }
+
+    /**
+     * t 分布的 97.5% 分位数，非整数自由度向下取整（偏保守），30 以上按 40/60/120/正态近似
+     */
+    static double tQuantile(double df) {
+        if (df < 1) {
+            return T_975[0];
+        }
+        if (df < 31) {
+            return T_975[(int) df - 1];
+        }
+        return df < 40 ? 2.042 : df < 60 ? 2.021 : df < 120 ? 2.000 : df < 1000 ? 1.980 : 1.960;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: BaselineComparison <baseline version> [current version] [threshold %]");
+            return;
+        }
+        BenchmarkEnvironment environment = BenchmarkEnvironment.current();
+        String baselineVersion = args[0];
+        String currentVersion = args.length > 1 ? args[1] : environment.getBaselineVersion();
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5;
+
+        File directory = BaselineStore.defaultDirectory();
+        BaselineStore store = new BaselineStore(directory);
+        String profileId = environment.getProfileId();
+        ComparisonReport report = new BaselineComparison(threshold).compare(
+                store.load(profileId, baselineVersion), store.load(profileId, currentVersion));
+
+        File profileDir = new File(directory, profileId.replaceAll("[^A-Za-z0-9._-]", "_"));
+        String name = ("compare-" + baselineVersion + "-vs-" + currentVersion).replaceAll("[^A-Za-z0-9._-]", "_");
+        String markdown = report.toMarkdown();
+        Files.write(new File(profileDir, name + ".md").toPath(), markdown.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(profileDir, name + ".html").toPath(), report.toHtml().getBytes(StandardCharsets.UTF_8));
+        System.out.println(markdown);
+        if (report.hasRegression()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 一个指标的变化
+     */
+    public static class MetricChange {
+
+        public enum Verdict {
+            REGRESSION, IMPROVEMENT, UNCHANGED
+        }
+
+        private final String result;
+        private final String metric;
+        private final double baselineValue;
+        private final double currentValue;
+        private final double changePercent;
+        private final double ciLowPercent;
+        private final double ciHighPercent;
+        private final Verdict verdict;
+
+        MetricChange(String result, String metric, double baselineValue, double currentValue, double changePercent,
+                     double ciLowPercent, double ciHighPercent, Verdict verdict) {
+            this.result = result;
+            this.metric = metric;
+            this.baselineValue = baselineValue;
+            this.currentValue = currentValue;
+            this.changePercent = changePercent;
+            this.ciLowPercent = ciLowPercent;
+            this.ciHighPercent = ciHighPercent;
+            this.verdict = verdict;
+        }
+
+        /**
+         * 基准测试类 / 结果名称
+         */
+        public String getResult() {
+            return result;
+        }
+
+        public String getMetric() {
+            return metric;
+        }
+
+        public double getBaselineValue() {
+            return baselineValue;
+        }
+
+        public double getCurrentValue() {
+            return currentValue;
+        }
+
+        /**
+         * 相对基线的变化百分比，基线为 0 时为 0 或正负无穷
+         */
+        public double getChangePercent() {
+            return changePercent;
+        }
+
+        /**
+         * 变化百分比的 95% 置信区间下界，没有置信区间时为 NaN
+         */
+        public double getCiLowPercent() {
+            return ciLowPercent;
+        }
+
+        public double getCiHighPercent() {
+            return ciHighPercent;
+        }
+
+        public Verdict getVerdict() {
+            return verdict;
+        }
+
+        @Override
+        public String toString() {
+            return result + " " + metric + ": " + baselineValue + " -> " + currentValue
+                    + String.format(" (%+.1f%%) %s", changePercent, verdict);
+        }
+    }
+}
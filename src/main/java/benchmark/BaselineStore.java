@@ -0,0 +1,240 @@
+package benchmark;
+
+import utils.JsonReader;
+import utils.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试结果的基线存储。每个基准测试类的一次运行保存为一个 JSON 文件：
+ * &lt;目录&gt;/&lt;机器配置 ID&gt;/&lt;基线版本&gt;/&lt;基准测试类名&gt;.json，同一基线版本再次运行时覆盖。
+ * 基线版本见 {@link BenchmarkEnvironment#getBaselineVersion()}，SNAPSHOT 版本的不同构建保存在不同目录。
+ * 文件中包含运行环境（见 {@link BenchmarkEnvironment}）和每个结果的每轮耗时、每轮操作数、分配字节数和自定义指标，
+ * 以及便于阅读的吞吐量、p99 和每个操作的分配字节数。
+ * <p>
+ * 运行基准测试时加上 -Dbaseline=true，BenchmarkRunner 产生的结果会在 JVM 退出时按调用它的基准测试类分别保存，
+ * 因此 main 方法中在 run 之后添加的自定义指标（如文件大小）也会被保存。目录为 -Dbaseline.dir，默认 benchmark-baselines。
+ * 对比见 {@link BaselineComparison}。
+ */
+public class BaselineStore {
+
+    public static final String ENABLED_PROPERTY = "baseline";
+    public static final String DIRECTORY_PROPERTY = "baseline.dir";
+    public static final String DEFAULT_DIRECTORY = "benchmark-baselines";
+    private static final String SUFFIX = ".json";
+
+    private static final Map<String, List<BenchmarkResult>> RECORDED = new LinkedHashMap<>();
+    private static boolean hookInstalled = false;
+
+    private final File directory;
+
+    public BaselineStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 是否通过 -Dbaseline=true 开启了保存
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * 目录，由 -Dbaseline.dir 指定
+     */
+    public static File defaultDirectory() {
+        return new File(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY));
+    }
+
+    /**
+     * 记录一个结果，在 JVM 退出时保存到默认目录
+     *
+     * @param benchmark 基准测试名称，通常为基准测试类的简单类名
+     * @param result    结果，保存时才读取其中的指标
+     */
+    static synchronized void recordOnExit(String benchmark, BenchmarkResult result) {
+        RECORDED.computeIfAbsent(benchmark, k -> new ArrayList<>()).add(result);
+        if (!hookInstalled) {
+            hookInstalled = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(BaselineStore::saveRecorded, "baseline-store"));
+        }
+    }
+
+    private static synchronized void saveRecorded() {
+        BaselineStore store = new BaselineStore(defaultDirectory());
+        BenchmarkEnvironment environment = BenchmarkEnvironment.current();
+        for (Map.Entry<String, List<BenchmarkResult>> entry : RECORDED.entrySet()) {
+            try {
+                File file = store.save(environment, entry.getKey(), entry.getValue());
+                System.out.println("Saved baseline " + file);
+            } catch (IOException e) {
+                System.err.println("Failed to save baseline of " + entry.getKey() + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * 保存一次运行的结果，返回写入的文件
+     */
+    public File save(BenchmarkEnvironment environment, String benchmark, List<BenchmarkResult> results)
+            throws IOException {
+        File dir = new File(new File(directory, safeName(environment.getProfileId())),
+                safeName(environment.getBaselineVersion()));
+        Files.createDirectories(dir.toPath());
+        File file = new File(dir, safeName(benchmark) + SUFFIX);
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject()
+                    .name("benchmark").value(benchmark)
+                    .name("timestamp").value(Instant.now().toString())
+                    .name("command").value(System.getProperty("sun.java.command"))
+                    .name("environment");
+            environment.writeJson(json);
+            json.name("results").beginArray();
+            for (BenchmarkResult result : results) {
+                writeResult(json, result);
+            }
+            json.endArray().endObject();
+            writer.write('\n');
+        }
+        return file;
+    }
+
+    /**
+     * 读取某个机器配置下某个基线版本的所有基线，按基准测试名称排序
+     */
+    public List<Baseline> load(String profileId, String baselineVersion) throws IOException {
+        File dir = new File(new File(directory, safeName(profileId)), safeName(baselineVersion));
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            throw new IllegalArgumentException("No baseline for version " + baselineVersion
+                    + " on profile " + profileId + " in " + directory + ", saved versions: " + versions(profileId));
+        }
+        Arrays.sort(files);
+        List<Baseline> baselines = new ArrayList<>(files.length);
+        for (File file : files) {
+            baselines.add(read(file));
+        }
+        return baselines;
+    }
+
+    /**
+     * 某个机器配置下已保存的基线版本（目录名）
+     */
+    public List<String> versions(String profileId) {
+        File[] dirs = new File(directory, safeName(profileId)).listFiles(File::isDirectory);
+        if (dirs == null) {
+            return Collections.emptyList();
+        }
+        List<String> versions = new ArrayList<>();
+        for (File dir : dirs) {
+            versions.add(dir.getName());
+        }
+        Collections.sort(versions);
+        return versions;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Baseline read(File file) throws IOException {
+        Map<String, Object> json;
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            json = (Map<String, Object>) JsonReader.parse(reader);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            throw new IOException("Invalid baseline file " + file, e);
+        }
+        List<BenchmarkResult> results = new ArrayList<>();
+        for (Object item : (List<Object>) json.get("results")) {
+            Map<String, Object> result = (Map<String, Object>) item;
+            List<Object> nanos = (List<Object>) result.get("iterationNanos");
+            long[] iterationNanos = new long[nanos.size()];
+            for (int i = 0; i < iterationNanos.length; i++) {
+                iterationNanos[i] = ((Number) nanos.get(i)).longValue();
+            }
+            BenchmarkResult benchmarkResult = new BenchmarkResult((String) result.get("name"), iterationNanos,
+                    ((Number) result.get("operationsPerIteration")).longValue(),
+                    ((Number) result.get("allocatedBytes")).longValue());
+            Map<String, Object> metrics = (Map<String, Object>) result.get("metrics");
+            for (Map.Entry<String, Object> metric : metrics.entrySet()) {
+                // NaN 和 Infinity 保存为 null
+                benchmarkResult.addMetric(metric.getKey(),
+                        metric.getValue() == null ? Double.NaN : ((Number) metric.getValue()).doubleValue());
+            }
+            results.add(benchmarkResult);
+        }
+        return new Baseline((String) json.get("benchmark"), (String) json.get("timestamp"),
+                BenchmarkEnvironment.fromJson((Map<String, Object>) json.get("environment")), results);
+    }
+
+    private static void writeResult(JsonWriter json, BenchmarkResult result) throws IOException {
+        json.beginObject()
+                .name("name").value(result.getName())
+                .name("operationsPerIteration").value(result.getOperationsPerIteration())
+                .name("allocatedBytes").value(result.getAllocatedBytes())
+                .name("iterationNanos").beginArray();
+        for (long nanos : result.getIterationNanos()) {
+            json.value(nanos);
+        }
+        json.endArray()
+                .name("throughput").value(result.throughput())
+                .name("p99Ms").value(result.percentileNanos(99) / 1e6)
+                .name("allocatedBytesPerOperation").value(result.allocatedBytesPerOperation())
+                .name("metrics").beginObject();
+        for (Map.Entry<String, Double> metric : result.getMetrics().entrySet()) {
+            json.name(metric.getKey()).value(metric.getValue());
+        }
+        json.endObject().endObject();
+    }
+
+    private static String safeName(String name) {
+        return name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * 一个基准测试类的一次运行
+     */
+    public static class Baseline {
+
+        private final String benchmark;
+        private final String timestamp;
+        private final BenchmarkEnvironment environment;
+        private final List<BenchmarkResult> results;
+
+        Baseline(String benchmark, String timestamp, BenchmarkEnvironment environment, List<BenchmarkResult> results) {
+            this.benchmark = benchmark;
+            this.timestamp = timestamp;
+            this.environment = environment;
+            this.results = Collections.unmodifiableList(results);
+        }
+
+        public String getBenchmark() {
+            return benchmark;
+        }
+
+        /**
+         * 保存时间，ISO-8601 格式
+         */
+        public String getTimestamp() {
+            return timestamp;
+        }
+
+        public BenchmarkEnvironment getEnvironment() {
+            return environment;
+        }
+
+        public List<BenchmarkResult> getResults() {
+            return results;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package benchmark;
+
+import org.apache.tsfile.write.record.Tablet;
+import utils.JsonWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 基准测试运行环境：被测的 tsfile 依赖版本和机器配置。基线按 (机器配置 ID, 基线版本) 分目录保存，见 {@link BaselineStore}。
+ * <p>
+ * 依赖版本取自 tsfile jar 中的 pom.properties，同时记录 jar 文件 SHA-256 的前 12 位。
+ * 基线版本默认为依赖版本；SNAPSHOT 版本的不同构建版本号相同，基线版本为依赖版本加 jar 哈希（如 2.2.0-SNAPSHOT-1a2b3c4d5e6f），
+ * 避免新构建的结果覆盖要对比的旧基线。基线版本可以用 -Dbaseline.version 指定，此时依赖版本也记为该值。
+ * 机器配置 ID 由操作系统、CPU 架构、CPU 核数和 Java 主版本组成，如 linux-amd64-16cpu-java17，可以用 -Dbaseline.profile 覆盖。
+ */
+public class BenchmarkEnvironment {
+
+    public static final String VERSION_PROPERTY = "baseline.version";
+    public static final String PROFILE_PROPERTY = "baseline.profile";
+    private static final String POM_PROPERTIES = "META-INF/maven/org.apache.tsfile/tsfile/pom.properties";
+
+    private final String dependencyVersion;
+    private final String dependencyHash;
+    private final String baselineVersion;
+    private final String profileId;
+    private final String os;
+    private final String arch;
+    private final int cpus;
+    private final String cpuModel;
+    private final long maxHeapMb;
+    private final String javaVersion;
+
+    BenchmarkEnvironment(String dependencyVersion, String dependencyHash, String baselineVersion, String profileId,
+                         String os, String arch, int cpus, String cpuModel, long maxHeapMb, String javaVersion) {
+        this.dependencyVersion = dependencyVersion;
+        this.dependencyHash = dependencyHash;
+        this.baselineVersion = baselineVersion;
+        this.profileId = profileId;
+        this.os = os;
+        this.arch = arch;
+        this.cpus = cpus;
+        this.cpuModel = cpuModel;
+        this.maxHeapMb = maxHeapMb;
+        this.javaVersion = javaVersion;
+    }
+
+    /**
+     * 当前 JVM 的运行环境
+     */
+    public static BenchmarkEnvironment current() {
+        String os = System.getProperty("os.name", "unknown").toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+        String arch = System.getProperty("os.arch", "unknown");
+        int cpus = Runtime.getRuntime().availableProcessors();
+        String profileId = System.getProperty(PROFILE_PROPERTY,
+                os + "-" + arch + "-" + cpus + "cpu-java" + Runtime.version().feature());
+        String dependencyHash = dependencyHash();
+        String dependencyVersion = System.getProperty(VERSION_PROPERTY);
+        String baselineVersion = dependencyVersion;
+        if (dependencyVersion == null) {
+            dependencyVersion = dependencyVersion();
+            baselineVersion = dependencyVersion.endsWith("-SNAPSHOT") && dependencyHash != null
+                    ? dependencyVersion + "-" + dependencyHash : dependencyVersion;
+        }
+        return new BenchmarkEnvironment(dependencyVersion, dependencyHash, baselineVersion, profileId, os, arch, cpus,
+                cpuModel(), Runtime.getRuntime().maxMemory() >> 20,
+                System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+    }
+
+    static BenchmarkEnvironment fromJson(Map<String, Object> json) {
+        String dependencyVersion = (String) json.get("dependencyVersion");
+        String baselineVersion = (String) json.get("baselineVersion");
+        return new BenchmarkEnvironment(dependencyVersion, (String) json.get("dependencyHash"),
+                baselineVersion == null ? dependencyVersion : baselineVersion,
+                (String) json.get("profile"), (String) json.get("os"), (String) json.get("arch"),
+                ((Number) json.get("cpus")).intValue(), (String) json.get("cpuModel"),
+                ((Number) json.get("maxHeapMb")).longValue(), (String) json.get("java"));
+    }
+
+    void writeJson(JsonWriter json) throws IOException {
+        json.beginObject()
+                .name("dependencyVersion").value(dependencyVersion)
+                .name("dependencyHash").value(dependencyHash)
+                .name("baselineVersion").value(baselineVersion)
+                .name("profile").value(profileId)
+                .name("os").value(os)
+                .name("arch").value(arch)
+                .name("cpus").value(cpus)
+                .name("cpuModel").value(cpuModel)
+                .name("maxHeapMb").value(maxHeapMb)
+                .name("java").value(javaVersion)
+                .endObject();
+    }
+
+    public String getDependencyVersion() {
+        return dependencyVersion;
+    }
+
+    /**
+     * tsfile jar 的 SHA-256 前 12 位，依赖不是 jar 文件时为 null
+     */
+    public String getDependencyHash() {
+        return dependencyHash;
+    }
+
+    /**
+     * 保存基线的版本目录名，SNAPSHOT 版本默认包含 jar 哈希
+     */
+    public String getBaselineVersion() {
+        return baselineVersion;
+    }
+
+    public String getProfileId() {
+        return profileId;
+    }
+
+    /**
+     * 一行描述，用于报告
+     */
+    public String describe() {
+        return "tsfile " + dependencyVersion + (dependencyHash == null ? "" : " (" + dependencyHash + ")")
+                + ", " + profileId + ", " + (cpuModel == null ? "" : cpuModel + ", ")
+                + "max heap " + maxHeapMb + " MB, " + javaVersion;
+    }
+
+    private static String dependencyVersion() {
+        try (InputStream input = Tablet.class.getClassLoader().getResourceAsStream(POM_PROPERTIES)) {
+            if (input != null) {
+                Properties properties = new Properties();
+                properties.load(input);
+                String version = properties.getProperty("version");
+                if (version != null) {
+                    return version;
+                }
+            }
+        } catch (IOException ignored) {
+            // 读取失败时使用 jar 清单中的版本
+        }
+        String version = Tablet.class.getPackage().getImplementationVersion();
+        return version == null ? "unknown" : version;
+    }
+
+    private static String dependencyHash() {
+        try {
+            CodeSource codeSource = Tablet.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null) {
+                return null;
+            }
+            File jar = new File(codeSource.getLocation().toURI());
+            if (!jar.isFile()) {
+                return null;
+            }
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(jar.toPath()));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 6; i++) {
+                sb.append(String.format("%02x", digest[i]));
+            }
+            return sb.toString();
+        } catch (IOException | NoSuchAlgorithmException | URISyntaxException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Linux 下读取 /proc/cpuinfo 中的 CPU 型号，其他系统返回 null
+     */
+    private static String cpuModel() {
+        Path cpuInfo = Paths.get("/proc/cpuinfo");
+        if (!Files.isReadable(cpuInfo)) {
+            return null;
+        }
+        try {
+            for (String line : Files.readAllLines(cpuInfo, StandardCharsets.UTF_8)) {
+                if (line.startsWith("model name")) {
+                    return line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+        } catch (IOException ignored) {
+            // 只用于报告，读取失败时忽略
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一次基准测试的结果：每轮耗时、每轮操作数、分配字节数以及自定义指标（如文件大小、chunk 数）
+ */
+public class BenchmarkResult {
+
+    private final String name;
+    private final long[] iterationNanos;
+    private final long operationsPerIteration;
+    private final long allocatedBytes;
+    private final Map<String, Double> metrics = new LinkedHashMap<>();
+
+    public BenchmarkResult(String name, long[] iterationNanos, long operationsPerIteration, long allocatedBytes) {
+        this.name = name;
+        this.iterationNanos = iterationNanos.clone();
+        this.operationsPerIteration = operationsPerIteration;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long[] getIterationNanos() {
+        return iterationNanos.clone();
+    }
+
+    public long getOperationsPerIteration() {
+        return operationsPerIteration;
+    }
+
+    /**
+     * 所有测量轮次分配的堆内存字节数之和
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * 添加自定义指标
+     */
+    public BenchmarkResult addMetric(String metricName, double value) {
+        metrics.put(metricName, value);
+        return this;
+    }
+
+    public Map<String, Double> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    public double meanNanos() {
+        double total = 0;
+        for (long nanos : iterationNanos) {
+            total += nanos;
+        }
+        return total / iterationNanos.length;
+    }
+
+    /**
+     * 每轮耗时的分位数，p 取值 0~100
+     */
+    public long percentileNanos(double p) {
+        long[] sorted = iterationNanos.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * 吞吐量，单位为操作数/秒
+     */
+    public double throughput() {
+        return operationsPerIteration / (meanNanos() / 1e9);
+    }
+
+    /**
+     * 每个操作分配的堆内存字节数，只统计执行基准测试的线程
+     */
+    public double allocatedBytesPerOperation() {
+        return (double) allocatedBytes / iterationNanos.length / operationsPerIteration;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-40s mean=%10.3f ms  p99=%10.3f ms  throughput=%14.1f ops/s  alloc=%10.1f B/op",
+                name, meanNanos() / 1e6, percentileNanos(99) / 1e6, throughput(), allocatedBytesPerOperation()));
+        for (Map.Entry<String, Double> metric : metrics.entrySet()) {
+            sb.append("  ").append(metric.getKey()).append('=').append(String.format("%.1f", metric.getValue()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package benchmark;
+
+import utils.profiling.JfrSession;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 轻量的基准测试执行器：先预热，再测量若干轮，记录每轮耗时和当前线程的堆内存分配量。
+ * 使用 -Djfr=true 运行时，测量阶段（不含预热）会记录一次 JFR，摘要写入 -Djfr.dir（默认 target/jfr-reports），见 JfrSession。
+ * 使用 -Dbaseline=true 运行时，结果在 JVM 退出时按调用方的类名保存为基线，见 BaselineStore
+ */
+public class BenchmarkRunner {
+
+    /**
+     * 被测量的工作负载
+     */
+    @FunctionalInterface
+    public interface Workload {
+        void run() throws Exception;
+    }
+
+    private static final StackWalker CALLER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+
+    public BenchmarkRunner(int warmupIterations, int measurementIterations) {
+        if (measurementIterations <= 0) {
+            throw new IllegalArgumentException("measurementIterations must be positive");
+        }
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+    }
+
+    /**
+     * 执行基准测试
+     *
+     * @param name                   基准测试名称
+     * @param operationsPerIteration 每轮执行的逻辑操作数（如行数），用于计算吞吐量
+     * @param workload               工作负载
+     * @return 测试结果
+     */
+    public BenchmarkResult run(String name, long operationsPerIteration, Workload workload) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            workload.run();
+        }
+        long[] iterationNanos = new long[measurementIterations];
+        JfrSession session = JfrSession.isEnabled() ? JfrSession.start(name) : null;
+        long allocatedBefore = allocatedBytes();
+        try {
+            for (int i = 0; i < measurementIterations; i++) {
+                long start = System.nanoTime();
+                workload.run();
+                iterationNanos[i] = System.nanoTime() - start;
+            }
+        } catch (Exception e) {
+            if (session != null) {
+                session.close();
+            }
+            throw e;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        if (session != null) {
+            session.stop();
+        }
+        BenchmarkResult result = new BenchmarkResult(name, iterationNanos, operationsPerIteration, Math.max(allocated, 0));
+        if (BaselineStore.isEnabled()) {
+            BaselineStore.recordOnExit(CALLER.getCallerClass().getSimpleName(), result);
+        }
+        return result;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
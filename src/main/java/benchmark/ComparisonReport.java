@@ -0,0 +1,177 @@
+package benchmark;
+
+import benchmark.BaselineComparison.MetricChange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 基线对比的结果，可以输出为 Markdown 或 HTML 报告，回退的指标排在最前面
+ */
+public class ComparisonReport {
+
+    private final BenchmarkEnvironment baseline;
+    private final BenchmarkEnvironment current;
+    private final double thresholdPercent;
+    private final List<MetricChange> changes;
+    private final List<String> unmatched;
+
+    ComparisonReport(BenchmarkEnvironment baseline, BenchmarkEnvironment current, double thresholdPercent,
+                     List<MetricChange> changes, List<String> unmatched) {
+        this.baseline = baseline;
+        this.current = current;
+        this.thresholdPercent = thresholdPercent;
+        this.changes = Collections.unmodifiableList(changes);
+        this.unmatched = Collections.unmodifiableList(unmatched);
+    }
+
+    public List<MetricChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * 只出现在一方的结果
+     */
+    public List<String> getUnmatched() {
+        return unmatched;
+    }
+
+    public List<MetricChange> regressions() {
+        return filter(MetricChange.Verdict.REGRESSION);
+    }
+
+    public boolean hasRegression() {
+        return !regressions().isEmpty();
+    }
+
+    public String toMarkdown() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# 基准测试对比\n\n");
+        sb.append("- 基线：").append(describe(baseline)).append('\n');
+        sb.append("- 当前：").append(describe(current)).append('\n');
+        sb.append(String.format(Locale.ROOT, "- 阈值：%.1f%%，%s\n\n", thresholdPercent, summary()));
+        sb.append("| 结果 | 指标 | 基线 | 当前 | 变化 | 95% 置信区间 | 结论 |\n");
+        sb.append("| --- | --- | --- | --- | --- | --- | --- |\n");
+        for (MetricChange change : sorted()) {
+            sb.append("| ").append(change.getResult())
+                    .append(" | ").append(change.getMetric())
+                    .append(" | ").append(formatValue(change.getBaselineValue()))
+                    .append(" | ").append(formatValue(change.getCurrentValue()))
+                    .append(" | ").append(formatPercent(change.getChangePercent()))
+                    .append(" | ").append(formatInterval(change))
+                    .append(" | ").append(verdictText(change.getVerdict()))
+                    .append(" |\n");
+        }
+        if (!unmatched.isEmpty()) {
+            sb.append("\n## 未匹配的结果\n\n");
+            for (String result : unmatched) {
+                sb.append("- ").append(result).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    public String toHtml() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n<title>基准测试对比</title>\n")
+                .append("<style>\n")
+                .append("body { font-family: sans-serif; }\n")
+                .append("table { border-collapse: collapse; }\n")
+                .append("th, td { border: 1px solid #ccc; padding: 4px 8px; }\n")
+                .append("td.number { text-align: right; }\n")
+                .append("tr.regression { background: #fdd; }\n")
+                .append("tr.improvement { background: #dfd; }\n")
+                .append("</style>\n</head>\n<body>\n<h1>基准测试对比</h1>\n<ul>\n");
+        sb.append("<li>基线：").append(escape(describe(baseline))).append("</li>\n");
+        sb.append("<li>当前：").append(escape(describe(current))).append("</li>\n");
+        sb.append(String.format(Locale.ROOT, "<li>阈值：%.1f%%，%s</li>\n</ul>\n", thresholdPercent, summary()));
+        sb.append("<table>\n<tr><th>结果</th><th>指标</th><th>基线</th><th>当前</th><th>变化</th>")
+                .append("<th>95% 置信区间</th><th>结论</th></tr>\n");
+        for (MetricChange change : sorted()) {
+            String rowClass = change.getVerdict() == MetricChange.Verdict.REGRESSION ? " class=\"regression\""
+                    : change.getVerdict() == MetricChange.Verdict.IMPROVEMENT ? " class=\"improvement\"" : "";
+            sb.append("<tr").append(rowClass).append('>')
+                    .append("<td>").append(escape(change.getResult())).append("</td>")
+                    .append("<td>").append(escape(change.getMetric())).append("</td>")
+                    .append("<td class=\"number\">").append(formatValue(change.getBaselineValue())).append("</td>")
+                    .append("<td class=\"number\">").append(formatValue(change.getCurrentValue())).append("</td>")
+                    .append("<td class=\"number\">").append(formatPercent(change.getChangePercent())).append("</td>")
+                    .append("<td>").append(formatInterval(change)).append("</td>")
+                    .append("<td>").append(verdictText(change.getVerdict())).append("</td>")
+                    .append("</tr>\n");
+        }
+        sb.append("</table>\n");
+        if (!unmatched.isEmpty()) {
+            sb.append("<h2>未匹配的结果</h2>\n<ul>\n");
+            for (String result : unmatched) {
+                sb.append("<li>").append(escape(result)).append("</li>\n");
+            }
+            sb.append("</ul>\n");
+        }
+        sb.append("</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    private String summary() {
+        return String.format(Locale.ROOT, "回退 %d 项，提升 %d 项，共 %d 项",
+                regressions().size(), filter(MetricChange.Verdict.IMPROVEMENT).size(), changes.size());
+    }
+
+    private List<MetricChange> filter(MetricChange.Verdict verdict) {
+        List<MetricChange> result = new ArrayList<>();
+        for (MetricChange change : changes) {
+            if (change.getVerdict() == verdict) {
+                result.add(change);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 回退、提升、无变化依次排列，同一类中保持原顺序
+     */
+    private List<MetricChange> sorted() {
+        List<MetricChange> sorted = new ArrayList<>(changes);
+        sorted.sort((a, b) -> Integer.compare(a.getVerdict().ordinal(), b.getVerdict().ordinal()));
+        return sorted;
+    }
+
+    private static String describe(BenchmarkEnvironment environment) {
+        return environment == null ? "（无结果）" : environment.describe();
+    }
+
+    private static String verdictText(MetricChange.Verdict verdict) {
+        switch (verdict) {
+            case REGRESSION:
+                return "回退";
+            case IMPROVEMENT:
+                return "提升";
+            default:
+                return "无显著变化";
+        }
+    }
+
+    private static String formatValue(double value) {
+        return String.format(Locale.ROOT, Math.abs(value) >= 100 ? "%.1f" : "%.3f", value);
+    }
+
+    private static String formatPercent(double percent) {
+        if (Double.isInfinite(percent)) {
+            return percent > 0 ? "+inf" : "-inf";
+        }
+        return String.format(Locale.ROOT, "%+.1f%%", percent);
+    }
+
+    private static String formatInterval(MetricChange change) {
+        if (Double.isNaN(change.getCiLowPercent())) {
+            return "-";
+        }
+        return "[" + formatPercent(change.getCiLowPercent()) + ", " + formatPercent(change.getCiHighPercent()) + "]";
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,104 @@
+package benchmark;
+
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.query.dataset.ResultSetMetadata;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import utils.export.CsvExporter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * 对比把整张表导出为 CSV 的两种方式：逐行调用 ResultSet 的 getter 并用 StringJoiner 拼接后写入 BufferedWriter
+ * （与 ITsFileReaderAndITsFileWriter 示例相同），以及 CsvExporter 单线程和按时间分段多线程导出。
+ * 结果中附带每行的分配字节数和输出文件大小。
+ * <p>
+ * 参数：[设备数] [每个设备的行数] [FIELD 列数] [分段数列表，逗号分隔]
+ */
+public class CsvExportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int deviceNum = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long rowsPerDevice = args.length > 1 ? Long.parseLong(args[1]) : 10_000;
+        int fieldColumnNum = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        String[] partNums = (args.length > 3 ? args[3] : "1,2,4,8").split(",");
+
+        TableFileGenerator generator = new TableFileGenerator()
+                .deviceNum(deviceNum)
+                .rowsPerDevice(rowsPerDevice)
+                .fieldColumnNum(fieldColumnNum);
+        File f = new File("data/tsfile/csv_export.tsfile");
+        long rowNum = generator.generate(f);
+        File dir = new File("data/csv_export");
+        dir.mkdirs();
+        BenchmarkRunner runner = new BenchmarkRunner(1, 3);
+
+        File joinerOutput = new File(dir, "joiner.csv");
+        BenchmarkResult result = runner.run("ResultSet + StringJoiner", rowNum, () -> {
+            long written = exportWithJoiner(f, generator, joinerOutput);
+            if (written != rowNum) {
+                throw new IllegalStateException("Expected " + rowNum + " rows, but exported " + written);
+            }
+        });
+        System.out.println(result.addMetric("file MB", joinerOutput.length() / 1e6));
+
+        for (String partNumText : partNums) {
+            int partNum = Integer.parseInt(partNumText.trim());
+            File output = new File(dir, "exporter_" + partNum + ".csv");
+            CsvExporter exporter = new CsvExporter(generator.getTableName()).columns(generator.columnNames());
+            long[] bytes = new long[1];
+            result = runner.run("CsvExporter " + partNum + " parts", rowNum, () -> {
+                long written = 0;
+                bytes[0] = 0;
+                for (CsvExporter.Part part : exporter.export(f, output, partNum)) {
+                    written += part.getRowNum();
+                    bytes[0] += part.getByteNum();
+                }
+                if (written != rowNum) {
+                    throw new IllegalStateException("Expected " + rowNum + " rows, but exported " + written);
+                }
+            });
+            System.out.println(result.addMetric("file MB", bytes[0] / 1e6));
+        }
+    }
+
+    private static long exportWithJoiner(File f, TableFileGenerator generator, File output) throws Exception {
+        List<String> columnNames = generator.columnNames();
+        List<TSDataType> dataTypes = generator.dataTypes();
+        long rowNum = 0;
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             ResultSet resultSet = reader.query(generator.getTableName(), columnNames, Long.MIN_VALUE, Long.MAX_VALUE);
+             BufferedWriter writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+            ResultSetMetadata metadata = resultSet.getMetadata();
+            StringJoiner header = new StringJoiner(",");
+            for (int column = 1; column <= columnNames.size() + 1; column++) {
+                header.add(metadata.getColumnName(column));
+            }
+            writer.write(header.toString());
+            writer.newLine();
+            while (resultSet.next()) {
+                StringJoiner sj = new StringJoiner(",");
+                sj.add(Long.toString(resultSet.getLong(1)));
+                for (int column = 2; column <= columnNames.size() + 1; column++) {
+                    if (resultSet.isNull(column)) {
+                        sj.add("");
+                    } else if (dataTypes.get(column - 2) == TSDataType.STRING) {
+                        sj.add(resultSet.getString(column));
+                    } else {
+                        sj.add(Double.toString(resultSet.getDouble(column)));
+                    }
+                }
+                writer.write(sj.toString());
+                writer.newLine();
+                rowNum++;
+            }
+        }
+        return rowNum;
+    }
+}
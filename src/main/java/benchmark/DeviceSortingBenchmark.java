@@ -0,0 +1,95 @@
+package benchmark;
+
+import org.apache.tsfile.file.metadata.IDeviceID;
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.read.filter.factory.TagFilterBuilder;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import utils.write.DeviceSortingTabletWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * 对比设备交错的 Tablet 直接写入与经过 DeviceSortingTabletWriter 排序后写入：
+ * 写入耗时、chunk 数、文件大小，以及之后全表扫描和单设备查询的延迟。
+ * <p>
+ * 参数：[设备数] [每个设备的行数] [排序缓冲区内存预算(MB)]
+ */
+public class DeviceSortingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int deviceNum = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long rowsPerDevice = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        long memoryBudget = (args.length > 2 ? Long.parseLong(args[2]) : 64) * 1024 * 1024;
+
+        TableFileGenerator generator = new TableFileGenerator()
+                .deviceNum(deviceNum)
+                .rowsPerDevice(rowsPerDevice)
+                .interleaved(true);
+        File directFile = new File("data/tsfile/device_sorting_direct.tsfile");
+        File sortedFile = new File("data/tsfile/device_sorting_sorted.tsfile");
+        long totalRows = generator.totalRows();
+
+        BenchmarkRunner writeRunner = new BenchmarkRunner(1, 3);
+        BenchmarkResult direct = writeRunner.run("Write interleaved tablets", totalRows, () -> {
+            try (ITsFileWriter writer = newWriter(generator, directFile)) {
+                generator.writeTablets(writer::write);
+            }
+        });
+        BenchmarkResult sorted = writeRunner.run("Write device-sorted tablets", totalRows, () -> {
+            try (ITsFileWriter writer = newWriter(generator, sortedFile);
+                 DeviceSortingTabletWriter sortingWriter =
+                         new DeviceSortingTabletWriter(writer, generator.tableSchema(), memoryBudget)) {
+                generator.writeTablets(sortingWriter);
+            }
+        });
+        System.out.println(direct.addMetric("chunks", countChunks(directFile)).addMetric("fileBytes", directFile.length()));
+        System.out.println(sorted.addMetric("chunks", countChunks(sortedFile)).addMetric("fileBytes", sortedFile.length()));
+
+        BenchmarkRunner queryRunner = new BenchmarkRunner(2, 5);
+        for (File f : new File[]{directFile, sortedFile}) {
+            System.out.println(queryRunner.run("Full scan " + f.getName(), totalRows, () -> scan(generator, f, false)));
+            System.out.println(queryRunner.run("Single device " + f.getName(), rowsPerDevice, () -> scan(generator, f, true)));
+        }
+    }
+
+    private static ITsFileWriter newWriter(TableFileGenerator generator, File f) throws IOException {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        f.getParentFile().mkdirs();
+        return new TsFileWriterBuilder().file(f).tableSchema(generator.tableSchema()).build();
+    }
+
+    /**
+     * 统计文件中所有设备的对齐 chunk 数
+     */
+    static long countChunks(File f) throws IOException {
+        long chunkNum = 0;
+        try (TsFileSequenceReader reader = new TsFileSequenceReader(f.getPath())) {
+            for (IDeviceID deviceID : reader.getAllDevices()) {
+                chunkNum += reader.getAlignedChunkMetadata(deviceID, false).size();
+            }
+        }
+        return chunkNum;
+    }
+
+    private static long scan(TableFileGenerator generator, File f, boolean singleDevice) throws Exception {
+        long rowNum = 0;
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             ResultSet resultSet = singleDevice
+                     ? reader.query(generator.getTableName(), generator.columnNames(), Long.MIN_VALUE, Long.MAX_VALUE,
+                     new TagFilterBuilder(generator.tableSchema()).eq("tag0", generator.tagValue(0, 0)))
+                     : reader.query(generator.getTableName(), generator.columnNames(), Long.MIN_VALUE, Long.MAX_VALUE)) {
+            while (resultSet.next()) {
+                rowNum++;
+            }
+        }
+        return rowNum;
+    }
+}
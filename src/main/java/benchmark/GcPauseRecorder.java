@@ -0,0 +1,92 @@
+package benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 通过 GarbageCollectorMXBean 的通知记录每次 GC 的耗时，统计次数、总耗时和最长耗时。
+ * 对于并发收集器（如 G1 的并发标记周期），通知中的耗时包含并发阶段，因此只作为停顿时间的近似值。
+ */
+public class GcPauseRecorder implements AutoCloseable {
+
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = this::handleNotification;
+
+    private long count = 0;
+    private long totalMillis = 0;
+    private long maxMillis = 0;
+
+    /**
+     * 开始记录
+     */
+    public GcPauseRecorder start() {
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (bean instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) bean;
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+        return this;
+    }
+
+    private synchronized void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long duration = info.getGcInfo().getDuration();
+        count++;
+        totalMillis += duration;
+        maxMillis = Math.max(maxMillis, duration);
+    }
+
+    public synchronized void reset() {
+        count = 0;
+        totalMillis = 0;
+        maxMillis = 0;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * 将统计结果添加为基准测试结果的自定义指标
+     */
+    public synchronized BenchmarkResult addMetrics(BenchmarkResult result) {
+        return result.addMetric("gcCount", count)
+                .addMetric("gcTotalMs", totalMillis)
+                .addMetric("gcMaxMs", maxMillis);
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+                // 已经移除
+            }
+        }
+        emitters.clear();
+    }
+}
@@ -0,0 +1,138 @@
+package benchmark;
+
+import org.apache.tsfile.file.metadata.TableSchema;
+import utils.ingest.IngestServer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 多个客户端并发通过 IngestServer 写入时的持续吞吐量。
+ * 每个客户端写入一个设备，发送全部行后关闭输出流并等待全部确认；每轮启动一个新的服务并在结束时关闭，
+ * 耗时包括最后的文件关闭。服务开启 ackOnBuffer，否则确认要等到滚动间隔后文件关闭。发送的行在测量前生成，不计入结果。
+ * <p>
+ * 参数：[客户端数列表，逗号分隔] [每个客户端的行数] [FIELD 列数]
+ */
+public class IngestServerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String[] clientNums = (args.length > 0 ? args[0] : "1,8,64,256").split(",");
+        int rowsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        int fieldColumnNum = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        TableFileGenerator generator = new TableFileGenerator()
+                .tableName("ingest_table")
+                .tagColumnNum(1)
+                .fieldColumnNum(fieldColumnNum);
+        TableSchema tableSchema = generator.tableSchema();
+        File dir = new File("data/tsfile/ingest");
+        BenchmarkRunner runner = new BenchmarkRunner(1, 3);
+
+        for (String clientNumText : clientNums) {
+            int clientNum = Integer.parseInt(clientNumText.trim());
+            byte[][] payloads = new byte[clientNum][];
+            for (int c = 0; c < clientNum; c++) {
+                payloads[c] = payload(generator, c, rowsPerClient, fieldColumnNum);
+            }
+            long rowNum = (long) clientNum * rowsPerClient;
+            ExecutorService executor = Executors.newFixedThreadPool(clientNum);
+            AtomicLong fileNum = new AtomicLong();
+            try {
+                BenchmarkResult result = runner.run(clientNum + " clients", rowNum, () -> {
+                    deleteDirectory(dir);
+                    IngestServer server = new IngestServer(dir).register(tableSchema).ackOnBuffer(true).start();
+                    long acked = 0;
+                    try {
+                        List<Future<Long>> futures = new ArrayList<>();
+                        for (byte[] payload : payloads) {
+                            futures.add(executor.submit(() -> send(server.getPort(), payload)));
+                        }
+                        for (Future<Long> future : futures) {
+                            acked += future.get();
+                        }
+                    } finally {
+                        server.close();
+                    }
+                    if (acked != rowNum || server.getWrittenRowNum() != rowNum) {
+                        throw new IllegalStateException("Expected " + rowNum + " rows, acknowledged: " + acked
+                                + ", written: " + server.getWrittenRowNum());
+                    }
+                    fileNum.set(server.getClosedFiles().size());
+                });
+                System.out.println(result.addMetric("files", fileNum.get()));
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static byte[] payload(TableFileGenerator generator, int device, int rowNum, int fieldColumnNum) {
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < rowNum; r++) {
+            sb.append(generator.getTableName()).append(",tag0=").append(generator.tagValue(device, 0)).append(' ');
+            for (int f = 0; f < fieldColumnNum; f++) {
+                if (f > 0) {
+                    sb.append(',');
+                }
+                sb.append('s').append(f).append('=').append(generator.fieldValue(device, r, f));
+            }
+            sb.append(' ').append(r).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 发送全部行并等待服务端关闭连接，返回确认的行数
+     */
+    private static long send(int port, byte[] payload) throws IOException {
+        long acked = 0;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream output = socket.getOutputStream();
+            output.write(payload);
+            output.flush();
+            socket.shutdownOutput();
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            StringBuilder response = new StringBuilder();
+            int b;
+            while ((b = input.read()) != -1) {
+                if (b != '\n') {
+                    response.append((char) b);
+                    continue;
+                }
+                if (!response.toString().startsWith("OK ")) {
+                    throw new IllegalStateException("Unexpected response: " + response);
+                }
+                acked += Long.parseLong(response.substring(3));
+                response.setLength(0);
+            }
+        }
+        return acked;
+    }
+
+    private static void deleteDirectory(File dir) throws IOException {
+        if (!dir.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package benchmark;
+
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import utils.ParserCSV;
+import utils.staging.OffHeapSegmentPool;
+import utils.staging.OffHeapTabletStager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 对比 CSV 批量加载时的两种方式：
+ * 1. 堆上加载：与现有流程相同，ParserCSV 读出全部行，再逐个单元格调用 Tablet.addValue 写入
+ * 2. 堆外暂存：逐行读取解析，值暂存在 OffHeapTabletStager 的堆外内存段中，内存预算用完时批量填充 Tablet 写入
+ * <p>
+ * 输入 CSV 在测量前生成，每行为 time,tag0,s0..sN，每隔 10 个单元格有一个空值。
+ * 记录耗时、GC 次数、GC 总耗时和最长耗时（GcPauseRecorder）以及各堆内存池峰值之和。
+ * <p>
+ * 参数：[行数] [FIELD 列数] [堆外内存预算(MB)]
+ */
+public class OffHeapStagingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rowNum = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int fieldColumnNum = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long budgetMb = args.length > 2 ? Long.parseLong(args[2]) : 64;
+
+        TableFileGenerator generator = new TableFileGenerator()
+                .tableName("staging_table")
+                .tagColumnNum(1)
+                .fieldColumnNum(fieldColumnNum);
+        TableSchema tableSchema = generator.tableSchema();
+        List<String> columnNames = generator.columnNames();
+        File csv = new File("data/tsfile/staging_input.csv");
+        File f = new File("data/tsfile/staging.tsfile");
+        long start = System.nanoTime();
+        writeCsv(csv, rowNum, fieldColumnNum);
+        System.out.printf("Generated %d rows (%d bytes) in %.1f s%n",
+                rowNum, csv.length(), (System.nanoTime() - start) / 1e9);
+
+        BenchmarkRunner runner = new BenchmarkRunner(0, 3);
+        try (GcPauseRecorder recorder = new GcPauseRecorder().start()) {
+            // 预热
+            loadOnHeap(csv, tableSchema, generator, columnNames, f);
+            loadOffHeap(csv, tableSchema, budgetMb, f);
+
+            beforeRun(recorder);
+            BenchmarkResult onHeap = runner.run("On-heap ParserCSV + Tablet", rowNum,
+                    () -> loadOnHeap(csv, tableSchema, generator, columnNames, f));
+            System.out.println(recorder.addMetrics(onHeap).addMetric("heapPeakMB", heapPeakBytes() / 1e6));
+
+            beforeRun(recorder);
+            BenchmarkResult offHeap = runner.run("Off-heap staging (" + budgetMb + " MB)", rowNum,
+                    () -> loadOffHeap(csv, tableSchema, budgetMb, f));
+            System.out.println(recorder.addMetrics(offHeap).addMetric("heapPeakMB", heapPeakBytes() / 1e6));
+        }
+    }
+
+    private static void writeCsv(File csv, int rowNum, int fieldColumnNum) throws Exception {
+        csv.getParentFile().mkdirs();
+        try (BufferedWriter writer = Files.newBufferedWriter(csv.toPath())) {
+            long cell = 0;
+            for (int r = 0; r < rowNum; r++) {
+                writer.write(Long.toString(r));
+                writer.write(",device_");
+                writer.write(Integer.toString(r % 100));
+                for (int c = 0; c < fieldColumnNum; c++) {
+                    writer.write(',');
+                    if (cell++ % 10 != 0) {
+                        writer.write(Double.toString((r + c) % 1000 * 0.5));
+                    }
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void loadOnHeap(File csv, TableSchema tableSchema, TableFileGenerator generator,
+                                   List<String> columnNames, File f) throws Exception {
+        Iterator<Object[]> rows = new ParserCSV().load(csv.getPath(), ',');
+        try (ITsFileWriter writer = newWriter(tableSchema, f)) {
+            Tablet tablet = new Tablet(columnNames, generator.dataTypes());
+            while (rows.hasNext()) {
+                Object[] row = rows.next();
+                int rowIndex = tablet.getRowSize();
+                tablet.addTimestamp(rowIndex, Long.parseLong((String) row[0]));
+                tablet.addValue(columnNames.get(0), rowIndex, row[1]);
+                for (int c = 2; c < row.length; c++) {
+                    String value = (String) row[c];
+                    if (!value.isEmpty()) {
+                        tablet.addValue(columnNames.get(c - 1), rowIndex, Double.parseDouble(value));
+                    }
+                }
+                if (tablet.getRowSize() == tablet.getMaxRowNumber()) {
+                    writer.write(tablet);
+                    tablet.reset();
+                }
+            }
+            if (tablet.getRowSize() > 0) {
+                writer.write(tablet);
+            }
+        }
+    }
+
+    private static void loadOffHeap(File csv, TableSchema tableSchema, long budgetMb, File f) throws Exception {
+        try (OffHeapSegmentPool pool = new OffHeapSegmentPool(budgetMb * 1024 * 1024);
+             BufferedReader reader = Files.newBufferedReader(csv.toPath());
+             ITsFileWriter writer = newWriter(tableSchema, f);
+             OffHeapTabletStager stager = new OffHeapTabletStager(writer::write, tableSchema, pool)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int end = line.indexOf(',');
+                stager.beginRow(Long.parseLong(line.substring(0, end)));
+                int column = 0;
+                while (end < line.length()) {
+                    int begin = end + 1;
+                    end = line.indexOf(',', begin);
+                    if (end < 0) {
+                        end = line.length();
+                    }
+                    if (begin < end) {
+                        if (column == 0) {
+                            stager.setString(column, line.substring(begin, end));
+                        } else {
+                            stager.setDouble(column, Double.parseDouble(line.substring(begin, end)));
+                        }
+                    }
+                    column++;
+                }
+            }
+        }
+    }
+
+    private static ITsFileWriter newWriter(TableSchema tableSchema, File f) throws Exception {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        return new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build();
+    }
+
+    private static void beforeRun(GcPauseRecorder recorder) throws InterruptedException {
+        System.gc();
+        // GC 通知是异步发送的，等待 System.gc 的通知送达后再清零
+        Thread.sleep(200);
+        recorder.reset();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * 各堆内存池峰值之和，各池的峰值不一定同时出现，因此是上界
+     */
+    private static long heapPeakBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,157 @@
+package benchmark;
+
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import utils.write.SparseTabletLoader;
+import utils.write.TabletSink;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 对比不同空值比例下的稠密加载与稀疏加载：
+ * 1. 稠密加载：与 GenerateTsFile 相同，逐个单元格判断是否为空，非空时按列名调用 Tablet.addValue
+ * 2. 稀疏加载：输入只包含非空单元格，通过 SparseTabletLoader 直接写入列数组并批量设置位图
+ * <p>
+ * 分别测量只加载到 Tablet（写入目标丢弃数据）和加载后写入 TsFile 两种情况的吞吐量和分配量，
+ * 输入数据在测量前生成，不计入结果。
+ * <p>
+ * 参数：[空值比例列表，逗号分隔] [行数] [FIELD 列数]
+ */
+public class SparseIngestionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String[] nullRatios = (args.length > 0 ? args[0] : "0,0.5,0.9,0.99").split(",");
+        int rowNum = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int fieldColumnNum = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        TableFileGenerator generator = new TableFileGenerator()
+                .tableName("sparse_table")
+                .tagColumnNum(1)
+                .fieldColumnNum(fieldColumnNum);
+        TableSchema tableSchema = generator.tableSchema();
+        List<String> columnNames = generator.columnNames();
+        File f = new File("data/tsfile/sparse_ingestion.tsfile");
+        BenchmarkRunner runner = new BenchmarkRunner(2, 5);
+
+        for (String ratio : nullRatios) {
+            double nullRatio = Double.parseDouble(ratio.trim());
+            SparseInput input = new SparseInput(rowNum, columnNames.size(), nullRatio);
+            TabletSink discard = tablet -> {
+            };
+            System.out.println("==== null ratio " + nullRatio + ", " + input.cellNum + " non-null cells ====");
+
+            System.out.println(runner.run("Dense load", rowNum,
+                    () -> loadDense(input, generator, columnNames, discard)));
+            System.out.println(runner.run("Sparse load", rowNum,
+                    () -> loadSparse(input, tableSchema, discard)));
+            System.out.println(runner.run("Dense load and write", rowNum, () -> {
+                try (ITsFileWriter writer = newWriter(tableSchema, f)) {
+                    loadDense(input, generator, columnNames, writer::write);
+                }
+            }).addMetric("fileBytes", f.length()));
+            System.out.println(runner.run("Sparse load and write", rowNum, () -> {
+                try (ITsFileWriter writer = newWriter(tableSchema, f)) {
+                    loadSparse(input, tableSchema, writer::write);
+                }
+            }).addMetric("fileBytes", f.length()));
+        }
+    }
+
+    /**
+     * 稠密加载：输入为包含空值的完整行
+     */
+    private static void loadDense(SparseInput input, TableFileGenerator generator, List<String> columnNames,
+                                  TabletSink sink) throws Exception {
+        Tablet tablet = new Tablet(columnNames, generator.dataTypes());
+        for (int r = 0; r < input.denseRows.length; r++) {
+            int rowIndex = tablet.getRowSize();
+            tablet.addTimestamp(rowIndex, r);
+            Object[] row = input.denseRows[r];
+            for (int c = 0; c < row.length; c++) {
+                if (row[c] == null) {
+                    continue;
+                }
+                if (c == 0) {
+                    tablet.addValue(rowIndex, columnNames.get(c), (String) row[c]);
+                } else {
+                    tablet.addValue(rowIndex, columnNames.get(c), (double) (Double) row[c]);
+                }
+            }
+            if (tablet.getRowSize() == tablet.getMaxRowNumber()) {
+                sink.write(tablet);
+                tablet.reset();
+            }
+        }
+        if (tablet.getRowSize() != 0) {
+            sink.write(tablet);
+            tablet.reset();
+        }
+    }
+
+    /**
+     * 稀疏加载：输入只包含非空单元格
+     */
+    private static void loadSparse(SparseInput input, TableSchema tableSchema, TabletSink sink) throws Exception {
+        try (SparseTabletLoader loader = new SparseTabletLoader(sink, tableSchema)) {
+            for (int r = 0; r < input.sparseColumns.length; r++) {
+                loader.addRow(r, input.sparseColumns[r], input.sparseValues[r], input.sparseColumns[r].length);
+                loader.setValue(0, input.tags[r]);
+            }
+        }
+    }
+
+    private static ITsFileWriter newWriter(TableSchema tableSchema, File f) throws Exception {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        f.getParentFile().mkdirs();
+        return new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build();
+    }
+
+    /**
+     * 同一份数据的稠密表示和稀疏表示，第 0 列为 TAG 列且不为空，FIELD 列按比例随机为空
+     */
+    private static class SparseInput {
+
+        final Object[][] denseRows;
+        final String[] tags;
+        final int[][] sparseColumns;
+        final double[][] sparseValues;
+        long cellNum = 0;
+
+        SparseInput(int rowNum, int columnNum, double nullRatio) {
+            SplittableRandom random = new SplittableRandom(42);
+            denseRows = new Object[rowNum][];
+            tags = new String[rowNum];
+            sparseColumns = new int[rowNum][];
+            sparseValues = new double[rowNum][];
+            int[] columns = new int[columnNum];
+            double[] values = new double[columnNum];
+            for (int r = 0; r < rowNum; r++) {
+                Object[] row = new Object[columnNum];
+                tags[r] = "device_" + r % 10;
+                row[0] = tags[r];
+                int present = 0;
+                for (int c = 1; c < columnNum; c++) {
+                    if (random.nextDouble() >= nullRatio) {
+                        double value = random.nextDouble();
+                        row[c] = value;
+                        columns[present] = c;
+                        values[present] = value;
+                        present++;
+                    }
+                }
+                denseRows[r] = row;
+                sparseColumns[r] = Arrays.copyOf(columns, present);
+                sparseValues[r] = Arrays.copyOf(values, present);
+                cellNum += present + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import utils.aggregation.AggregationType;
+import utils.aggregation.TimeBucketAggregator;
+import utils.aggregation.TimeBucketAggregatorBuilder;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * 对比两种聚合路径：
+ * 1. 通过 ResultSet 全量扫描后聚合（TimeBucketAggregator.query）
+ * 2. 只读取 chunk/page 统计信息，边界 page 才解码（TimeBucketAggregator.aggregateStatistics）
+ * <p>
+ * 参数：[设备数] [每个设备的行数]
+ */
+public class StatisticsAggregationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int deviceNum = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        long rowsPerDevice = args.length > 1 ? Long.parseLong(args[1]) : 100_000;
+
+        TableFileGenerator generator = new TableFileGenerator()
+                .deviceNum(deviceNum)
+                .rowsPerDevice(rowsPerDevice)
+                .tagColumnNum(2)
+                .fieldColumnNum(2);
+        File f = new File("data/tsfile/statistics_aggregation_benchmark.tsfile");
+        long totalRows = generator.generate(f);
+
+        // 查询中间 80% 的时间范围，两端的 page 需要解码
+        long span = generator.endTime();
+        long startTime = span / 10;
+        long endTime = span - span / 10;
+        TimeBucketAggregator aggregator = new TimeBucketAggregatorBuilder()
+                .origin(startTime)
+                .interval(endTime - startTime + 1)
+                .groupBy("tag0")
+                .aggregate("s0", AggregationType.COUNT, AggregationType.MIN, AggregationType.MAX,
+                        AggregationType.FIRST, AggregationType.LAST)
+                .build();
+
+        long scanCount = countRows(aggregator, f, generator.getTableName(), startTime, endTime, false);
+        long statisticsCount = countRows(aggregator, f, generator.getTableName(), startTime, endTime, true);
+        if (scanCount != statisticsCount) {
+            throw new IllegalStateException(
+                    "Result mismatch, ResultSet scan: " + scanCount + ", statistics: " + statisticsCount);
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(2, 5);
+        System.out.println(runner.run("ResultSet scan", totalRows,
+                () -> countRows(aggregator, f, generator.getTableName(), startTime, endTime, false))
+                .addMetric("fileBytes", f.length()));
+        System.out.println(runner.run("Chunk/page statistics", totalRows,
+                () -> countRows(aggregator, f, generator.getTableName(), startTime, endTime, true))
+                .addMetric("fileBytes", f.length()));
+    }
+
+    /**
+     * 执行一次聚合，返回所有分组 count(s0) 之和
+     */
+    private static long countRows(TimeBucketAggregator aggregator, File f, String tableName,
+                                  long startTime, long endTime, boolean useStatistics) throws Exception {
+        long count = 0;
+        if (useStatistics) {
+            try (TsFileSequenceReader reader = new TsFileSequenceReader(f.getPath());
+                 ResultSet resultSet = aggregator.aggregateStatistics(
+                         reader, tableName, startTime, endTime, Collections.emptyMap())) {
+                while (resultSet.next()) {
+                    count += resultSet.getLong(3);
+                }
+            }
+        } else {
+            try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+                 ResultSet resultSet = aggregator.query(reader, tableName, startTime, endTime, null)) {
+                while (resultSet.next()) {
+                    count += resultSet.getLong(3);
+                }
+            }
+        }
+        return count;
+    }
+}
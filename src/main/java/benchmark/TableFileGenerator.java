@@ -0,0 +1,227 @@
+package benchmark;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.ColumnSchema;
+import org.apache.tsfile.file.metadata.ColumnSchemaBuilder;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import utils.write.TabletSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 生成基准测试用的表模型 TsFile。
+ * TAG 列名为 tag0..tagN，第 0 个 TAG 在设备间唯一；FIELD 列名为 s0..sM，类型为 DOUBLE。
+ * 数据默认按设备连续写入，也可以按行在设备间交错写入（与 table.csv 的组织方式相同），
+ * 每个设备的时间戳为 startTime + row * timeInterval。设备编号从 firstDevice 开始，多个文件可以使用不相交的设备。
+ */
+public class TableFileGenerator {
+
+    private String tableName = "table1";
+    private int tagColumnNum = 2;
+    private int fieldColumnNum = 2;
+    private int firstDevice = 0;
+    private int deviceNum = 10;
+    private long rowsPerDevice = 1000;
+    private long startTime = 0;
+    private long timeInterval = 1000;
+    private int tabletSize = 1024;
+    private boolean interleaved = false;
+
+    public TableFileGenerator tableName(String tableName) {
+        this.tableName = tableName;
+        return this;
+    }
+
+    public TableFileGenerator tagColumnNum(int tagColumnNum) {
+        if (tagColumnNum <= 0) {
+            throw new IllegalArgumentException("tagColumnNum must be positive");
+        }
+        this.tagColumnNum = tagColumnNum;
+        return this;
+    }
+
+    public TableFileGenerator fieldColumnNum(int fieldColumnNum) {
+        this.fieldColumnNum = fieldColumnNum;
+        return this;
+    }
+
+    /**
+     * 第一个设备的编号，生成的设备为 firstDevice .. firstDevice + deviceNum - 1
+     */
+    public TableFileGenerator firstDevice(int firstDevice) {
+        this.firstDevice = firstDevice;
+        return this;
+    }
+
+    public TableFileGenerator deviceNum(int deviceNum) {
+        this.deviceNum = deviceNum;
+        return this;
+    }
+
+    public TableFileGenerator rowsPerDevice(long rowsPerDevice) {
+        this.rowsPerDevice = rowsPerDevice;
+        return this;
+    }
+
+    public TableFileGenerator startTime(long startTime) {
+        this.startTime = startTime;
+        return this;
+    }
+
+    public TableFileGenerator timeInterval(long timeInterval) {
+        this.timeInterval = timeInterval;
+        return this;
+    }
+
+    public TableFileGenerator tabletSize(int tabletSize) {
+        this.tabletSize = tabletSize;
+        return this;
+    }
+
+    /**
+     * 是否按行在设备间交错写入，交错写入时每个 Tablet 包含多个设备
+     */
+    public TableFileGenerator interleaved(boolean interleaved) {
+        this.interleaved = interleaved;
+        return this;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * 所有列名，TAG 列在前
+     */
+    public List<String> columnNames() {
+        List<String> columnNames = new ArrayList<>(tagColumnNum + fieldColumnNum);
+        for (int i = 0; i < tagColumnNum; i++) {
+            columnNames.add("tag" + i);
+        }
+        for (int i = 0; i < fieldColumnNum; i++) {
+            columnNames.add("s" + i);
+        }
+        return columnNames;
+    }
+
+    public List<TSDataType> dataTypes() {
+        List<TSDataType> dataTypes = new ArrayList<>(tagColumnNum + fieldColumnNum);
+        for (int i = 0; i < tagColumnNum; i++) {
+            dataTypes.add(TSDataType.STRING);
+        }
+        for (int i = 0; i < fieldColumnNum; i++) {
+            dataTypes.add(TSDataType.DOUBLE);
+        }
+        return dataTypes;
+    }
+
+    public TableSchema tableSchema() {
+        List<String> columnNames = columnNames();
+        List<TSDataType> dataTypes = dataTypes();
+        List<ColumnSchema> columnSchemas = new ArrayList<>(columnNames.size());
+        for (int i = 0; i < columnNames.size(); i++) {
+            columnSchemas.add(new ColumnSchemaBuilder()
+                    .name(columnNames.get(i))
+                    .dataType(dataTypes.get(i))
+                    .category(i < tagColumnNum ? ColumnCategory.TAG : ColumnCategory.FIELD)
+                    .build());
+        }
+        return new TableSchema(tableName, columnSchemas);
+    }
+
+    /**
+     * 第 device 个设备第 tagIndex 个 TAG 的值
+     */
+    public String tagValue(int device, int tagIndex) {
+        return tagIndex == 0 ? "device_" + device : "tag" + tagIndex + "_" + device % (tagIndex + 1);
+    }
+
+    /**
+     * 第 device 个设备第 row 行第 fieldIndex 个 FIELD 的值
+     */
+    public double fieldValue(int device, long row, int fieldIndex) {
+        return (device + row * (fieldIndex + 1)) % 1000 * 0.5;
+    }
+
+    public long totalRows() {
+        return deviceNum * rowsPerDevice;
+    }
+
+    public long endTime() {
+        return startTime + (rowsPerDevice - 1) * timeInterval;
+    }
+
+    /**
+     * 生成 TsFile，文件已存在时覆盖
+     *
+     * @param file 目标文件
+     * @return 写入的行数
+     */
+    public long generate(File file) throws IOException, WriteProcessException {
+        if (file.exists()) {
+            Files.delete(file.toPath());
+        }
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        try (ITsFileWriter writer = new TsFileWriterBuilder().file(file).tableSchema(tableSchema()).build()) {
+            writeTablets(writer::write);
+        }
+        return totalRows();
+    }
+
+    /**
+     * 生成数据并以 Tablet 的形式交给写入目标
+     *
+     * @param sink 写入目标
+     */
+    public void writeTablets(TabletSink sink) throws IOException, WriteProcessException {
+        Tablet tablet = new Tablet(columnNames(), dataTypes(), tabletSize);
+        if (interleaved) {
+            for (long row = 0; row < rowsPerDevice; row++) {
+                for (int device = firstDevice; device < firstDevice + deviceNum; device++) {
+                    addRow(tablet, device, row);
+                    writeIfFull(tablet, sink);
+                }
+            }
+        } else {
+            for (int device = firstDevice; device < firstDevice + deviceNum; device++) {
+                for (long row = 0; row < rowsPerDevice; row++) {
+                    addRow(tablet, device, row);
+                    writeIfFull(tablet, sink);
+                }
+            }
+        }
+        if (tablet.getRowSize() != 0) {
+            sink.write(tablet);
+            tablet.reset();
+        }
+    }
+
+    private void addRow(Tablet tablet, int device, long row) {
+        int rowIndex = tablet.getRowSize();
+        tablet.addTimestamp(rowIndex, startTime + row * timeInterval);
+        for (int i = 0; i < tagColumnNum; i++) {
+            tablet.addValue(rowIndex, i, tagValue(device, i));
+        }
+        for (int i = 0; i < fieldColumnNum; i++) {
+            tablet.addValue(rowIndex, tagColumnNum + i, fieldValue(device, row, i));
+        }
+    }
+
+    private static void writeIfFull(Tablet tablet, TabletSink sink) throws IOException, WriteProcessException {
+        if (tablet.getRowSize() == tablet.getMaxRowNumber()) {
+            sink.write(tablet);
+            tablet.reset();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package benchmark;
+
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.filter.factory.TagFilterBuilder;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import utils.index.TagIndex;
+import utils.index.TagIndexBuilder;
+import utils.index.TagIndexPlanner;
+import utils.index.TagPredicate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 对比在大量文件上执行 TAG 条件查询时，逐个打开文件查询与先用 TAG 索引筛选文件再查询的耗时。
+ * 每个文件包含不同的设备和不相交的时间范围，查询条件包括等于、IN 和范围。
+ * <p>
+ * 参数：[文件数] [每个文件的设备数] [每个设备的行数]
+ */
+public class TagIndexBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int fileNum = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int devicesPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long rowsPerDevice = args.length > 2 ? Long.parseLong(args[2]) : 100;
+
+        File dir = new File("data/tsfile/tag_index");
+        dir.mkdirs();
+        List<File> files = new ArrayList<>(fileNum);
+        TableFileGenerator generator = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < fileNum; i++) {
+            generator = new TableFileGenerator()
+                    .firstDevice(i * devicesPerFile)
+                    .deviceNum(devicesPerFile)
+                    .rowsPerDevice(rowsPerDevice)
+                    .startTime(i * rowsPerDevice * 1000);
+            File f = new File(dir, "file_" + i + ".tsfile");
+            write(generator, f);
+            files.add(f);
+        }
+        System.out.printf("Generated %d files in %.1f s, index size of one file: %d bytes%n",
+                fileNum, (System.nanoTime() - start) / 1e9, TagIndex.sidecarOf(files.get(0)).length());
+
+        int deviceNum = fileNum * devicesPerFile;
+        SplittableRandom random = new SplittableRandom(42);
+        List<TagPredicate> predicates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            predicates.add(TagPredicate.eq("tag0", generator.tagValue(random.nextInt(deviceNum), 0)));
+        }
+        for (int i = 0; i < 5; i++) {
+            predicates.add(TagPredicate.in("tag0", generator.tagValue(random.nextInt(deviceNum), 0),
+                    generator.tagValue(random.nextInt(deviceNum), 0), generator.tagValue(random.nextInt(deviceNum), 0)));
+        }
+        predicates.add(TagPredicate.between("tag0", "device_100", "device_101"));
+        predicates.add(TagPredicate.and(TagPredicate.eq("tag0", generator.tagValue(deviceNum / 2, 0)),
+                TagPredicate.eq("tag1", "tag1_0")));
+
+        TableSchema tableSchema = generator.tableSchema();
+        TagIndexPlanner planner = new TagIndexPlanner();
+        for (TagPredicate predicate : predicates) {
+            long scanned = query(files, generator, tableSchema, predicate);
+            List<File> planned = new ArrayList<>();
+            for (TagIndexPlanner.FilePlan plan :
+                    planner.plan(files, generator.getTableName(), predicate, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                planned.add(plan.getFile());
+            }
+            long indexed = query(planned, generator, tableSchema, predicate);
+            if (scanned != indexed) {
+                throw new IllegalStateException(
+                        "Result mismatch for " + predicate + ", scan all: " + scanned + ", indexed: " + indexed);
+            }
+        }
+
+        TableFileGenerator schemaGenerator = generator;
+        BenchmarkRunner runner = new BenchmarkRunner(1, 3);
+        System.out.println(runner.run("Open every file", predicates.size(), () -> {
+            for (TagPredicate predicate : predicates) {
+                query(files, schemaGenerator, tableSchema, predicate);
+            }
+        }));
+        System.out.println(runner.run("Plan only", predicates.size(), () -> {
+            for (TagPredicate predicate : predicates) {
+                planner.plan(files, schemaGenerator.getTableName(), predicate, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        }));
+        System.out.println(runner.run("Plan and open candidates", predicates.size(), () -> {
+            for (TagPredicate predicate : predicates) {
+                List<File> planned = new ArrayList<>();
+                for (TagIndexPlanner.FilePlan plan : planner.plan(
+                        files, schemaGenerator.getTableName(), predicate, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                    planned.add(plan.getFile());
+                }
+                query(planned, schemaGenerator, tableSchema, predicate);
+            }
+        }));
+    }
+
+    private static void write(TableFileGenerator generator, File f) throws Exception {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        TableSchema tableSchema = generator.tableSchema();
+        TagIndexBuilder indexBuilder = new TagIndexBuilder(tableSchema);
+        try (ITsFileWriter writer = new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build()) {
+            generator.writeTablets(indexBuilder.wrap(writer::write));
+        }
+        indexBuilder.writeSidecar(f);
+    }
+
+    private static long query(List<File> files, TableFileGenerator generator, TableSchema tableSchema,
+                              TagPredicate predicate) throws Exception {
+        long rowNum = 0;
+        TagFilterBuilder filterBuilder = new TagFilterBuilder(tableSchema);
+        for (File f : files) {
+            try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+                 ResultSet resultSet = reader.query(generator.getTableName(), generator.columnNames(),
+                         Long.MIN_VALUE, Long.MAX_VALUE, predicate.toFilter(filterBuilder))) {
+                while (resultSet.next()) {
+                    rowNum++;
+                }
+            }
+        }
+        return rowNum;
+    }
+}
@@ -0,0 +1,169 @@
+package benchmark;
+
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 宽表基准测试：FIELD 列数从几百到上万时，各环节的单列开销。
+ * 对每个列数分别测量：
+ * <ul>
+ *     <li>构建 TableSchema 的耗时</li>
+ *     <li>写入器在注册表结构后、写入数据后（关闭前）占用的堆内存，折算到每列</li>
+ *     <li>写入 Tablet 的耗时和 close（刷盘并写出索引）的耗时</li>
+ *     <li>文件大小以及索引区（TimeseriesMetadata、MetadataIndex 和 TsFileMetadata）的大小</li>
+ *     <li>打开 ITsFileReader、打开 TsFileSequenceReader 并读取 TsFileMetadata 的耗时</li>
+ *     <li>查询投影 1 列、100 列、全部列的延迟</li>
+ * </ul>
+ * 最后输出按列折算的汇总表，用来观察单列开销在多少列时开始占主导。
+ * <p>
+ * 参数：[FIELD 列数列表，逗号分隔] [设备数] [每个设备的行数]
+ */
+public class WideTableBenchmark {
+
+    // 单个 Tablet 的目标值数量，列数越多 Tablet 的行数越少，避免 Tablet 本身占用过多内存
+    private static final int TABLET_CELLS = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        int[] columnNums = parseColumnNums(args.length > 0 ? args[0] : "100,1000,2000,5000,10000");
+        int deviceNum = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long rowsPerDevice = args.length > 2 ? Long.parseLong(args[2]) : 1000;
+
+        List<String> summary = new ArrayList<>();
+        summary.add(String.format("%8s %14s %14s %12s %14s %12s %12s %12s %12s %12s",
+                "columns", "schemaB/col", "writerB/col", "closeMs", "indexB/col", "openMs",
+                "metaReadMs", "query1Ms", "query100Ms", "queryAllMs"));
+        for (int columnNum : columnNums) {
+            summary.add(run(columnNum, deviceNum, rowsPerDevice));
+        }
+        System.out.println();
+        summary.forEach(System.out::println);
+    }
+
+    private static String run(int columnNum, int deviceNum, long rowsPerDevice) throws Exception {
+        TableFileGenerator generator = new TableFileGenerator()
+                .tableName("wide_table")
+                .tagColumnNum(1)
+                .fieldColumnNum(columnNum)
+                .deviceNum(deviceNum)
+                .rowsPerDevice(rowsPerDevice)
+                .tabletSize(Math.max(1, TABLET_CELLS / columnNum));
+        File f = new File("data/tsfile/wide_table_" + columnNum + ".tsfile");
+        long totalRows = generator.totalRows();
+        long totalCells = totalRows * columnNum;
+        System.out.println("==== " + columnNum + " FIELD columns, " + totalRows + " rows ====");
+
+        BenchmarkRunner schemaRunner = new BenchmarkRunner(3, 10);
+        System.out.println(schemaRunner.run("Build TableSchema", columnNum, generator::tableSchema));
+
+        // 写入器内存：分别在注册表结构后、写完数据未关闭时测量存活的堆内存
+        TableSchema tableSchema = generator.tableSchema();
+        deleteIfExists(f);
+        long baseline = usedHeapAfterGc();
+        ITsFileWriter writer = new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build();
+        long schemaBytes = usedHeapAfterGc() - baseline;
+        long writeStart = System.nanoTime();
+        generator.writeTablets(writer::write);
+        long writeNanos = System.nanoTime() - writeStart;
+        long writerBytes = usedHeapAfterGc() - baseline;
+        long closeStart = System.nanoTime();
+        writer.close();
+        long closeNanos = System.nanoTime() - closeStart;
+
+        long indexBytes;
+        long fileMetadataBytes;
+        try (TsFileSequenceReader reader = new TsFileSequenceReader(f.getPath())) {
+            indexBytes = f.length() - reader.readFileMetadata().getMetaOffset();
+            fileMetadataBytes = reader.getFileMetadataSize();
+        }
+        System.out.printf("%-40s write=%10.3f ms (%.1f ns/cell)  close=%10.3f ms  schemaHeap=%d B  writerHeap=%d B"
+                        + "  fileBytes=%d  indexBytes=%d  fileMetadataBytes=%d%n",
+                "Write and close", writeNanos / 1e6, (double) writeNanos / totalCells, closeNanos / 1e6,
+                schemaBytes, writerBytes, f.length(), indexBytes, fileMetadataBytes);
+
+        BenchmarkRunner openRunner = new BenchmarkRunner(3, 10);
+        BenchmarkResult open = openRunner.run("Open ITsFileReader", 1, () -> {
+            try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build()) {
+                reader.getAllTableSchema();
+            }
+        });
+        BenchmarkResult metaRead = openRunner.run("Read TsFileMetadata", 1, () -> {
+            try (TsFileSequenceReader reader = new TsFileSequenceReader(f.getPath())) {
+                reader.readFileMetadata();
+            }
+        });
+        System.out.println(open);
+        System.out.println(metaRead);
+
+        BenchmarkRunner queryRunner = new BenchmarkRunner(1, 5);
+        List<String> fieldColumns = generator.columnNames().subList(1, columnNum + 1);
+        double[] queryMillis = new double[3];
+        int[] projections = {1, Math.min(100, columnNum), columnNum};
+        for (int i = 0; i < projections.length; i++) {
+            List<String> projection = fieldColumns.subList(0, projections[i]);
+            BenchmarkResult query = queryRunner.run("Query " + projections[i] + " columns", totalRows,
+                    () -> scan(generator.getTableName(), projection, f));
+            queryMillis[i] = query.meanNanos() / 1e6;
+            System.out.println(query);
+        }
+
+        return String.format("%8d %14.1f %14.1f %12.3f %14.1f %12.3f %12.3f %12.3f %12.3f %12.3f",
+                columnNum, (double) schemaBytes / columnNum, (double) writerBytes / columnNum, closeNanos / 1e6,
+                (double) indexBytes / columnNum, open.meanNanos() / 1e6, metaRead.meanNanos() / 1e6,
+                queryMillis[0], queryMillis[1], queryMillis[2]);
+    }
+
+    private static long scan(String tableName, List<String> columnNames, File f) throws Exception {
+        long rowNum = 0;
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             ResultSet resultSet = reader.query(tableName, columnNames, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            while (resultSet.next()) {
+                rowNum++;
+            }
+        }
+        return rowNum;
+    }
+
+    /**
+     * 多次 GC 后的堆内存占用，近似于存活对象大小
+     */
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return memoryBean.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void deleteIfExists(File f) throws IOException {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        f.getParentFile().mkdirs();
+    }
+
+    private static int[] parseColumnNums(String value) {
+        String[] parts = value.split(",");
+        int[] columnNums = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            columnNums[i] = Integer.parseInt(parts[i].trim());
+            if (columnNums[i] <= 0) {
+                throw new IllegalArgumentException("column number must be positive, but was " + columnNums[i]);
+            }
+        }
+        return columnNums;
+    }
+}
@@ -0,0 +1,89 @@
+package utils;
+
+/**
+ * 基于下标数组的原始类型排序工具，排序时只移动int下标，不产生装箱对象
+ */
+public final class IndexSorter {
+
+    /**
+     * 比较两个下标所指向的元素
+     */
+    @FunctionalInterface
+    public interface IndexComparator {
+        int compare(int left, int right);
+    }
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private IndexSorter() {
+    }
+
+    /**
+     * 生成 0..size-1 的下标数组
+     *
+     * @param size 元素个数
+     * @return 下标数组
+     */
+    public static int[] identity(int size) {
+        int[] index = new int[size];
+        for (int i = 0; i < size; i++) {
+            index[i] = i;
+        }
+        return index;
+    }
+
+    /**
+     * 对下标数组的 [from, to) 区间做稳定排序（归并排序）
+     *
+     * @param index      下标数组
+     * @param from       起始位置（包含）
+     * @param to         结束位置（不包含）
+     * @param comparator 下标比较器
+     */
+    public static void sort(int[] index, int from, int to, IndexComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int[] buffer = new int[to - from];
+        mergeSort(index, buffer, from, to, comparator);
+    }
+
+    private static void mergeSort(int[] index, int[] buffer, int from, int to, IndexComparator comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(index, from, to, comparator);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(index, buffer, from, mid, comparator);
+        mergeSort(index, buffer, mid, to, comparator);
+        // 两段已经有序，无需合并
+        if (comparator.compare(index[mid - 1], index[mid]) <= 0) {
+            return;
+        }
+        int length = mid - from;
+        System.arraycopy(index, from, buffer, 0, length);
+        int i = 0;
+        int j = mid;
+        int k = from;
+        while (i < length && j < to) {
+            if (comparator.compare(index[j], buffer[i]) < 0) {
+                index[k++] = index[j++];
+            } else {
+                index[k++] = buffer[i++];
+            }
+        }
+        System.arraycopy(buffer, i, index, k, length - i);
+    }
+
+    private static void insertionSort(int[] index, int from, int to, IndexComparator comparator) {
+        for (int i = from + 1; i < to; i++) {
+            int current = index[i];
+            int j = i - 1;
+            while (j >= from && comparator.compare(index[j], current) > 0) {
+                index[j + 1] = index[j];
+                j--;
+            }
+            index[j + 1] = current;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package utils.aggregation;
+
+import org.apache.tsfile.common.conf.TSFileConfig;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.read.common.Field;
+import org.apache.tsfile.read.common.RowRecord;
+import org.apache.tsfile.read.query.dataset.AbstractResultSet;
+import org.apache.tsfile.utils.Binary;
+import utils.IndexSorter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 时间桶聚合的输出结果集。
+ * 第一列 Time 为时间桶起始时间，其后依次为分组 TAG 列和各聚合结果列，例如 avg(S1)。
+ */
+class AggregatedResultSet extends AbstractResultSet {
+
+    private final long origin;
+    private final long interval;
+    private final int groupByColumnNum;
+    private final List<AggregationType> aggregationTypes;
+    private final int[] accumulatorOfAggregation;
+    private final ColumnAccumulator[] accumulators;
+    private final GroupTable groups;
+    private final CellTable cells;
+    private final int[] order;
+    private int cursor = -1;
+
+    AggregatedResultSet(long origin, long interval, List<String> groupByColumns,
+                        List<String> aggregatedColumns, List<AggregationType> aggregationTypes,
+                        int[] accumulatorOfAggregation, ColumnAccumulator[] accumulators,
+                        GroupTable groups, CellTable cells) {
+        super(outputColumnNames(groupByColumns, aggregatedColumns, aggregationTypes),
+                outputDataTypes(groupByColumns.size(), aggregationTypes, accumulatorOfAggregation, accumulators));
+        this.origin = origin;
+        this.interval = interval;
+        this.groupByColumnNum = groupByColumns.size();
+        this.aggregationTypes = aggregationTypes;
+        this.accumulatorOfAggregation = accumulatorOfAggregation;
+        this.accumulators = accumulators;
+        this.groups = groups;
+        this.cells = cells;
+        this.order = IndexSorter.identity(cells.size());
+        IndexSorter.sort(order, 0, order.length, (left, right) -> {
+            int cmp = Integer.compare(cells.group(left), cells.group(right));
+            return cmp != 0 ? cmp : Long.compare(cells.bucket(left), cells.bucket(right));
+        });
+    }
+
+    @Override
+    public boolean next() {
+        if (cursor + 1 >= order.length) {
+            return false;
+        }
+        int cell = order[++cursor];
+        List<Field> fields = new ArrayList<>(groupByColumnNum + aggregationTypes.size());
+        String[] tags = groups.tags(cells.group(cell));
+        for (String tag : tags) {
+            if (tag == null) {
+                fields.add(null);
+            } else {
+                Field field = new Field(TSDataType.STRING);
+                field.setBinaryV(new Binary(tag, TSFileConfig.STRING_CHARSET));
+                fields.add(field);
+            }
+        }
+        for (int i = 0; i < aggregationTypes.size(); i++) {
+            AggregationType type = aggregationTypes.get(i);
+            ColumnAccumulator accumulator = accumulators[accumulatorOfAggregation[i]];
+            if (type == AggregationType.COUNT) {
+                Field field = new Field(TSDataType.INT64);
+                field.setLongV(accumulator.count(cell));
+                fields.add(field);
+            } else if (accumulator.count(cell) == 0) {
+                // 桶内该列全部为空
+                fields.add(null);
+            } else if (accumulator.isIntegral() && ColumnAccumulator.isLongResult(type)) {
+                Field field = new Field(TSDataType.INT64);
+                field.setLongV(accumulator.longValue(cell, type));
+                fields.add(field);
+            } else {
+                Field field = new Field(TSDataType.DOUBLE);
+                field.setDoubleV(accumulator.value(cell, type));
+                fields.add(field);
+            }
+        }
+        currentRow = new RowRecord(origin + cells.bucket(cell) * interval, fields);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        // 结果全部在内存中，无需释放资源
+    }
+
+    private static List<String> outputColumnNames(List<String> groupByColumns, List<String> aggregatedColumns,
+                                                  List<AggregationType> aggregationTypes) {
+        List<String> names = new ArrayList<>(groupByColumns);
+        for (int i = 0; i < aggregatedColumns.size(); i++) {
+            names.add(aggregationTypes.get(i).outputColumnName(aggregatedColumns.get(i)));
+        }
+        return names;
+    }
+
+    /**
+     * count 以及整数列的 min/max/first/last 输出为 INT64，其余聚合输出为 DOUBLE
+     */
+    private static List<TSDataType> outputDataTypes(int groupByColumnNum, List<AggregationType> aggregationTypes,
+                                                    int[] accumulatorOfAggregation, ColumnAccumulator[] accumulators) {
+        List<TSDataType> types = new ArrayList<>(groupByColumnNum + aggregationTypes.size());
+        for (int i = 0; i < groupByColumnNum; i++) {
+            types.add(TSDataType.STRING);
+        }
+        for (int i = 0; i < aggregationTypes.size(); i++) {
+            AggregationType type = aggregationTypes.get(i);
+            boolean longResult = type == AggregationType.COUNT
+                    || (accumulators[accumulatorOfAggregation[i]].isIntegral() && ColumnAccumulator.isLongResult(type));
+            types.add(longResult ? TSDataType.INT64 : TSDataType.DOUBLE);
+        }
+        return types;
+    }
+}
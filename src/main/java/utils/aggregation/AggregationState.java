@@ -0,0 +1,123 @@
+package utils.aggregation;
+
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聚合的中间状态：分组表、cell 表以及每个被聚合列的累加器。
+ * 内存占用为 O(分组数 × 时间桶数)。
+ */
+class AggregationState {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final long origin;
+    private final long interval;
+    private final List<String> groupByColumns;
+    private final List<String> aggregatedColumns;
+    private final List<AggregationType> aggregationTypes;
+
+    // 去重后的被聚合列，以及每个聚合函数对应的累加器下标
+    private final List<String> distinctColumns = new ArrayList<>();
+    private final int[] accumulatorOfAggregation;
+    private final ColumnAccumulator[] accumulators;
+
+    private final GroupTable groups = new GroupTable();
+    private final CellTable cells = new CellTable();
+    private int capacity = INITIAL_CAPACITY;
+
+    /**
+     * @param dataTypes 每个被聚合列的数据类型，键为列名；非数值列只支持 count
+     */
+    AggregationState(long origin, long interval, List<String> groupByColumns,
+                     List<String> aggregatedColumns, List<AggregationType> aggregationTypes,
+                     Map<String, TSDataType> dataTypes) {
+        this.origin = origin;
+        this.interval = interval;
+        this.groupByColumns = groupByColumns;
+        this.aggregatedColumns = aggregatedColumns;
+        this.aggregationTypes = aggregationTypes;
+
+        Map<String, EnumSet<AggregationType>> typesOfColumn = new LinkedHashMap<>();
+        for (int i = 0; i < aggregatedColumns.size(); i++) {
+            typesOfColumn.computeIfAbsent(aggregatedColumns.get(i), k -> EnumSet.noneOf(AggregationType.class))
+                    .add(aggregationTypes.get(i));
+        }
+        distinctColumns.addAll(typesOfColumn.keySet());
+        accumulators = new ColumnAccumulator[distinctColumns.size()];
+        for (int i = 0; i < accumulators.length; i++) {
+            String column = distinctColumns.get(i);
+            TSDataType dataType = dataTypes.get(column);
+            EnumSet<AggregationType> types = typesOfColumn.get(column);
+            if (!TimeBucketAggregator.isNumeric(dataType) && !types.equals(EnumSet.of(AggregationType.COUNT))) {
+                throw new IllegalArgumentException(
+                        "Column '" + column + "' of type " + dataType + " only supports count");
+            }
+            accumulators[i] = new ColumnAccumulator(types, TimeBucketAggregator.isIntegral(dataType), INITIAL_CAPACITY);
+        }
+        accumulatorOfAggregation = new int[aggregatedColumns.size()];
+        for (int i = 0; i < accumulatorOfAggregation.length; i++) {
+            accumulatorOfAggregation[i] = distinctColumns.indexOf(aggregatedColumns.get(i));
+        }
+    }
+
+    /**
+     * 去重后的被聚合列，下标即累加器编号
+     */
+    List<String> distinctColumns() {
+        return distinctColumns;
+    }
+
+    /**
+     * 某个累加器上登记的聚合函数集合
+     */
+    EnumSet<AggregationType> typesOf(int accumulator) {
+        EnumSet<AggregationType> types = EnumSet.noneOf(AggregationType.class);
+        for (int i = 0; i < accumulatorOfAggregation.length; i++) {
+            if (accumulatorOfAggregation[i] == accumulator) {
+                types.add(aggregationTypes.get(i));
+            }
+        }
+        return types;
+    }
+
+    int groupOf(String[] tags) {
+        return groups.getOrInsert(tags);
+    }
+
+    long bucketOf(long time) {
+        return Math.floorDiv(time - origin, interval);
+    }
+
+    /**
+     * 定位 (分组, 时间桶) 对应的 cell，必要时为所有累加器扩容
+     */
+    int cellOf(int groupId, long bucket) {
+        int cell = cells.getOrInsert(groupId, bucket);
+        if (cell >= capacity) {
+            capacity = Math.max(cell + 1, capacity << 1);
+            for (ColumnAccumulator accumulator : accumulators) {
+                accumulator.ensureCapacity(capacity);
+            }
+        }
+        return cell;
+    }
+
+    ColumnAccumulator accumulator(int index) {
+        return accumulators[index];
+    }
+
+    /**
+     * 将当前状态输出为结果集，按分组首次出现的顺序、时间桶升序排列
+     */
+    ResultSet toResultSet() {
+        return new AggregatedResultSet(origin, interval, groupByColumns, aggregatedColumns, aggregationTypes,
+                accumulatorOfAggregation, accumulators, groups, cells);
+    }
+}
@@ -0,0 +1,30 @@
+package utils.aggregation;
+
+/**
+ * 支持的聚合函数
+ */
+public enum AggregationType {
+    COUNT("count"),
+    SUM("sum"),
+    MIN("min"),
+    MAX("max"),
+    AVG("avg"),
+    FIRST("first"),
+    LAST("last");
+
+    private final String functionName;
+
+    AggregationType(String functionName) {
+        this.functionName = functionName;
+    }
+
+    /**
+     * 生成聚合结果列名，例如 sum(S1)
+     *
+     * @param columnName 被聚合的列名
+     * @return 结果列名
+     */
+    public String outputColumnName(String columnName) {
+        return functionName + "(" + columnName + ")";
+    }
+}
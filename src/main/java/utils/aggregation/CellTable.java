@@ -0,0 +1,81 @@
+package utils.aggregation;
+
+import java.util.Arrays;
+
+/**
+ * 以 (分组编号, 时间桶编号) 为键的开放寻址哈希表，返回连续的 cell 编号。
+ * cell 数量即分组数 × 实际出现的时间桶数，与输入行数无关。
+ */
+class CellTable {
+
+    private int[] cellGroups = new int[64];
+    private long[] cellBuckets = new long[64];
+    private int size = 0;
+    // 槽位中保存 cellId + 1，0 表示空槽
+    private int[] slots = new int[128];
+    private int mask = slots.length - 1;
+
+    /**
+     * 查找或插入 cell
+     *
+     * @param groupId 分组编号
+     * @param bucket  时间桶编号
+     * @return cell 编号
+     */
+    int getOrInsert(int groupId, long bucket) {
+        int pos = hash(groupId, bucket) & mask;
+        while (true) {
+            int slot = slots[pos];
+            if (slot == 0) {
+                break;
+            }
+            int cell = slot - 1;
+            if (cellGroups[cell] == groupId && cellBuckets[cell] == bucket) {
+                return cell;
+            }
+            pos = (pos + 1) & mask;
+        }
+        int cell = size++;
+        if (cell == cellGroups.length) {
+            cellGroups = Arrays.copyOf(cellGroups, cell << 1);
+            cellBuckets = Arrays.copyOf(cellBuckets, cell << 1);
+        }
+        cellGroups[cell] = groupId;
+        cellBuckets[cell] = bucket;
+        slots[pos] = cell + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return cell;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int group(int cell) {
+        return cellGroups[cell];
+    }
+
+    long bucket(int cell) {
+        return cellBuckets[cell];
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        mask = slots.length - 1;
+        for (int cell = 0; cell < size; cell++) {
+            int pos = hash(cellGroups[cell], cellBuckets[cell]) & mask;
+            while (slots[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            slots[pos] = cell + 1;
+        }
+    }
+
+    private static int hash(int groupId, long bucket) {
+        long h = bucket * 0x9E3779B97F4A7C15L + groupId;
+        h ^= h >>> 32;
+        return (int) (h ^ (h >>> 16));
+    }
+}
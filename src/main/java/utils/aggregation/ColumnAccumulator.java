@@ -0,0 +1,282 @@
+package utils.aggregation;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+/**
+ * 单个数值列的累加器，按 cell（分组 × 时间桶）下标保存原始类型数组，避免装箱。
+ * 整数列（INT32/INT64/TIMESTAMP）的 min/max/first/last 保存在 long 数组中，超过 2^53 的值不会丢失精度；
+ * 浮点列保存在 double 数组中。sum 总是按 double 累加，与 TsFile 中 INT64 统计信息的 sum 一致。
+ */
+class ColumnAccumulator {
+
+    private final boolean integral;
+    private final boolean needSum;
+    private final boolean needMinMax;
+    private final boolean needFirst;
+    private final boolean needLast;
+
+    private long[] count;
+    private double[] sum;
+    private long[] firstTime;
+    private long[] lastTime;
+    // 浮点列的 min/max/first/last
+    private double[] min;
+    private double[] max;
+    private double[] first;
+    private double[] last;
+    // 整数列的 min/max/first/last
+    private long[] longMin;
+    private long[] longMax;
+    private long[] longFirst;
+    private long[] longLast;
+
+    /**
+     * @param types           该列上的聚合函数
+     * @param integral        是否为整数列，整数列只能通过 addLong/mergeLong 累加
+     * @param initialCapacity 初始 cell 数
+     */
+    ColumnAccumulator(EnumSet<AggregationType> types, boolean integral, int initialCapacity) {
+        this.integral = integral;
+        this.needSum = types.contains(AggregationType.SUM) || types.contains(AggregationType.AVG);
+        this.needMinMax = types.contains(AggregationType.MIN) || types.contains(AggregationType.MAX);
+        this.needFirst = types.contains(AggregationType.FIRST);
+        this.needLast = types.contains(AggregationType.LAST);
+        // COUNT 同时用来判断 cell 中是否存在非空值，因此总是维护
+        count = new long[initialCapacity];
+        if (needSum) {
+            sum = new double[initialCapacity];
+        }
+        if (needMinMax) {
+            if (integral) {
+                longMin = new long[initialCapacity];
+                longMax = new long[initialCapacity];
+            } else {
+                min = new double[initialCapacity];
+                max = new double[initialCapacity];
+            }
+        }
+        if (needFirst) {
+            firstTime = new long[initialCapacity];
+            if (integral) {
+                longFirst = new long[initialCapacity];
+            } else {
+                first = new double[initialCapacity];
+            }
+        }
+        if (needLast) {
+            lastTime = new long[initialCapacity];
+            if (integral) {
+                longLast = new long[initialCapacity];
+            } else {
+                last = new double[initialCapacity];
+            }
+        }
+    }
+
+    /**
+     * 是否为整数列，整数列的 min/max/first/last 通过 {@link #longValue} 读取
+     */
+    boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * 扩容到至少 capacity 个 cell
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity <= count.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, count.length << 1);
+        count = Arrays.copyOf(count, newCapacity);
+        sum = grow(sum, newCapacity);
+        firstTime = grow(firstTime, newCapacity);
+        lastTime = grow(lastTime, newCapacity);
+        min = grow(min, newCapacity);
+        max = grow(max, newCapacity);
+        first = grow(first, newCapacity);
+        last = grow(last, newCapacity);
+        longMin = grow(longMin, newCapacity);
+        longMax = grow(longMax, newCapacity);
+        longFirst = grow(longFirst, newCapacity);
+        longLast = grow(longLast, newCapacity);
+    }
+
+    /**
+     * 累加浮点列的一个非空值；非数值列只参与 count，value 传 0
+     */
+    void add(int cell, long time, double value) {
+        long c = count[cell]++;
+        if (needSum) {
+            sum[cell] += value;
+        }
+        if (needMinMax) {
+            if (c == 0 || value < min[cell]) {
+                min[cell] = value;
+            }
+            if (c == 0 || value > max[cell]) {
+                max[cell] = value;
+            }
+        }
+        if (needFirst && (c == 0 || time < firstTime[cell])) {
+            first[cell] = value;
+            firstTime[cell] = time;
+        }
+        if (needLast && (c == 0 || time >= lastTime[cell])) {
+            last[cell] = value;
+            lastTime[cell] = time;
+        }
+    }
+
+    /**
+     * 累加整数列的一个非空值
+     */
+    void addLong(int cell, long time, long value) {
+        long c = count[cell]++;
+        if (needSum) {
+            sum[cell] += value;
+        }
+        if (needMinMax) {
+            if (c == 0 || value < longMin[cell]) {
+                longMin[cell] = value;
+            }
+            if (c == 0 || value > longMax[cell]) {
+                longMax[cell] = value;
+            }
+        }
+        if (needFirst && (c == 0 || time < firstTime[cell])) {
+            longFirst[cell] = value;
+            firstTime[cell] = time;
+        }
+        if (needLast && (c == 0 || time >= lastTime[cell])) {
+            longLast[cell] = value;
+            lastTime[cell] = time;
+        }
+    }
+
+    /**
+     * 合并浮点列一段已经汇总好的统计信息（例如 chunk 或 page 的 Statistics）
+     */
+    void merge(int cell, long partCount, double partSum, double partMin, double partMax,
+               long partFirstTime, double partFirst, long partLastTime, double partLast) {
+        if (partCount <= 0) {
+            return;
+        }
+        long c = count[cell];
+        count[cell] = c + partCount;
+        if (needSum) {
+            sum[cell] += partSum;
+        }
+        if (needMinMax) {
+            if (c == 0 || partMin < min[cell]) {
+                min[cell] = partMin;
+            }
+            if (c == 0 || partMax > max[cell]) {
+                max[cell] = partMax;
+            }
+        }
+        if (needFirst && (c == 0 || partFirstTime < firstTime[cell])) {
+            first[cell] = partFirst;
+            firstTime[cell] = partFirstTime;
+        }
+        if (needLast && (c == 0 || partLastTime >= lastTime[cell])) {
+            last[cell] = partLast;
+            lastTime[cell] = partLastTime;
+        }
+    }
+
+    /**
+     * 合并整数列一段已经汇总好的统计信息
+     */
+    void mergeLong(int cell, long partCount, double partSum, long partMin, long partMax,
+                   long partFirstTime, long partFirst, long partLastTime, long partLast) {
+        if (partCount <= 0) {
+            return;
+        }
+        long c = count[cell];
+        count[cell] = c + partCount;
+        if (needSum) {
+            sum[cell] += partSum;
+        }
+        if (needMinMax) {
+            if (c == 0 || partMin < longMin[cell]) {
+                longMin[cell] = partMin;
+            }
+            if (c == 0 || partMax > longMax[cell]) {
+                longMax[cell] = partMax;
+            }
+        }
+        if (needFirst && (c == 0 || partFirstTime < firstTime[cell])) {
+            longFirst[cell] = partFirst;
+            firstTime[cell] = partFirstTime;
+        }
+        if (needLast && (c == 0 || partLastTime >= lastTime[cell])) {
+            longLast[cell] = partLast;
+            lastTime[cell] = partLastTime;
+        }
+    }
+
+    long count(int cell) {
+        return count[cell];
+    }
+
+    /**
+     * 读取聚合结果，COUNT 以外的聚合在 count 为 0 时没有意义，调用方需先判断；
+     * 整数列的 min/max/first/last 需通过 {@link #longValue} 读取
+     */
+    double value(int cell, AggregationType type) {
+        switch (type) {
+            case COUNT:
+                return count[cell];
+            case SUM:
+                return sum[cell];
+            case AVG:
+                return sum[cell] / count[cell];
+            case MIN:
+                return min[cell];
+            case MAX:
+                return max[cell];
+            case FIRST:
+                return first[cell];
+            case LAST:
+                return last[cell];
+            default:
+                throw new IllegalArgumentException("Unsupported aggregation type: " + type);
+        }
+    }
+
+    /**
+     * 读取整数列的 min/max/first/last
+     */
+    long longValue(int cell, AggregationType type) {
+        switch (type) {
+            case MIN:
+                return longMin[cell];
+            case MAX:
+                return longMax[cell];
+            case FIRST:
+                return longFirst[cell];
+            case LAST:
+                return longLast[cell];
+            default:
+                throw new IllegalArgumentException("Unsupported aggregation type: " + type);
+        }
+    }
+
+    /**
+     * 整数列的该聚合结果是否按 long 输出
+     */
+    static boolean isLongResult(AggregationType type) {
+        return type == AggregationType.MIN || type == AggregationType.MAX
+                || type == AggregationType.FIRST || type == AggregationType.LAST;
+    }
+
+    private static long[] grow(long[] array, int newCapacity) {
+        return array == null ? null : Arrays.copyOf(array, newCapacity);
+    }
+
+    private static double[] grow(double[] array, int newCapacity) {
+        return array == null ? null : Arrays.copyOf(array, newCapacity);
+    }
+}
@@ -0,0 +1,81 @@
+package utils.aggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 以 TAG 值元组为键的开放寻址哈希表，返回连续的分组编号。
+ * 查找时使用可复用的临时数组，只有出现新分组时才复制元组。
+ */
+class GroupTable {
+
+    private final List<String[]> groups = new ArrayList<>();
+    private int[] groupHashes = new int[16];
+    // 槽位中保存 groupId + 1，0 表示空槽
+    private int[] slots = new int[64];
+    private int mask = slots.length - 1;
+
+    /**
+     * 查找或插入分组
+     *
+     * @param tags 当前行的 TAG 值，调用方可以复用该数组
+     * @return 分组编号
+     */
+    int getOrInsert(String[] tags) {
+        int hash = hash(tags);
+        int pos = hash & mask;
+        while (true) {
+            int slot = slots[pos];
+            if (slot == 0) {
+                break;
+            }
+            int groupId = slot - 1;
+            if (groupHashes[groupId] == hash && Arrays.equals(groups.get(groupId), tags)) {
+                return groupId;
+            }
+            pos = (pos + 1) & mask;
+        }
+        int groupId = groups.size();
+        groups.add(tags.clone());
+        if (groupId == groupHashes.length) {
+            groupHashes = Arrays.copyOf(groupHashes, groupId << 1);
+        }
+        groupHashes[groupId] = hash;
+        slots[pos] = groupId + 1;
+        if (groups.size() * 2 > slots.length) {
+            rehash();
+        }
+        return groupId;
+    }
+
+    int size() {
+        return groups.size();
+    }
+
+    String[] tags(int groupId) {
+        return groups.get(groupId);
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        mask = slots.length - 1;
+        for (int groupId = 0; groupId < groups.size(); groupId++) {
+            int pos = groupHashes[groupId] & mask;
+            while (slots[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            slots[pos] = groupId + 1;
+        }
+    }
+
+    private static int hash(String[] tags) {
+        int h = 1;
+        for (String tag : tags) {
+            h = 31 * h + Objects.hashCode(tag);
+        }
+        // 扰动低位，减少线性探测的聚集
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,305 @@
+package utils.aggregation;
+
+import org.apache.tsfile.block.column.Column;
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.file.metadata.AlignedChunkMetadata;
+import org.apache.tsfile.file.metadata.ChunkMetadata;
+import org.apache.tsfile.file.metadata.IChunkMetadata;
+import org.apache.tsfile.file.metadata.IDeviceID;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.file.metadata.statistics.Statistics;
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.read.common.Chunk;
+import org.apache.tsfile.read.common.block.TsBlock;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.reader.IPageReader;
+import org.apache.tsfile.read.reader.chunk.AlignedChunkReader;
+import org.apache.tsfile.write.schema.IMeasurementSchema;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 基于 TsFileSequenceReader 元数据的聚合。
+ * chunk 完全落在查询时间范围且只覆盖一个时间桶时直接合并 chunk 统计信息；
+ * 否则逐个 page 判断，同样能用 page 统计信息的就不解码，只有跨越边界的 page 才解码。
+ * 不处理 mods 删除文件，适用于没有删除操作的 TsFile。
+ */
+class StatisticsAggregation {
+
+    private final TsFileSequenceReader reader;
+    private final TimeBucketAggregator aggregator;
+    private final long startTime;
+    private final long endTime;
+
+    // 统计信息的使用情况
+    private long mergedChunkNum = 0;
+    private long mergedPageNum = 0;
+    private long decodedPageNum = 0;
+
+    // 被聚合列的类型在读取表结构后才能确定，因此在 run 中创建
+    private AggregationState state;
+
+    StatisticsAggregation(TsFileSequenceReader reader, TimeBucketAggregator aggregator, long startTime, long endTime) {
+        this.reader = reader;
+        this.aggregator = aggregator;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    /**
+     * 遍历表中所有满足 TAG 条件的设备并聚合
+     *
+     * @param tableName      表名
+     * @param groupByColumns 分组 TAG 列
+     * @param tagValues      TAG 等值过滤条件，键为 TAG 列名，可以为空
+     * @return 聚合结果集
+     */
+    ResultSet run(String tableName, List<String> groupByColumns, Map<String, String> tagValues) throws IOException {
+        TableSchema tableSchema = reader.readFileMetadata().getTableSchemaMap().get(tableName);
+        if (tableSchema == null) {
+            throw new IllegalArgumentException("Table '" + tableName + "' does not exist");
+        }
+        List<String> tagColumns = tagColumnsOf(tableSchema);
+        state = aggregator.newState(dataTypesOf(tableSchema, aggregator.getAggregatedColumns()));
+
+        // 设备ID的第 0 段为表名，第 i + 1 段为第 i 个 TAG 列
+        int[] groupSegments = new int[groupByColumns.size()];
+        for (int i = 0; i < groupSegments.length; i++) {
+            groupSegments[i] = segmentOf(tagColumns, groupByColumns.get(i));
+        }
+        int[] filterSegments = new int[tagValues.size()];
+        String[] filterValues = new String[tagValues.size()];
+        int f = 0;
+        for (Map.Entry<String, String> entry : tagValues.entrySet()) {
+            filterSegments[f] = segmentOf(tagColumns, entry.getKey());
+            filterValues[f++] = entry.getValue();
+        }
+
+        List<String> measurements = state.distinctColumns();
+        String[] tags = new String[groupSegments.length];
+        for (IDeviceID deviceID : reader.getAllDevices()) {
+            if (!tableName.equalsIgnoreCase(deviceID.getTableName()) || !matches(deviceID, filterSegments, filterValues)) {
+                continue;
+            }
+            for (int i = 0; i < groupSegments.length; i++) {
+                tags[i] = segmentAt(deviceID, groupSegments[i]);
+            }
+            int groupId = state.groupOf(tags);
+            for (AlignedChunkMetadata chunkMetadata : reader.getAlignedChunkMetadata(deviceID, true)) {
+                if (chunkMetadata.getEndTime() < startTime || chunkMetadata.getStartTime() > endTime) {
+                    continue;
+                }
+                for (int i = 0; i < measurements.size(); i++) {
+                    aggregateChunk(groupId, i, chunkMetadata, measurements.get(i));
+                }
+            }
+        }
+        return state.toResultSet();
+    }
+
+    private void aggregateChunk(int groupId, int accumulator, AlignedChunkMetadata alignedChunkMetadata,
+                                String measurement) throws IOException {
+        IChunkMetadata valueChunkMetadata = null;
+        for (IChunkMetadata chunkMetadata : alignedChunkMetadata.getValueChunkMetadataList()) {
+            if (chunkMetadata != null && measurement.equalsIgnoreCase(chunkMetadata.getMeasurementUid())) {
+                valueChunkMetadata = chunkMetadata;
+                break;
+            }
+        }
+        if (valueChunkMetadata == null) {
+            // 该 chunk 中这一列全部为空
+            return;
+        }
+        TSDataType dataType = valueChunkMetadata.getDataType();
+        Statistics<? extends Serializable> statistics = valueChunkMetadata.getStatistics();
+        if (mergeIfCovered(groupId, accumulator, dataType, statistics)) {
+            mergedChunkNum++;
+            return;
+        }
+        if (statistics.getEndTime() < startTime || statistics.getStartTime() > endTime) {
+            return;
+        }
+
+        Chunk timeChunk = reader.readMemChunk((ChunkMetadata) alignedChunkMetadata.getTimeChunkMetadata());
+        Chunk valueChunk = reader.readMemChunk((ChunkMetadata) valueChunkMetadata);
+        AlignedChunkReader chunkReader = new AlignedChunkReader(timeChunk, Collections.singletonList(valueChunk));
+        for (IPageReader pageReader : chunkReader.loadPageReaderList()) {
+            Optional<Statistics<? extends Serializable>> pageStatistics = pageReader.getMeasurementStatistics(0);
+            if (!pageStatistics.isPresent()) {
+                continue;
+            }
+            if (mergeIfCovered(groupId, accumulator, dataType, pageStatistics.get())) {
+                mergedPageNum++;
+                continue;
+            }
+            if (pageStatistics.get().getEndTime() < startTime || pageStatistics.get().getStartTime() > endTime) {
+                continue;
+            }
+            decodePage(groupId, accumulator, dataType, pageReader.getAllSatisfiedData());
+            decodedPageNum++;
+        }
+    }
+
+    /**
+     * 直接合并统计信息的 value chunk 数
+     */
+    long getMergedChunkNum() {
+        return mergedChunkNum;
+    }
+
+    /**
+     * 直接合并统计信息的 value page 数
+     */
+    long getMergedPageNum() {
+        return mergedPageNum;
+    }
+
+    /**
+     * 解码的 value page 数
+     */
+    long getDecodedPageNum() {
+        return decodedPageNum;
+    }
+
+    /**
+     * 统计信息完全落在查询范围内且只覆盖一个时间桶时直接合并
+     *
+     * @return 是否已合并
+     */
+    private boolean mergeIfCovered(int groupId, int accumulator, TSDataType dataType,
+                                   Statistics<? extends Serializable> statistics) {
+        long first = statistics.getStartTime();
+        long last = statistics.getEndTime();
+        if (first < startTime || last > endTime) {
+            return false;
+        }
+        long bucket = state.bucketOf(first);
+        if (bucket != state.bucketOf(last)) {
+            return false;
+        }
+        int cell = state.cellOf(groupId, bucket);
+        ColumnAccumulator columnAccumulator = state.accumulator(accumulator);
+        if (!TimeBucketAggregator.isNumeric(dataType)) {
+            columnAccumulator.merge(cell, statistics.getCount(), 0, 0, 0, first, 0, last, 0);
+            return true;
+        }
+        // INT64 统计信息的 sum 本身就是 double
+        double sum = dataType == TSDataType.INT32 ? statistics.getSumLongValue() : statistics.getSumDoubleValue();
+        if (columnAccumulator.isIntegral()) {
+            columnAccumulator.mergeLong(cell, statistics.getCount(), sum,
+                    toLong(statistics.getMinValue()), toLong(statistics.getMaxValue()),
+                    first, toLong(statistics.getFirstValue()), last, toLong(statistics.getLastValue()));
+        } else {
+            columnAccumulator.merge(cell, statistics.getCount(), sum,
+                    toDouble(statistics.getMinValue()), toDouble(statistics.getMaxValue()),
+                    first, toDouble(statistics.getFirstValue()), last, toDouble(statistics.getLastValue()));
+        }
+        return true;
+    }
+
+    private void decodePage(int groupId, int accumulator, TSDataType dataType, TsBlock tsBlock) {
+        Column column = tsBlock.getColumn(0);
+        ColumnAccumulator columnAccumulator = state.accumulator(accumulator);
+        int positionCount = tsBlock.getPositionCount();
+        for (int i = 0; i < positionCount; i++) {
+            long time = tsBlock.getTimeByIndex(i);
+            if (time < startTime || time > endTime || column.isNull(i)) {
+                continue;
+            }
+            int cell = state.cellOf(groupId, state.bucketOf(time));
+            switch (dataType) {
+                case INT32:
+                    columnAccumulator.addLong(cell, time, column.getInt(i));
+                    break;
+                case INT64:
+                case TIMESTAMP:
+                    columnAccumulator.addLong(cell, time, column.getLong(i));
+                    break;
+                case FLOAT:
+                    columnAccumulator.add(cell, time, column.getFloat(i));
+                    break;
+                case DOUBLE:
+                    columnAccumulator.add(cell, time, column.getDouble(i));
+                    break;
+                default:
+                    // 非数值列只参与 count
+                    columnAccumulator.add(cell, time, 0);
+            }
+        }
+    }
+
+    private static double toDouble(Serializable value) {
+        return ((Number) value).doubleValue();
+    }
+
+    private static long toLong(Serializable value) {
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * 从表结构中读取被聚合列的类型，列名不区分大小写
+     */
+    private static Map<String, TSDataType> dataTypesOf(TableSchema tableSchema, List<String> columns) {
+        Map<String, TSDataType> dataTypes = new HashMap<>();
+        for (String column : columns) {
+            for (IMeasurementSchema columnSchema : tableSchema.getColumnSchemas()) {
+                if (columnSchema.getMeasurementName().equalsIgnoreCase(column)) {
+                    dataTypes.put(column, columnSchema.getType());
+                    break;
+                }
+            }
+            if (!dataTypes.containsKey(column)) {
+                throw new IllegalArgumentException(
+                        "Column '" + column + "' does not exist in table '" + tableSchema.getTableName() + "'");
+            }
+        }
+        return dataTypes;
+    }
+
+    private static List<String> tagColumnsOf(TableSchema tableSchema) {
+        List<String> tagColumns = new ArrayList<>();
+        List<IMeasurementSchema> columnSchemas = tableSchema.getColumnSchemas();
+        List<ColumnCategory> columnCategories = tableSchema.getColumnTypes();
+        for (int i = 0; i < columnSchemas.size(); i++) {
+            if (columnCategories.get(i) == ColumnCategory.TAG) {
+                tagColumns.add(columnSchemas.get(i).getMeasurementName());
+            }
+        }
+        return tagColumns;
+    }
+
+    private static int segmentOf(List<String> tagColumns, String columnName) {
+        for (int i = 0; i < tagColumns.size(); i++) {
+            if (tagColumns.get(i).equalsIgnoreCase(columnName)) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Column '" + columnName + "' is not a tag column");
+    }
+
+    private static String segmentAt(IDeviceID deviceID, int segment) {
+        // 末尾为 null 的 TAG 不会出现在设备ID中
+        if (segment >= deviceID.segmentNum()) {
+            return null;
+        }
+        Object value = deviceID.segment(segment);
+        return value == null ? null : value.toString();
+    }
+
+    private static boolean matches(IDeviceID deviceID, int[] filterSegments, String[] filterValues) {
+        for (int i = 0; i < filterSegments.length; i++) {
+            if (!filterValues[i].equals(segmentAt(deviceID, filterSegments[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,193 @@
+package utils.aggregation;
+
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.read.filter.basic.Filter;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.query.dataset.ResultSetMetadata;
+import org.apache.tsfile.read.v4.ITsFileReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 ResultSet 的流式时间桶聚合算子。
+ * 支持 count/sum/min/max/avg/first/last，可按 TAG 列分组；逐行读取输入并累加到原始类型数组中，
+ * 内存占用为 O(分组数 × 时间桶数)，与输入行数无关。
+ * INT32/INT64/FLOAT/DOUBLE/TIMESTAMP 列支持所有聚合，其余类型只支持 count。
+ * 整数列的 min/max/first/last 按 long 保存并输出为 INT64，保持精确；sum 和 avg 按 double 计算并输出为 DOUBLE。
+ * 另外提供只读取 chunk/page 统计信息的聚合路径，见 {@link #aggregateStatistics}。
+ */
+public class TimeBucketAggregator {
+
+    private final long origin;
+    private final long interval;
+    private final List<String> groupByColumns;
+    private final List<String> aggregatedColumns;
+    private final List<AggregationType> aggregationTypes;
+
+    TimeBucketAggregator(long origin, long interval, List<String> groupByColumns,
+                         List<String> aggregatedColumns, List<AggregationType> aggregationTypes) {
+        this.origin = origin;
+        this.interval = interval;
+        this.groupByColumns = Collections.unmodifiableList(new ArrayList<>(groupByColumns));
+        this.aggregatedColumns = Collections.unmodifiableList(new ArrayList<>(aggregatedColumns));
+        this.aggregationTypes = Collections.unmodifiableList(new ArrayList<>(aggregationTypes));
+    }
+
+    /**
+     * 查询表并聚合，查询的投影列由分组列和被聚合列自动生成
+     *
+     * @param reader    TsFile 读取器
+     * @param tableName 表名
+     * @param startTime 起始时间（包含）
+     * @param endTime   结束时间（包含）
+     * @param tagFilter TAG 过滤条件，可以为 null
+     * @return 聚合结果集
+     */
+    public ResultSet query(ITsFileReader reader, String tableName, long startTime, long endTime, Filter tagFilter)
+            throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        List<String> columnNames = new ArrayList<>(groupByColumns);
+        for (String column : aggregatedColumns) {
+            if (!columnNames.contains(column)) {
+                columnNames.add(column);
+            }
+        }
+        try (ResultSet resultSet = tagFilter == null
+                ? reader.query(tableName, columnNames, startTime, endTime)
+                : reader.query(tableName, columnNames, startTime, endTime, tagFilter)) {
+            return aggregate(resultSet, columnNames);
+        }
+    }
+
+    /**
+     * 直接基于 TsFile 元数据聚合，完全落在时间范围和单个时间桶内的 chunk/page 只读取统计信息，
+     * 只有处于边界的 page 才会被解码。结果与 {@link #query} 一致，但没有数据的 (分组, 时间桶) 不会输出。
+     *
+     * @param reader    TsFile 顺序读取器
+     * @param tableName 表名
+     * @param startTime 起始时间（包含）
+     * @param endTime   结束时间（包含）
+     * @param tagValues TAG 等值过滤条件，键为 TAG 列名，值为 TAG 值
+     * @return 聚合结果集
+     */
+    public ResultSet aggregateStatistics(TsFileSequenceReader reader, String tableName, long startTime, long endTime,
+                                         Map<String, String> tagValues) throws IOException {
+        return statisticsAggregation(reader, startTime, endTime).run(tableName, groupByColumns, tagValues);
+    }
+
+    /**
+     * 创建基于元数据的聚合，运行后可以查看合并和解码的 chunk/page 数
+     */
+    StatisticsAggregation statisticsAggregation(TsFileSequenceReader reader, long startTime, long endTime) {
+        return new StatisticsAggregation(reader, this, startTime, endTime);
+    }
+
+    /**
+     * 创建空的聚合状态
+     *
+     * @param dataTypes 每个被聚合列的数据类型，键为列名
+     */
+    AggregationState newState(Map<String, TSDataType> dataTypes) {
+        return new AggregationState(origin, interval, groupByColumns, aggregatedColumns, aggregationTypes, dataTypes);
+    }
+
+    List<String> getAggregatedColumns() {
+        return aggregatedColumns;
+    }
+
+    /**
+     * 消费输入结果集并聚合，输入结果集由调用方负责关闭
+     *
+     * @param resultSet   输入结果集
+     * @param columnNames 输入结果集的投影列（不含 Time），顺序与查询时一致
+     * @return 聚合结果集
+     */
+    public ResultSet aggregate(ResultSet resultSet, List<String> columnNames) throws IOException {
+        ResultSetMetadata metadata = resultSet.getMetadata();
+        Map<String, TSDataType> dataTypes = new HashMap<>();
+        for (String column : aggregatedColumns) {
+            dataTypes.put(column, metadata.getColumnType(columnIndexOf(columnNames, column)));
+        }
+        AggregationState state = newState(dataTypes);
+
+        // 列下标从 1 开始，第 1 列为 Time
+        int[] tagIndexes = new int[groupByColumns.size()];
+        for (int i = 0; i < tagIndexes.length; i++) {
+            tagIndexes[i] = columnIndexOf(columnNames, groupByColumns.get(i));
+        }
+        List<String> distinctColumns = state.distinctColumns();
+        int[] valueIndexes = new int[distinctColumns.size()];
+        TSDataType[] valueTypes = new TSDataType[distinctColumns.size()];
+        for (int i = 0; i < valueIndexes.length; i++) {
+            valueIndexes[i] = columnIndexOf(columnNames, distinctColumns.get(i));
+            valueTypes[i] = dataTypes.get(distinctColumns.get(i));
+        }
+
+        String[] tags = new String[tagIndexes.length];
+        while (resultSet.next()) {
+            long time = resultSet.getLong(1);
+            for (int i = 0; i < tagIndexes.length; i++) {
+                tags[i] = resultSet.isNull(tagIndexes[i]) ? null : resultSet.getString(tagIndexes[i]);
+            }
+            int cell = state.cellOf(state.groupOf(tags), state.bucketOf(time));
+            for (int i = 0; i < valueIndexes.length; i++) {
+                int index = valueIndexes[i];
+                if (resultSet.isNull(index)) {
+                    continue;
+                }
+                switch (valueTypes[i]) {
+                    case INT32:
+                        state.accumulator(i).addLong(cell, time, resultSet.getInt(index));
+                        break;
+                    case INT64:
+                    case TIMESTAMP:
+                        state.accumulator(i).addLong(cell, time, resultSet.getLong(index));
+                        break;
+                    case FLOAT:
+                        state.accumulator(i).add(cell, time, resultSet.getFloat(index));
+                        break;
+                    case DOUBLE:
+                        state.accumulator(i).add(cell, time, resultSet.getDouble(index));
+                        break;
+                    default:
+                        // 非数值列只参与 count
+                        state.accumulator(i).add(cell, time, 0);
+                }
+            }
+        }
+        return state.toResultSet();
+    }
+
+    private static int columnIndexOf(List<String> columnNames, String columnName) {
+        int index = columnNames.indexOf(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("Column '" + columnName + "' is not in the projection");
+        }
+        return index + 2;
+    }
+
+    static boolean isNumeric(TSDataType dataType) {
+        switch (dataType) {
+            case INT32:
+            case INT64:
+            case FLOAT:
+            case DOUBLE:
+            case TIMESTAMP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static boolean isIntegral(TSDataType dataType) {
+        return dataType == TSDataType.INT32 || dataType == TSDataType.INT64 || dataType == TSDataType.TIMESTAMP;
+    }
+}
@@ -0,0 +1,70 @@
+package utils.aggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TimeBucketAggregator 的构建器
+ *
+ * <pre>
+ * TimeBucketAggregator aggregator = new TimeBucketAggregatorBuilder()
+ *         .interval(60_000)
+ *         .groupBy("Tag1")
+ *         .aggregate("S1", AggregationType.AVG, AggregationType.MAX)
+ *         .build();
+ * </pre>
+ */
+public class TimeBucketAggregatorBuilder {
+
+    private long origin = 0;
+    private long interval = -1;
+    private final List<String> groupByColumns = new ArrayList<>();
+    private final List<String> aggregatedColumns = new ArrayList<>();
+    private final List<AggregationType> aggregationTypes = new ArrayList<>();
+
+    /**
+     * 时间桶的起点，默认为 0，桶的边界为 origin + k * interval
+     */
+    public TimeBucketAggregatorBuilder origin(long origin) {
+        this.origin = origin;
+        return this;
+    }
+
+    /**
+     * 时间桶宽度，必填且必须大于 0
+     */
+    public TimeBucketAggregatorBuilder interval(long interval) {
+        this.interval = interval;
+        return this;
+    }
+
+    /**
+     * 分组使用的 TAG 列，可选
+     */
+    public TimeBucketAggregatorBuilder groupBy(String... tagColumns) {
+        groupByColumns.addAll(Arrays.asList(tagColumns));
+        return this;
+    }
+
+    /**
+     * 对某一列添加一个或多个聚合函数
+     */
+    public TimeBucketAggregatorBuilder aggregate(String columnName, AggregationType... types) {
+        for (AggregationType type : types) {
+            aggregatedColumns.add(columnName);
+            aggregationTypes.add(type);
+        }
+        return this;
+    }
+
+    public TimeBucketAggregator build() {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive, but was " + interval);
+        }
+        if (aggregatedColumns.isEmpty()) {
+            throw new IllegalArgumentException("at least one aggregation is required");
+        }
+        return new TimeBucketAggregator(origin, interval, groupByColumns, aggregatedColumns, aggregationTypes);
+    }
+}
@@ -0,0 +1,357 @@
+package utils.export;
+
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.filter.basic.Filter;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.query.dataset.ResultSetMetadata;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.write.schema.IMeasurementSchema;
+import utils.metadata.TsFileMetadataInspector;
+import utils.metadata.TsFileSummary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 把表的查询结果流式导出为 CSV：支持时间范围、TAG 过滤条件和投影列，
+ * 每个值直接格式化为字节写入复用的缓冲区，再通过 FileChannel 写入文件（见 {@link CsvOutput}）。
+ * 也可以把时间范围等分为多段，由多个线程分别查询并写入各自的文件。
+ * <p>
+ * 输出格式：第一行为列名（可关闭），第一列为 Time；空值为空字段；
+ * STRING/TEXT 按 UTF-8 原样输出，包含分隔符、引号或换行时加双引号，内部的引号写为两个引号；
+ * DATE 为 yyyy-MM-dd；BLOB 为 0x 开头的十六进制；TIMESTAMP 与 Time 一样输出为整数。
+ * 不包含换行的输出可以被 {@link utils.ParserCSV} 按相同分隔符解析回原来的字符串。
+ *
+ * <pre>
+ * List&lt;CsvExporter.Part&gt; parts = new CsvExporter("table1")
+ *         .columns("Tag1", "S1")
+ *         .timeRange(0, 86_400_000)
+ *         .tagFilter(new TagFilterBuilder(tableSchema).eq("Tag1", "a"))
+ *         .export(tsFile, new File("table1.csv"), 4);
+ * </pre>
+ */
+public class CsvExporter {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final String tableName;
+    private List<String> columns = null;
+    private long startTime = Long.MIN_VALUE;
+    private long endTime = Long.MAX_VALUE;
+    private Filter tagFilter = null;
+    private char delimiter = ',';
+    private boolean header = true;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    public CsvExporter(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * 导出的列（不含 Time），默认为表的全部列
+     */
+    public CsvExporter columns(String... columns) {
+        return columns(Arrays.asList(columns));
+    }
+
+    public CsvExporter columns(List<String> columns) {
+        this.columns = new ArrayList<>(columns);
+        return this;
+    }
+
+    /**
+     * 时间范围，两端都包含，默认不限
+     */
+    public CsvExporter timeRange(long startTime, long endTime) {
+        if (startTime > endTime) {
+            throw new IllegalArgumentException("startTime " + startTime + " is after endTime " + endTime);
+        }
+        this.startTime = startTime;
+        this.endTime = endTime;
+        return this;
+    }
+
+    /**
+     * TAG 过滤条件，由 TagFilterBuilder 或 {@link utils.index.TagPredicate#toFilter} 生成，默认不过滤
+     */
+    public CsvExporter tagFilter(Filter tagFilter) {
+        this.tagFilter = tagFilter;
+        return this;
+    }
+
+    /**
+     * 分隔符，默认为逗号，只支持 ASCII 字符
+     */
+    public CsvExporter delimiter(char delimiter) {
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * 是否输出列名，默认输出
+     */
+    public CsvExporter header(boolean header) {
+        this.header = header;
+        return this;
+    }
+
+    /**
+     * 每个输出文件的写缓冲区大小，默认 1 MB
+     */
+    public CsvExporter bufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * 导出到一个文件
+     */
+    public Part export(File tsFile, File output)
+            throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        return export(tsFile, output, startTime, endTime);
+    }
+
+    /**
+     * 把时间范围等分为 parts 段并行导出，第 i 段写入 &lt;output 去掉扩展名&gt;-i&lt;扩展名&gt;，每个文件都有列名行。
+     * 未指定时间范围时，以文件元数据中该表的时间范围为准；数据较少时段数可能少于 parts。
+     * parts 为 1 时与 {@link #export(File, File)} 相同。
+     *
+     * @return 按时间顺序排列的各段
+     */
+    public List<Part> export(File tsFile, File output, int parts) throws IOException {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("parts must be positive, but was " + parts);
+        }
+        if (parts == 1) {
+            return Collections.singletonList(exportQuietly(tsFile, output, startTime, endTime));
+        }
+        long[] range = dataRange(tsFile);
+        if (range == null) {
+            return Collections.emptyList();
+        }
+        // 用无符号运算避免跨度溢出
+        long step = Long.divideUnsigned(range[1] - range[0], parts) + 1;
+        ExecutorService executor = Executors.newFixedThreadPool(parts);
+        try {
+            List<Future<Part>> futures = new ArrayList<>(parts);
+            for (int i = 0; i < parts && Long.compareUnsigned(step * i, range[1] - range[0]) <= 0; i++) {
+                long partStart = range[0] + step * i;
+                long partEnd = Long.compareUnsigned(range[1] - partStart, step - 1) <= 0
+                        ? range[1] : partStart + step - 1;
+                File partFile = partFile(output, i);
+                futures.add(executor.submit(() -> exportQuietly(tsFile, partFile, partStart, partEnd)));
+            }
+            List<Part> result = new ArrayList<>(futures.size());
+            for (Future<Part> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while exporting " + tsFile, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to export " + tsFile, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Part exportQuietly(File tsFile, File output, long startTime, long endTime) throws IOException {
+        try {
+            return export(tsFile, output, startTime, endTime);
+        } catch (ReadProcessException | NoTableException | NoMeasurementException e) {
+            throw new IOException("Failed to export " + tsFile, e);
+        }
+    }
+
+    private Part export(File tsFile, File output, long startTime, long endTime)
+            throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(tsFile).build()) {
+            List<String> columnNames = columns != null ? columns : allColumns(reader, tsFile);
+            try (ResultSet resultSet = tagFilter == null
+                    ? reader.query(tableName, columnNames, startTime, endTime)
+                    : reader.query(tableName, columnNames, startTime, endTime, tagFilter);
+                 CsvOutput out = new CsvOutput(output.toPath(), bufferSize, delimiter)) {
+                long rowNum = write(resultSet, columnNames.size() + 1, out);
+                out.flush();
+                return new Part(output, startTime, endTime, rowNum, out.getWrittenBytes());
+            }
+        }
+    }
+
+    private long write(ResultSet resultSet, int columnNum, CsvOutput out) throws IOException {
+        // 列下标从 1 开始，第 1 列为 Time
+        ResultSetMetadata metadata = resultSet.getMetadata();
+        TSDataType[] types = new TSDataType[columnNum + 1];
+        for (int i = 2; i <= columnNum; i++) {
+            types[i] = metadata.getColumnType(i);
+        }
+        if (header) {
+            for (int i = 1; i <= columnNum; i++) {
+                if (i > 1) {
+                    out.delimiter();
+                }
+                byte[] name = metadata.getColumnName(i).getBytes(StandardCharsets.UTF_8);
+                out.writeText(name, 0, name.length);
+            }
+            out.newLine();
+        }
+        long rowNum = 0;
+        while (resultSet.next()) {
+            out.writeLong(resultSet.getLong(1));
+            for (int i = 2; i <= columnNum; i++) {
+                out.delimiter();
+                if (!resultSet.isNull(i)) {
+                    writeValue(resultSet, i, types[i], out);
+                }
+            }
+            out.newLine();
+            rowNum++;
+        }
+        return rowNum;
+    }
+
+    private static void writeValue(ResultSet resultSet, int index, TSDataType type, CsvOutput out)
+            throws IOException {
+        switch (type) {
+            case BOOLEAN:
+                out.writeBoolean(resultSet.getBoolean(index));
+                break;
+            case INT32:
+                out.writeLong(resultSet.getInt(index));
+                break;
+            case INT64:
+            case TIMESTAMP:
+                out.writeLong(resultSet.getLong(index));
+                break;
+            case FLOAT:
+                out.writeFloat(resultSet.getFloat(index));
+                break;
+            case DOUBLE:
+                out.writeDouble(resultSet.getDouble(index));
+                break;
+            case DATE:
+                out.writeDate(resultSet.getDate(index));
+                break;
+            case TEXT:
+            case STRING: {
+                Binary binary = resultSet.getBinary(index);
+                out.writeText(binary.getValues(), 0, binary.getLength());
+                break;
+            }
+            case BLOB: {
+                Binary binary = resultSet.getBinary(index);
+                out.writeHex(binary.getValues(), 0, binary.getLength());
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + type);
+        }
+    }
+
+    private List<String> allColumns(ITsFileReader reader, File tsFile) throws IOException {
+        TableSchema tableSchema = reader.getTableSchemas(tableName).orElseThrow(
+                () -> new IllegalArgumentException("Table " + tableName + " does not exist in " + tsFile));
+        List<String> columnNames = new ArrayList<>();
+        for (IMeasurementSchema columnSchema : tableSchema.getColumnSchemas()) {
+            columnNames.add(columnSchema.getMeasurementName());
+        }
+        return columnNames;
+    }
+
+    /**
+     * 配置的时间范围与文件中该表数据的时间范围的交集，没有交集时返回 null
+     */
+    private long[] dataRange(File tsFile) throws IOException {
+        TsFileSummary.TableSummary table = new TsFileMetadataInspector().inspect(tsFile).getTable(tableName);
+        if (table == null) {
+            throw new IllegalArgumentException("Table " + tableName + " does not exist in " + tsFile);
+        }
+        long dataStart = Long.MAX_VALUE;
+        long dataEnd = Long.MIN_VALUE;
+        for (TsFileSummary.DeviceSummary device : table.getDevices()) {
+            if (device.getRowCount() > 0) {
+                dataStart = Math.min(dataStart, device.getStartTime());
+                dataEnd = Math.max(dataEnd, device.getEndTime());
+            }
+        }
+        long start = Math.max(startTime, dataStart);
+        long end = Math.min(endTime, dataEnd);
+        return start > end ? null : new long[]{start, end};
+    }
+
+    private static File partFile(File output, int index) {
+        String name = output.getName();
+        int dot = name.lastIndexOf('.');
+        String partName = dot > 0
+                ? name.substring(0, dot) + "-" + index + name.substring(dot)
+                : name + "-" + index;
+        return new File(output.getParentFile(), partName);
+    }
+
+    /**
+     * 导出的一个文件
+     */
+    public static class Part {
+
+        private final File file;
+        private final long startTime;
+        private final long endTime;
+        private final long rowNum;
+        private final long byteNum;
+
+        Part(File file, long startTime, long endTime, long rowNum, long byteNum) {
+            this.file = file;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.rowNum = rowNum;
+            this.byteNum = byteNum;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * 查询的时间范围（包含两端）
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        /**
+         * 导出的行数，不含列名行
+         */
+        public long getRowNum() {
+            return rowNum;
+        }
+
+        public long getByteNum() {
+            return byteNum;
+        }
+
+        @Override
+        public String toString() {
+            return file + " [" + startTime + ", " + endTime + "] rows=" + rowNum + ", bytes=" + byteNum;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package utils.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * 直接把值格式化为字节写入 FileChannel 的 CSV 输出，不为单元格创建 String。
+ * 整数和日期逐位写入缓冲区；浮点数借助复用的 StringBuilder 格式化（StringBuilder.append(double)
+ * 不创建中间 String），结果与 Double.toString 相同，可以被 Double.parseDouble 还原。
+ * 缓冲区写满后整体写入文件，每个输出文件只使用一个缓冲区。
+ */
+class CsvOutput implements AutoCloseable {
+
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final FileChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer byteBuffer;
+    private final byte delimiter;
+    private final StringBuilder scratch = new StringBuilder(32);
+    private int position = 0;
+    private long writtenBytes = 0;
+
+    CsvOutput(Path path, int bufferSize, char delimiter) throws IOException {
+        if (bufferSize < 64) {
+            throw new IllegalArgumentException("bufferSize must be at least 64, but was " + bufferSize);
+        }
+        if (delimiter > 0x7f || delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Unsupported delimiter: " + delimiter);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = new byte[bufferSize];
+        this.byteBuffer = ByteBuffer.wrap(buffer);
+        this.delimiter = (byte) delimiter;
+    }
+
+    void delimiter() throws IOException {
+        ensure(1);
+        buffer[position++] = delimiter;
+    }
+
+    void newLine() throws IOException {
+        ensure(1);
+        buffer[position++] = '\n';
+    }
+
+    void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeBytes(MIN_LONG, 0, MIN_LONG.length);
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + digitCount(value);
+        int i = end;
+        do {
+            buffer[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        position = end;
+    }
+
+    void writeDouble(double value) throws IOException {
+        scratch.setLength(0);
+        scratch.append(value);
+        writeScratch();
+    }
+
+    void writeFloat(float value) throws IOException {
+        scratch.setLength(0);
+        scratch.append(value);
+        writeScratch();
+    }
+
+    void writeBoolean(boolean value) throws IOException {
+        byte[] bytes = value ? TRUE : FALSE;
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * yyyy-MM-dd，超出 0000~9999 的年份按整数输出
+     */
+    void writeDate(LocalDate date) throws IOException {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            writeLong(year);
+        } else {
+            ensure(4);
+            writeDigits(year, 4);
+        }
+        ensure(6);
+        buffer[position++] = '-';
+        writeDigits(date.getMonthValue(), 2);
+        buffer[position++] = '-';
+        writeDigits(date.getDayOfMonth(), 2);
+    }
+
+    /**
+     * 写入 UTF-8 文本，包含分隔符、引号或换行时用双引号包围，内部的引号写为两个引号
+     */
+    void writeText(byte[] bytes, int offset, int length) throws IOException {
+        int end = offset + length;
+        boolean quote = false;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            if (b == delimiter || b == '"' || b == '\n' || b == '\r') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            writeBytes(bytes, offset, length);
+            return;
+        }
+        ensure(1);
+        buffer[position++] = '"';
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] == '"') {
+                // 连同引号本身写出，再补一个引号
+                writeBytes(bytes, start, i + 1 - start);
+                ensure(1);
+                buffer[position++] = '"';
+                start = i + 1;
+            }
+        }
+        writeBytes(bytes, start, end - start);
+        ensure(1);
+        buffer[position++] = '"';
+    }
+
+    /**
+     * 0x 开头的小写十六进制
+     */
+    void writeHex(byte[] bytes, int offset, int length) throws IOException {
+        ensure(2);
+        buffer[position++] = '0';
+        buffer[position++] = 'x';
+        for (int i = offset; i < offset + length; i++) {
+            ensure(2);
+            buffer[position++] = HEX[(bytes[i] >> 4) & 0xf];
+            buffer[position++] = HEX[bytes[i] & 0xf];
+        }
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (position == buffer.length) {
+                flush();
+            }
+            int n = Math.min(length, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 已写入文件和缓冲区中的字节数
+     */
+    long getWrittenBytes() {
+        return writtenBytes + position;
+    }
+
+    void flush() throws IOException {
+        byteBuffer.clear().limit(position);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        writtenBytes += position;
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeScratch() throws IOException {
+        int length = scratch.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) scratch.charAt(i);
+        }
+    }
+
+    private void writeDigits(int value, int width) {
+        for (int i = position + width - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += width;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (position + length > buffer.length) {
+            flush();
+        }
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,378 @@
+package utils.index;
+
+import org.apache.tsfile.utils.BloomFilter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 写在 TsFile 旁边的 TAG 索引（sidecar 文件，文件名为 TsFile 文件名加 {@link #SUFFIX}），
+ * 用于在打开 TsFile 之前判断文件中是否可能存在满足 TAG 条件的设备。内容包括：
+ * <ul>
+ *     <li>生成索引时 TsFile 的长度和修改时间，用于发现 TsFile 被重写后过期的索引</li>
+ *     <li>表名、TAG 列名以及整个文件的时间范围</li>
+ *     <li>每个 TAG 列的值：不同值较少时保存有序字典，否则保存布隆过滤器和最小、最大值</li>
+ *     <li>设备数不超过上限时，保存每个设备的 TAG 元组和时间范围，可以精确到设备判断</li>
+ * </ul>
+ */
+public class TagIndex {
+
+    public static final String SUFFIX = ".tagidx";
+
+    private static final int MAGIC = 0x54414758;
+    private static final int VERSION = 2;
+
+    private final long fileLength;
+    private final long fileModifiedTime;
+    private final String tableName;
+    private final List<String> tagColumns;
+    private final long minTime;
+    private final long maxTime;
+    private final ColumnIndex[] columnIndexes;
+    private final List<DeviceEntry> devices;
+
+    TagIndex(long fileLength, long fileModifiedTime, String tableName, List<String> tagColumns, long minTime,
+             long maxTime, ColumnIndex[] columnIndexes, List<DeviceEntry> devices) {
+        this.fileLength = fileLength;
+        this.fileModifiedTime = fileModifiedTime;
+        this.tableName = tableName;
+        this.tagColumns = Collections.unmodifiableList(new ArrayList<>(tagColumns));
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.columnIndexes = columnIndexes;
+        this.devices = devices == null ? null : Collections.unmodifiableList(devices);
+    }
+
+    /**
+     * TsFile 对应的索引文件
+     */
+    public static File sidecarOf(File tsFile) {
+        return new File(tsFile.getPath() + SUFFIX);
+    }
+
+    /**
+     * 索引是否是根据 TsFile 当前的内容生成的：长度和修改时间都与生成索引时相同。
+     * 没有记录 TsFile 信息的索引（{@link TagIndexBuilder#build()} 直接生成的）返回 false
+     */
+    public boolean matches(File tsFile) {
+        return fileLength >= 0 && fileLength == tsFile.length() && fileModifiedTime == tsFile.lastModified();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public List<String> getTagColumns() {
+        return tagColumns;
+    }
+
+    public long getMinTime() {
+        return minTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    /**
+     * 文件中是否有数据落在 [startTime, endTime] 内，文件为空时返回 false
+     */
+    public boolean overlaps(long startTime, long endTime) {
+        return minTime <= maxTime && minTime <= endTime && maxTime >= startTime;
+    }
+
+    /**
+     * TAG 列在元组中的下标，列名不区分大小写，不存在时返回 -1
+     */
+    public int tagPosition(String columnName) {
+        for (int i = 0; i < tagColumns.size(); i++) {
+            if (tagColumns.get(i).equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * TAG 列的索引，列不存在时返回 null
+     */
+    public ColumnIndex columnIndex(String columnName) {
+        int position = tagPosition(columnName);
+        return position < 0 ? null : columnIndexes[position];
+    }
+
+    /**
+     * 设备列表，设备数超过上限而没有记录时返回 null
+     */
+    public List<DeviceEntry> getDevices() {
+        return devices;
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileLength);
+            out.writeLong(fileModifiedTime);
+            out.writeUTF(tableName);
+            out.writeInt(tagColumns.size());
+            for (String tagColumn : tagColumns) {
+                out.writeUTF(tagColumn);
+            }
+            out.writeLong(minTime);
+            out.writeLong(maxTime);
+            for (ColumnIndex columnIndex : columnIndexes) {
+                columnIndex.write(out);
+            }
+            out.writeBoolean(devices != null);
+            if (devices != null) {
+                out.writeInt(devices.size());
+                for (DeviceEntry device : devices) {
+                    for (String tag : device.tags) {
+                        writeNullableString(out, tag);
+                    }
+                    out.writeLong(device.minTime);
+                    out.writeLong(device.maxTime);
+                }
+            }
+        }
+    }
+
+    public static TagIndex read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a tag index file: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported tag index version " + version + ": " + file);
+            }
+            long fileLength = in.readLong();
+            long fileModifiedTime = in.readLong();
+            String tableName = in.readUTF();
+            int tagNum = in.readInt();
+            List<String> tagColumns = new ArrayList<>(tagNum);
+            for (int i = 0; i < tagNum; i++) {
+                tagColumns.add(in.readUTF());
+            }
+            long minTime = in.readLong();
+            long maxTime = in.readLong();
+            ColumnIndex[] columnIndexes = new ColumnIndex[tagNum];
+            for (int i = 0; i < tagNum; i++) {
+                columnIndexes[i] = ColumnIndex.read(in);
+            }
+            List<DeviceEntry> devices = null;
+            if (in.readBoolean()) {
+                int deviceNum = in.readInt();
+                devices = new ArrayList<>(deviceNum);
+                for (int d = 0; d < deviceNum; d++) {
+                    String[] tags = new String[tagNum];
+                    for (int i = 0; i < tagNum; i++) {
+                        tags[i] = readNullableString(in);
+                    }
+                    devices.add(new DeviceEntry(tags, in.readLong(), in.readLong()));
+                }
+            }
+            return new TagIndex(fileLength, fileModifiedTime, tableName, tagColumns, minTime, maxTime, columnIndexes,
+                    devices);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "TagIndex{table=%s, tags=%s, time=[%d, %d], devices=%s}",
+                tableName, tagColumns, minTime, maxTime, devices == null ? "unknown" : devices.size());
+    }
+
+    /**
+     * 单个 TAG 列的索引：有序字典，或者布隆过滤器加最小、最大值。值的比较按字符串的字典序
+     */
+    public static class ColumnIndex {
+
+        private final String[] dictionary;
+        private final BloomFilter bloomFilter;
+        private final String minValue;
+        private final String maxValue;
+        private final boolean hasNull;
+
+        ColumnIndex(String[] dictionary, BloomFilter bloomFilter, String minValue, String maxValue, boolean hasNull) {
+            this.dictionary = dictionary;
+            this.bloomFilter = bloomFilter;
+            this.minValue = minValue;
+            this.maxValue = maxValue;
+            this.hasNull = hasNull;
+        }
+
+        public boolean isDictionary() {
+            return dictionary != null;
+        }
+
+        /**
+         * 有序字典，使用布隆过滤器时返回 null
+         */
+        public List<String> getDictionary() {
+            return dictionary == null ? null : Collections.unmodifiableList(Arrays.asList(dictionary));
+        }
+
+        public boolean hasNull() {
+            return hasNull;
+        }
+
+        /**
+         * 是否可能包含该值。字典为精确结果，布隆过滤器可能误判为包含
+         */
+        public boolean mayContain(String value) {
+            if (minValue == null || value.compareTo(minValue) < 0 || value.compareTo(maxValue) > 0) {
+                return false;
+            }
+            if (dictionary != null) {
+                return Arrays.binarySearch(dictionary, value) >= 0;
+            }
+            return bloomFilter.contains(value);
+        }
+
+        /**
+         * 是否可能包含范围内的值，lower 或 upper 为 null 表示不限
+         */
+        public boolean mayContainRange(String lower, boolean lowerInclusive, String upper, boolean upperInclusive) {
+            if (minValue == null) {
+                return false;
+            }
+            if (lower != null) {
+                int cmp = maxValue.compareTo(lower);
+                if (cmp < 0 || cmp == 0 && !lowerInclusive) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int cmp = minValue.compareTo(upper);
+                if (cmp > 0 || cmp == 0 && !upperInclusive) {
+                    return false;
+                }
+            }
+            if (dictionary == null) {
+                return true;
+            }
+            // 字典中第一个不小于下界的值
+            int index = 0;
+            if (lower != null) {
+                index = Arrays.binarySearch(dictionary, lower);
+                if (index >= 0) {
+                    index = lowerInclusive ? index : index + 1;
+                } else {
+                    index = -index - 1;
+                }
+            }
+            if (index >= dictionary.length) {
+                return false;
+            }
+            if (upper == null) {
+                return true;
+            }
+            int cmp = dictionary[index].compareTo(upper);
+            return cmp < 0 || cmp == 0 && upperInclusive;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeBoolean(hasNull);
+            out.writeBoolean(minValue != null);
+            if (minValue != null) {
+                out.writeUTF(minValue);
+                out.writeUTF(maxValue);
+            }
+            out.writeBoolean(dictionary != null);
+            if (dictionary != null) {
+                out.writeInt(dictionary.length);
+                for (String value : dictionary) {
+                    out.writeUTF(value);
+                }
+            } else {
+                byte[] bytes = bloomFilter.serialize();
+                out.writeInt(bloomFilter.getSize());
+                out.writeInt(bloomFilter.getHashFunctionSize());
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        static ColumnIndex read(DataInputStream in) throws IOException {
+            boolean hasNull = in.readBoolean();
+            String minValue = null;
+            String maxValue = null;
+            if (in.readBoolean()) {
+                minValue = in.readUTF();
+                maxValue = in.readUTF();
+            }
+            if (in.readBoolean()) {
+                String[] dictionary = new String[in.readInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = in.readUTF();
+                }
+                return new ColumnIndex(dictionary, null, minValue, maxValue, hasNull);
+            }
+            int size = in.readInt();
+            int hashFunctionSize = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new ColumnIndex(null, BloomFilter.buildBloomFilter(bytes, size, hashFunctionSize),
+                    minValue, maxValue, hasNull);
+        }
+    }
+
+    /**
+     * 一个设备的 TAG 元组（空值为 null）和时间范围
+     */
+    public static class DeviceEntry {
+
+        private final String[] tags;
+        private final long minTime;
+        private final long maxTime;
+
+        DeviceEntry(String[] tags, long minTime, long maxTime) {
+            this.tags = tags;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+        }
+
+        public String getTag(int position) {
+            return tags[position];
+        }
+
+        public List<String> getTags() {
+            return Collections.unmodifiableList(Arrays.asList(tags));
+        }
+
+        public long getMinTime() {
+            return minTime;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        public boolean overlaps(long startTime, long endTime) {
+            return minTime <= endTime && maxTime >= startTime;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package utils.index;
+
+import org.apache.tsfile.common.conf.TSFileConfig;
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.utils.BloomFilter;
+import org.apache.tsfile.write.record.Tablet;
+import utils.write.TabletSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 在写入 TsFile 的同时收集 TAG 索引。用 {@link #wrap(TabletSink)} 包装写入目标，
+ * 每个 Tablet 在写入前先记录其中的 TAG 值和时间范围，关闭 TsFile 后调用 {@link #writeSidecar(File)}，
+ * 索引中会记录此时 TsFile 的长度和修改时间。
+ * <p>
+ * 输入 Tablet 的列顺序必须与构造时的 TableSchema 一致。同一设备的行通常是连续的，
+ * TAG 值只在与上一行不同时才转换为字符串并查找设备。
+ */
+public class TagIndexBuilder {
+
+    public static final int DEFAULT_DICTIONARY_LIMIT = 4096;
+    public static final int DEFAULT_DEVICE_LIMIT = 65536;
+    private static final double BLOOM_FILTER_ERROR_RATE = 0.01;
+
+    private final String tableName;
+    private final List<String> tagColumns = new ArrayList<>();
+    private final int[] tagColumnIndexes;
+    private final int dictionaryLimit;
+    private final int deviceLimit;
+
+    private final List<Set<String>> distinctValues = new ArrayList<>();
+    private final boolean[] hasNull;
+    private final Map<List<String>, long[]> deviceTimes = new LinkedHashMap<>();
+    private boolean deviceOverflow = false;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+
+    // 上一行的 TAG 值，用于跳过重复的转换和查找
+    private final Binary[] lastBinaries;
+    private final String[] lastTags;
+    private long[] lastDeviceTime;
+
+    public TagIndexBuilder(TableSchema tableSchema) {
+        this(tableSchema, DEFAULT_DICTIONARY_LIMIT, DEFAULT_DEVICE_LIMIT);
+    }
+
+    /**
+     * @param tableSchema     表结构
+     * @param dictionaryLimit 不同值数量不超过该值的 TAG 列保存有序字典，否则保存布隆过滤器
+     * @param deviceLimit     设备数不超过该值时保存设备列表
+     */
+    public TagIndexBuilder(TableSchema tableSchema, int dictionaryLimit, int deviceLimit) {
+        this.tableName = tableSchema.getTableName();
+        this.dictionaryLimit = dictionaryLimit;
+        this.deviceLimit = deviceLimit;
+        List<ColumnCategory> columnCategories = tableSchema.getColumnTypes();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < columnCategories.size(); i++) {
+            if (columnCategories.get(i) == ColumnCategory.TAG) {
+                indexes.add(i);
+                tagColumns.add(tableSchema.getColumnSchemas().get(i).getMeasurementName());
+                distinctValues.add(new HashSet<>());
+            }
+        }
+        this.tagColumnIndexes = indexes.stream().mapToInt(Integer::intValue).toArray();
+        this.hasNull = new boolean[tagColumnIndexes.length];
+        this.lastBinaries = new Binary[tagColumnIndexes.length];
+        this.lastTags = new String[tagColumnIndexes.length];
+    }
+
+    /**
+     * 返回一个先记录索引再写入 downstream 的写入目标
+     */
+    public TabletSink wrap(TabletSink downstream) {
+        return tablet -> {
+            add(tablet);
+            downstream.write(tablet);
+        };
+    }
+
+    /**
+     * 记录 Tablet 中的 TAG 值和时间范围
+     */
+    public void add(Tablet tablet) {
+        Object[] values = tablet.getValues();
+        BitMap[] bitMaps = tablet.getBitMaps();
+        long[] timestamps = tablet.getTimestamps();
+        for (int row = 0; row < tablet.getRowSize(); row++) {
+            boolean changed = lastDeviceTime == null;
+            for (int i = 0; i < tagColumnIndexes.length; i++) {
+                int column = tagColumnIndexes[i];
+                Binary binary = bitMaps != null && bitMaps[column] != null && bitMaps[column].isMarked(row)
+                        ? null : ((Binary[]) values[column])[row];
+                if (binary == lastBinaries[i]) {
+                    continue;
+                }
+                String tag = binary == null ? null : binary.getStringValue(TSFileConfig.STRING_CHARSET);
+                if (!equals(tag, lastTags[i])) {
+                    changed = true;
+                }
+                lastBinaries[i] = binary;
+                lastTags[i] = tag;
+            }
+            if (changed) {
+                lastDeviceTime = device(lastTags);
+            }
+            long time = timestamps[row];
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            lastDeviceTime[0] = Math.min(lastDeviceTime[0], time);
+            lastDeviceTime[1] = Math.max(lastDeviceTime[1], time);
+        }
+    }
+
+    /**
+     * 生成索引，不记录 TsFile 的长度和修改时间
+     */
+    public TagIndex build() {
+        return build(-1, -1);
+    }
+
+    /**
+     * 生成索引并写到 TsFile 旁边，TsFile 必须已经关闭
+     */
+    public void writeSidecar(File tsFile) throws IOException {
+        build(tsFile.length(), tsFile.lastModified()).write(TagIndex.sidecarOf(tsFile));
+    }
+
+    private TagIndex build(long fileLength, long fileModifiedTime) {
+        TagIndex.ColumnIndex[] columnIndexes = new TagIndex.ColumnIndex[tagColumns.size()];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            String[] sorted = distinctValues.get(i).toArray(new String[0]);
+            Arrays.sort(sorted);
+            String minValue = sorted.length == 0 ? null : sorted[0];
+            String maxValue = sorted.length == 0 ? null : sorted[sorted.length - 1];
+            if (sorted.length <= dictionaryLimit) {
+                columnIndexes[i] = new TagIndex.ColumnIndex(sorted, null, minValue, maxValue, hasNull[i]);
+            } else {
+                BloomFilter bloomFilter = BloomFilter.getEmptyBloomFilter(BLOOM_FILTER_ERROR_RATE, sorted.length);
+                for (String value : sorted) {
+                    bloomFilter.add(value);
+                }
+                columnIndexes[i] = new TagIndex.ColumnIndex(null, bloomFilter, minValue, maxValue, hasNull[i]);
+            }
+        }
+        List<TagIndex.DeviceEntry> devices = null;
+        if (!deviceOverflow) {
+            devices = new ArrayList<>(deviceTimes.size());
+            for (Map.Entry<List<String>, long[]> entry : deviceTimes.entrySet()) {
+                devices.add(new TagIndex.DeviceEntry(
+                        entry.getKey().toArray(new String[0]), entry.getValue()[0], entry.getValue()[1]));
+            }
+        }
+        return new TagIndex(fileLength, fileModifiedTime, tableName, tagColumns, minTime, maxTime, columnIndexes,
+                devices);
+    }
+
+    private long[] device(String[] tags) {
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] == null) {
+                hasNull[i] = true;
+            } else {
+                distinctValues.get(i).add(tags[i]);
+            }
+        }
+        List<String> key = Arrays.asList(tags.clone());
+        long[] times = deviceTimes.get(key);
+        if (times == null) {
+            times = new long[]{Long.MAX_VALUE, Long.MIN_VALUE};
+            if (!deviceOverflow) {
+                if (deviceTimes.size() < deviceLimit) {
+                    deviceTimes.put(key, times);
+                } else {
+                    deviceOverflow = true;
+                    deviceTimes.clear();
+                }
+            }
+        }
+        return times;
+    }
+
+    private static boolean equals(String left, String right) {
+        return left == null ? right == null : left.equals(right);
+    }
+}
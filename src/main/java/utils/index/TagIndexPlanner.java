@@ -0,0 +1,103 @@
+package utils.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 使用 TAG 索引在打开 TsFile 之前筛选文件和设备。
+ * 对每个文件读取旁边的索引：时间范围不相交或 TAG 条件不可能满足的文件被跳过；
+ * 索引中记录了设备列表时，进一步筛选出满足条件且时间范围相交的设备，没有这样的设备时同样跳过。
+ * 没有索引、索引无法读取、索引已过期（TsFile 的长度或修改时间与生成索引时不同）的文件无法判断，总是保留；
+ * 索引只覆盖一个表，一个 TsFile 中可以有多个表，因此查询的表不是索引的表时文件同样保留。
+ */
+public class TagIndexPlanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TagIndexPlanner.class);
+
+    /**
+     * 规划结果中的一个文件
+     */
+    public static class FilePlan {
+
+        private final File file;
+        private final List<List<String>> devices;
+
+        FilePlan(File file, List<List<String>> devices) {
+            this.file = file;
+            this.devices = devices == null ? null : Collections.unmodifiableList(devices);
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * 可能满足条件的设备的 TAG 元组，没有索引或索引中没有设备列表时返回 null
+         */
+        public List<List<String>> getDevices() {
+            return devices;
+        }
+    }
+
+    /**
+     * 筛选可能包含满足条件数据的文件
+     *
+     * @param files     TsFile 列表
+     * @param tableName 表名，不区分大小写
+     * @param predicate TAG 条件，为 null 时只按时间范围筛选
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（包含）
+     * @return 需要查询的文件，顺序与输入一致
+     */
+    public List<FilePlan> plan(List<File> files, String tableName, TagPredicate predicate, long startTime, long endTime) {
+        List<FilePlan> plans = new ArrayList<>();
+        for (File file : files) {
+            File sidecar = TagIndex.sidecarOf(file);
+            if (!sidecar.exists()) {
+                plans.add(new FilePlan(file, null));
+                continue;
+            }
+            TagIndex index;
+            try {
+                index = TagIndex.read(sidecar);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to read tag index {}, the file will be scanned", sidecar, e);
+                plans.add(new FilePlan(file, null));
+                continue;
+            }
+            if (!index.matches(file)) {
+                LOGGER.warn("Tag index {} is stale, the file will be scanned", sidecar);
+                plans.add(new FilePlan(file, null));
+                continue;
+            }
+            if (!index.getTableName().equalsIgnoreCase(tableName)) {
+                // 索引只覆盖一个表，无法判断文件中的其他表
+                plans.add(new FilePlan(file, null));
+                continue;
+            }
+            if (!index.overlaps(startTime, endTime) || predicate != null && !predicate.mayMatch(index)) {
+                continue;
+            }
+            if (index.getDevices() == null) {
+                plans.add(new FilePlan(file, null));
+                continue;
+            }
+            List<List<String>> devices = new ArrayList<>();
+            for (TagIndex.DeviceEntry device : index.getDevices()) {
+                if (device.overlaps(startTime, endTime) && (predicate == null || predicate.matches(index, device))) {
+                    devices.add(device.getTags());
+                }
+            }
+            if (!devices.isEmpty()) {
+                plans.add(new FilePlan(file, devices));
+            }
+        }
+        return plans;
+    }
+}
@@ -0,0 +1,244 @@
+package utils.index;
+
+import org.apache.tsfile.read.filter.basic.Filter;
+import org.apache.tsfile.read.filter.factory.TagFilterBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 可以用 {@link TagIndex} 求值的 TAG 条件，支持等于、IN、范围以及它们的 AND / OR 组合。
+ * TagFilterBuilder 生成的 Filter 无法在查询引擎之外求值，因此规划阶段使用本类描述条件，
+ * 规划完成后再通过 {@link #toFilter(TagFilterBuilder)} 转换为查询使用的 Filter。
+ * <p>
+ * 值的比较按字符串的字典序，与 TsFile 中 STRING 按字节比较的结果在 ASCII 范围内一致。
+ * 空值不满足任何条件。
+ */
+public abstract class TagPredicate {
+
+    public static TagPredicate eq(String column, String value) {
+        return new In(column, new String[]{value});
+    }
+
+    public static TagPredicate in(String column, String... values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("in requires at least one value");
+        }
+        return new In(column, values.clone());
+    }
+
+    /**
+     * 范围条件，lower 或 upper 为 null 表示不限
+     */
+    public static TagPredicate range(String column, String lower, boolean lowerInclusive,
+                                     String upper, boolean upperInclusive) {
+        return new Range(column, lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    /**
+     * 闭区间 [lower, upper]，与 TagFilterBuilder.betweenAnd 相同
+     */
+    public static TagPredicate between(String column, String lower, String upper) {
+        return new Range(column, lower, true, upper, true);
+    }
+
+    public static TagPredicate and(TagPredicate... children) {
+        return new Composite(true, children);
+    }
+
+    public static TagPredicate or(TagPredicate... children) {
+        return new Composite(false, children);
+    }
+
+    /**
+     * 文件中是否可能有满足条件的设备，条件涉及索引中不存在的列时返回 true
+     */
+    public abstract boolean mayMatch(TagIndex index);
+
+    /**
+     * 设备是否满足条件，条件涉及索引中不存在的列时返回 true
+     */
+    public abstract boolean matches(TagIndex index, TagIndex.DeviceEntry device);
+
+    /**
+     * 转换为查询使用的 Filter
+     */
+    public abstract Filter toFilter(TagFilterBuilder builder);
+
+    private static final class In extends TagPredicate {
+
+        private final String column;
+        private final String[] values;
+
+        In(String column, String[] values) {
+            this.column = column;
+            this.values = values;
+        }
+
+        @Override
+        public boolean mayMatch(TagIndex index) {
+            TagIndex.ColumnIndex columnIndex = index.columnIndex(column);
+            if (columnIndex == null) {
+                return true;
+            }
+            for (String value : values) {
+                if (columnIndex.mayContain(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matches(TagIndex index, TagIndex.DeviceEntry device) {
+            int position = index.tagPosition(column);
+            if (position < 0) {
+                return true;
+            }
+            String tag = device.getTag(position);
+            return tag != null && Arrays.asList(values).contains(tag);
+        }
+
+        @Override
+        public Filter toFilter(TagFilterBuilder builder) {
+            Filter filter = builder.eq(column, values[0]);
+            for (int i = 1; i < values.length; i++) {
+                filter = builder.or(filter, builder.eq(column, values[i]));
+            }
+            return filter;
+        }
+
+        @Override
+        public String toString() {
+            return values.length == 1 ? column + " = " + values[0] : column + " in " + Arrays.toString(values);
+        }
+    }
+
+    private static final class Range extends TagPredicate {
+
+        private final String column;
+        private final String lower;
+        private final boolean lowerInclusive;
+        private final String upper;
+        private final boolean upperInclusive;
+
+        Range(String column, String lower, boolean lowerInclusive, String upper, boolean upperInclusive) {
+            if (lower == null && upper == null) {
+                throw new IllegalArgumentException("range requires a lower or upper bound");
+            }
+            this.column = column;
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        @Override
+        public boolean mayMatch(TagIndex index) {
+            TagIndex.ColumnIndex columnIndex = index.columnIndex(column);
+            return columnIndex == null || columnIndex.mayContainRange(lower, lowerInclusive, upper, upperInclusive);
+        }
+
+        @Override
+        public boolean matches(TagIndex index, TagIndex.DeviceEntry device) {
+            int position = index.tagPosition(column);
+            if (position < 0) {
+                return true;
+            }
+            String tag = device.getTag(position);
+            if (tag == null) {
+                return false;
+            }
+            if (lower != null) {
+                int cmp = tag.compareTo(lower);
+                if (cmp < 0 || cmp == 0 && !lowerInclusive) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int cmp = tag.compareTo(upper);
+                return cmp < 0 || cmp == 0 && upperInclusive;
+            }
+            return true;
+        }
+
+        @Override
+        public Filter toFilter(TagFilterBuilder builder) {
+            if (lower != null && upper != null && lowerInclusive && upperInclusive) {
+                return builder.betweenAnd(column, lower, upper);
+            }
+            Filter lowerFilter = lower == null ? null
+                    : lowerInclusive ? builder.gteq(column, lower) : builder.gt(column, lower);
+            Filter upperFilter = upper == null ? null
+                    : upperInclusive ? builder.lteq(column, upper) : builder.lt(column, upper);
+            if (lowerFilter == null) {
+                return upperFilter;
+            }
+            return upperFilter == null ? lowerFilter : builder.and(lowerFilter, upperFilter);
+        }
+
+        @Override
+        public String toString() {
+            return column + " in " + (lower == null ? "(-inf" : (lowerInclusive ? "[" : "(") + lower) + ", "
+                    + (upper == null ? "+inf)" : upper + (upperInclusive ? "]" : ")"));
+        }
+    }
+
+    private static final class Composite extends TagPredicate {
+
+        private final boolean and;
+        private final List<TagPredicate> children;
+
+        Composite(boolean and, TagPredicate[] children) {
+            if (children.length == 0) {
+                throw new IllegalArgumentException((and ? "and" : "or") + " requires at least one predicate");
+            }
+            this.and = and;
+            this.children = new ArrayList<>(Arrays.asList(children));
+        }
+
+        @Override
+        public boolean mayMatch(TagIndex index) {
+            // AND 的各条件可能由不同设备满足，文件级别只能分别判断
+            for (TagPredicate child : children) {
+                if (child.mayMatch(index) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        @Override
+        public boolean matches(TagIndex index, TagIndex.DeviceEntry device) {
+            for (TagPredicate child : children) {
+                if (child.matches(index, device) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        @Override
+        public Filter toFilter(TagFilterBuilder builder) {
+            Filter filter = children.get(0).toFilter(builder);
+            for (int i = 1; i < children.size(); i++) {
+                Filter child = children.get(i).toFilter(builder);
+                filter = and ? builder.and(filter, child) : builder.or(filter, child);
+            }
+            return filter;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("(");
+            for (int i = 0; i < children.size(); i++) {
+                if (i > 0) {
+                    sb.append(and ? " and " : " or ");
+                }
+                sb.append(children.get(i));
+            }
+            return sb.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,637 @@
+package utils.ingest;
+
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 嵌入式的本地批量写入服务。监听 localhost 上的 TCP 端口，接收 {@link LineParser} 中描述的行协议，
+ * 按注册的 TableSchema 校验后按表攒批：批次达到 batchSize 行或第一行等待超过 lingerMillis 后交给写入线程，
+ * 写入线程通过 ITsFileWriter 写入 &lt;输出目录&gt;/&lt;表名&gt;/ 下的文件，并按行数和时间滚动文件。
+ * <p>
+ * 服务端对每个连接返回以换行结尾的应答：
+ * <ul>
+ *     <li>{@code OK <n>}：该连接的 n 行已写出</li>
+ *     <li>{@code ERR <行号> <原因>}：第几行（从 1 开始）不合法，已丢弃，解析时立即返回</li>
+ *     <li>{@code FAIL <n> <原因>}：该连接的 n 行写入失败</li>
+ * </ul>
+ * 默认在行所在的文件关闭后才确认，确认的行已经落盘，确认延迟最长为滚动间隔；
+ * 开启 ackOnBuffer 后在批次写入 ITsFileWriter 后立即确认，延迟低，但此时数据只在写入器的内存中，进程退出会丢失已确认的行。
+ * 客户端关闭输出流后，服务端在该连接的所有行都确认后关闭连接，客户端可以读到 EOF 为止以等待全部确认。
+ * <p>
+ * 同一设备的行在批次内会按时间排序，同一设备同一时间戳的多行只保留最后一行。
+ * 批次中有行不晚于该设备在当前文件中已写出的数据时，先关闭当前文件再把整个批次写入新文件，因此确认的行都不会被丢弃；
+ * 乱序严重时会产生较多的小文件，提前滚动的次数可以通过 {@link #getLateRollNum()} 查看。
+ * <p>
+ * 网络读写和解析在一个 selector 线程中进行，文件写入在一个写入线程中进行。
+ * 配置方法必须在 {@link #start()} 之前调用，使用完必须调用 {@link #close()}，关闭时写出所有批次并关闭所有文件。
+ */
+public class IngestServer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IngestServer.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    public static final long DEFAULT_LINGER_MILLIS = 50;
+    public static final long DEFAULT_MAX_ROWS_PER_FILE = 10_000_000;
+    public static final long DEFAULT_ROLL_INTERVAL_MILLIS = 10 * 60 * 1000;
+    private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+    private static final int WRITE_QUEUE_CAPACITY = 64;
+    // 写入线程的最长等待时间，用于检查文件滚动
+    private static final long WRITER_POLL_MILLIS = 1000;
+    private static final TableBuffer.Batch STOP = new TableBuffer.Batch(null, null, null);
+
+    private final File directory;
+    private final List<TableSchema> tableSchemas = new ArrayList<>();
+    private int port = 0;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long lingerMillis = DEFAULT_LINGER_MILLIS;
+    private long maxRowsPerFile = DEFAULT_MAX_ROWS_PER_FILE;
+    private long rollIntervalMillis = DEFAULT_ROLL_INTERVAL_MILLIS;
+    private boolean ackOnBuffer = false;
+
+    // selector 线程
+    private final Map<String, TableBuffer> tables = new HashMap<>();
+    private final LineParser parser = new LineParser();
+    private final List<Connection> connections = new ArrayList<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+
+    // 写入线程
+    private final Map<TableBuffer, TableFileRoller> rollers = new IdentityHashMap<>();
+    private final Map<TableFileRoller, List<Map<Connection, Integer>>> pendingAcks = new IdentityHashMap<>();
+    private Thread writerThread;
+
+    private final BlockingQueue<TableBuffer.Batch> writeQueue = new LinkedBlockingQueue<>(WRITE_QUEUE_CAPACITY);
+    private final ConcurrentLinkedQueue<Ack> acks = new ConcurrentLinkedQueue<>();
+    private final List<File> closedFiles = new CopyOnWriteArrayList<>();
+    private final AtomicLong acceptedRowNum = new AtomicLong();
+    private final AtomicLong rejectedLineNum = new AtomicLong();
+    private final AtomicLong writtenRowNum = new AtomicLong();
+    private final AtomicLong lateRollNum = new AtomicLong();
+    private volatile boolean stopping = false;
+    private volatile boolean writerDone = false;
+    private boolean started = false;
+
+    /**
+     * @param directory 输出目录，每个表的文件写入其中以表名命名的子目录
+     */
+    public IngestServer(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 注册一个表，只接收已注册的表的数据
+     */
+    public IngestServer register(TableSchema tableSchema) {
+        checkNotStarted();
+        for (TableSchema registered : tableSchemas) {
+            if (registered.getTableName().equalsIgnoreCase(tableSchema.getTableName())) {
+                throw new IllegalArgumentException("Table already registered: " + tableSchema.getTableName());
+            }
+        }
+        tableSchemas.add(tableSchema);
+        return this;
+    }
+
+    /**
+     * 监听的端口，0 表示由系统分配，启动后通过 {@link #getPort()} 获取
+     */
+    public IngestServer port(int port) {
+        checkNotStarted();
+        this.port = port;
+        return this;
+    }
+
+    public IngestServer batchSize(int batchSize) {
+        checkNotStarted();
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive, but was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public IngestServer lingerMillis(long lingerMillis) {
+        checkNotStarted();
+        if (lingerMillis <= 0) {
+            throw new IllegalArgumentException("lingerMillis must be positive, but was " + lingerMillis);
+        }
+        this.lingerMillis = lingerMillis;
+        return this;
+    }
+
+    public IngestServer maxRowsPerFile(long maxRowsPerFile) {
+        checkNotStarted();
+        if (maxRowsPerFile <= 0) {
+            throw new IllegalArgumentException("maxRowsPerFile must be positive, but was " + maxRowsPerFile);
+        }
+        this.maxRowsPerFile = maxRowsPerFile;
+        return this;
+    }
+
+    public IngestServer rollIntervalMillis(long rollIntervalMillis) {
+        checkNotStarted();
+        if (rollIntervalMillis <= 0) {
+            throw new IllegalArgumentException("rollIntervalMillis must be positive, but was " + rollIntervalMillis);
+        }
+        this.rollIntervalMillis = rollIntervalMillis;
+        return this;
+    }
+
+    /**
+     * 是否在批次写入 ITsFileWriter 后立即确认，而不是等文件关闭后确认。默认 false
+     */
+    public IngestServer ackOnBuffer(boolean ackOnBuffer) {
+        checkNotStarted();
+        this.ackOnBuffer = ackOnBuffer;
+        return this;
+    }
+
+    /**
+     * 开始监听并启动 selector 线程和写入线程
+     */
+    public IngestServer start() throws IOException {
+        checkNotStarted();
+        if (tableSchemas.isEmpty()) {
+            throw new IllegalStateException("No table is registered");
+        }
+        for (TableSchema tableSchema : tableSchemas) {
+            TableBuffer table = new TableBuffer(tableSchema, batchSize);
+            tables.put(tableSchema.getTableName().toLowerCase(Locale.ROOT), table);
+            rollers.put(table, new TableFileRoller(tableSchema, new File(directory, tableSchema.getTableName()),
+                    maxRowsPerFile, rollIntervalMillis));
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        started = true;
+
+        writerThread = new Thread(this::runWriter, "ingest-writer");
+        selectorThread = new Thread(this::runSelector, "ingest-selector");
+        writerThread.setDaemon(true);
+        selectorThread.setDaemon(true);
+        writerThread.start();
+        selectorThread.start();
+        return this;
+    }
+
+    /**
+     * 实际监听的端口
+     */
+    public int getPort() {
+        if (!started) {
+            throw new IllegalStateException("The server is not started");
+        }
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * 通过校验的行数
+     */
+    public long getAcceptedRowNum() {
+        return acceptedRowNum.get();
+    }
+
+    /**
+     * 不合法被丢弃的行数
+     */
+    public long getRejectedLineNum() {
+        return rejectedLineNum.get();
+    }
+
+    /**
+     * 已写入 ITsFileWriter 的行数
+     */
+    public long getWrittenRowNum() {
+        return writtenRowNum.get();
+    }
+
+    /**
+     * 因批次中有行不晚于该设备在当前文件中已写出的数据而提前滚动文件的次数
+     */
+    public long getLateRollNum() {
+        return lateRollNum.get();
+    }
+
+    /**
+     * 已关闭的文件
+     */
+    public List<File> getClosedFiles() {
+        return new ArrayList<>(closedFiles);
+    }
+
+    /**
+     * 停止接收新连接，写出所有批次、关闭所有文件并发送剩余的确认后关闭连接
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (!started || stopping) {
+            return;
+        }
+        stopping = true;
+        selector.wakeup();
+        selectorThread.join();
+        writerThread.join();
+    }
+
+    private void checkNotStarted() {
+        if (started) {
+            throw new IllegalStateException("The server is already started");
+        }
+    }
+
+    private void runSelector() {
+        try {
+            while (!stopping) {
+                selector.select(lingerTimeout());
+                handleSelectedKeys();
+                handleAcks();
+                submitLingeredBatches();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Ingest server stopped unexpectedly", e);
+        }
+        try {
+            serverChannel.close();
+            // 不再读取新的行，只等待已接收的行确认
+            for (Connection connection : connections) {
+                connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            for (TableBuffer table : tables.values()) {
+                submit(table.takeBatch());
+            }
+            submit(STOP);
+            // 写入线程关闭所有文件后发出最后的确认
+            while (!writerDone) {
+                selector.select(WRITER_POLL_MILLIS);
+                handleSelectedKeys();
+                handleAcks();
+            }
+            handleAcks();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Failed to shut down the ingest server", e);
+        } finally {
+            for (Connection connection : new ArrayList<>(connections)) {
+                closeConnection(connection);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close the selector", e);
+            }
+        }
+    }
+
+    /**
+     * 距离最早一个非空批次等待超时的毫秒数，没有非空批次时返回 0（一直等待）
+     */
+    private long lingerTimeout() {
+        long deadline = Long.MAX_VALUE;
+        for (TableBuffer table : tables.values()) {
+            if (!table.isEmpty()) {
+                deadline = Math.min(deadline, table.getFirstRowNanos() + TimeUnit.MILLISECONDS.toNanos(lingerMillis));
+            }
+        }
+        if (deadline == Long.MAX_VALUE) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    private void submitLingeredBatches() {
+        long now = System.nanoTime();
+        for (TableBuffer table : tables.values()) {
+            if (!table.isEmpty() && now - table.getFirstRowNanos() >= TimeUnit.MILLISECONDS.toNanos(lingerMillis)) {
+                submit(table.takeBatch());
+            }
+        }
+    }
+
+    /**
+     * 交给写入线程，写入队列已满时阻塞，从而暂停读取
+     */
+    private void submit(TableBuffer.Batch batch) {
+        if (batch == null) {
+            return;
+        }
+        try {
+            writeQueue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while submitting a batch", e);
+        }
+    }
+
+    private void handleSelectedKeys() throws IOException {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Connection connection = (Connection) key.attachment();
+            if (key.isReadable()) {
+                read(connection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flushOutput(connection);
+                closeIfDone(connection);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+    }
+
+    private void read(Connection connection) {
+        int n;
+        try {
+            n = connection.channel.read(connection.input);
+        } catch (IOException e) {
+            closeConnection(connection);
+            return;
+        }
+        if (n < 0) {
+            connection.inputClosed = true;
+            connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+            // 没有换行结尾的最后一行
+            if (connection.input.position() > 0) {
+                handleLine(connection, decode(connection.input.array(), 0, connection.input.position()));
+                connection.input.clear();
+            }
+            closeIfDone(connection);
+            return;
+        }
+        ByteBuffer input = connection.input;
+        byte[] bytes = input.array();
+        int lineStart = 0;
+        for (int i = connection.scanned; i < input.position(); i++) {
+            if (bytes[i] == '\n') {
+                handleLine(connection, decode(bytes, lineStart, i));
+                lineStart = i + 1;
+            }
+        }
+        int remaining = input.position() - lineStart;
+        System.arraycopy(bytes, lineStart, bytes, 0, remaining);
+        input.position(remaining);
+        connection.scanned = remaining;
+        if (!input.hasRemaining()) {
+            if (input.capacity() >= MAX_LINE_LENGTH) {
+                respond(connection, "ERR " + (connection.lineNumber + 1) + " Line exceeds " + MAX_LINE_LENGTH + " bytes");
+                rejectedLineNum.incrementAndGet();
+                closeConnection(connection);
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(input.capacity() * 2);
+            input.flip();
+            larger.put(input);
+            connection.input = larger;
+        }
+    }
+
+    private static String decode(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private void handleLine(Connection connection, String line) {
+        connection.lineNumber++;
+        try {
+            TableBuffer table = parser.parse(line, tables, connection);
+            if (table == null) {
+                return;
+            }
+            connection.unackedRows++;
+            acceptedRowNum.incrementAndGet();
+            if (table.isFull()) {
+                submit(table.takeBatch());
+            }
+        } catch (IllegalArgumentException e) {
+            rejectedLineNum.incrementAndGet();
+            respond(connection, "ERR " + connection.lineNumber + " " + e.getMessage());
+        }
+    }
+
+    private void handleAcks() {
+        Ack ack;
+        while ((ack = acks.poll()) != null) {
+            Connection connection = ack.connection;
+            connection.unackedRows -= ack.rows;
+            respond(connection, ack.error == null ? "OK " + ack.rows : "FAIL " + ack.rows + " " + ack.error);
+            closeIfDone(connection);
+        }
+    }
+
+    private void respond(Connection connection, String message) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        connection.output.addLast(ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.UTF_8)));
+        flushOutput(connection);
+    }
+
+    private void flushOutput(Connection connection) {
+        try {
+            while (!connection.output.isEmpty()) {
+                ByteBuffer buffer = connection.output.peekFirst();
+                connection.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    break;
+                }
+                connection.output.pollFirst();
+            }
+        } catch (IOException e) {
+            closeConnection(connection);
+            return;
+        }
+        SelectionKey key = connection.key;
+        key.interestOps(connection.output.isEmpty()
+                ? key.interestOps() & ~SelectionKey.OP_WRITE
+                : key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * 客户端已关闭输出流且所有行都已确认时关闭连接
+     */
+    private void closeIfDone(Connection connection) {
+        if (connection.inputClosed && connection.unackedRows == 0 && connection.output.isEmpty()) {
+            closeConnection(connection);
+        }
+    }
+
+    private void closeConnection(Connection connection) {
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close connection", e);
+        }
+        connections.remove(connection);
+    }
+
+    private void runWriter() {
+        try {
+            while (true) {
+                TableBuffer.Batch batch = writeQueue.poll(Math.min(rollIntervalMillis, WRITER_POLL_MILLIS),
+                        TimeUnit.MILLISECONDS);
+                if (batch == STOP) {
+                    break;
+                }
+                if (batch != null) {
+                    writeBatch(batch);
+                }
+                long now = System.currentTimeMillis();
+                for (TableFileRoller roller : rollers.values()) {
+                    if (roller.shouldRoll(now)) {
+                        roll(roller);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Ingest writer interrupted, closing files");
+        } finally {
+            for (TableFileRoller roller : rollers.values()) {
+                roll(roller);
+            }
+            writerDone = true;
+            selector.wakeup();
+        }
+    }
+
+    private void writeBatch(TableBuffer.Batch batch) {
+        TableFileRoller roller = rollers.get(batch.table);
+        int rowSize = batch.tablet.getRowSize();
+        try {
+            if (roller.hasLateRows(batch.tablet)) {
+                // 乱序的行无法写入当前文件，提前滚动
+                lateRollNum.incrementAndGet();
+                roll(roller);
+            }
+            roller.write(batch.tablet);
+            writtenRowNum.addAndGet(rowSize);
+            if (ackOnBuffer) {
+                postAcks(batch.rowsByConnection, null);
+            } else {
+                pendingAcks.computeIfAbsent(roller, r -> new ArrayList<>()).add(batch.rowsByConnection);
+            }
+        } catch (IOException | WriteProcessException | RuntimeException e) {
+            LOGGER.error("Failed to write {} rows into table {}", rowSize,
+                    batch.table.getTableSchema().getTableName(), e);
+            postAcks(batch.rowsByConnection, e.toString());
+            // 写入器可能已处于不一致的状态，关闭当前文件
+            roll(roller);
+        } finally {
+            batch.table.recycle(batch.tablet);
+        }
+    }
+
+    /**
+     * 关闭当前文件，并发送等待该文件关闭的确认
+     */
+    private void roll(TableFileRoller roller) {
+        String error = null;
+        try {
+            File closed = roller.roll();
+            if (closed != null) {
+                closedFiles.add(closed);
+            }
+        } catch (IOException | WriteProcessException | RuntimeException e) {
+            LOGGER.error("Failed to close file", e);
+            error = e.toString();
+        }
+        List<Map<Connection, Integer>> pending = pendingAcks.remove(roller);
+        if (pending != null) {
+            for (Map<Connection, Integer> rowsByConnection : pending) {
+                postAcks(rowsByConnection, error);
+            }
+        }
+    }
+
+    private void postAcks(Map<Connection, Integer> rowsByConnection, String error) {
+        for (Map.Entry<Connection, Integer> entry : rowsByConnection.entrySet()) {
+            acks.offer(new Ack(entry.getKey(), entry.getValue(), error));
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * 一个客户端连接，只在 selector 线程中访问
+     */
+    static final class Connection {
+
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer input = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+        // input 中已经查找过换行符的字节数
+        int scanned = 0;
+        final Deque<ByteBuffer> output = new ArrayDeque<>();
+        long lineNumber = 0;
+        long unackedRows = 0;
+        boolean inputClosed = false;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static final class Ack {
+
+        final Connection connection;
+        final int rows;
+        final String error;
+
+        Ack(Connection connection, int rows, String error) {
+            this.connection = connection;
+            this.rows = rows;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package utils.ingest;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 行协议解析器，每行一条记录：
+ * <pre>
+ * &lt;表名&gt;[,&lt;TAG 列&gt;=&lt;值&gt;...] &lt;FIELD 列&gt;=&lt;值&gt;[,&lt;FIELD 列&gt;=&lt;值&gt;...] [时间戳]
+ * </pre>
+ * 例如 {@code table1,tag1=d1,tag2=beijing s1=10,s2=1.5,s3="a b" 1700000000000}。
+ * <ul>
+ *     <li>表名、列名不区分大小写；值按表结构中的列类型解析，BOOLEAN 为 true/false，DATE 为 yyyy-MM-dd</li>
+ *     <li>FIELD 值可以用双引号包围，引号内可以包含空格、逗号和等号，\" 和 \\ 表示引号和反斜杠</li>
+ *     <li>其他位置的空格、逗号、等号和反斜杠需要用反斜杠转义</li>
+ *     <li>未出现的列为空值；至少需要一个 FIELD 列；省略时间戳时使用服务端当前时间（毫秒）</li>
+ *     <li>空行和以 # 开头的行被忽略</li>
+ * </ul>
+ * 非线程安全。
+ */
+class LineParser {
+
+    private final StringBuilder token = new StringBuilder();
+    private String line;
+    private int position;
+
+    /**
+     * 解析一行并写入对应表的批次
+     *
+     * @param tables 小写表名到表批次
+     * @return 写入的表，行被忽略时返回 null
+     * @throws IllegalArgumentException 行格式不合法或与表结构不符，此时不会提交任何数据
+     */
+    TableBuffer parse(String line, Map<String, TableBuffer> tables, IngestServer.Connection connection) {
+        if (line.isEmpty() || line.charAt(0) == '#' || line.trim().isEmpty()) {
+            return null;
+        }
+        this.line = line;
+        this.position = 0;
+        String tableName = readToken();
+        TableBuffer table = tables.get(tableName.toLowerCase(Locale.ROOT));
+        if (table == null) {
+            throw new IllegalArgumentException("Unknown table: " + tableName);
+        }
+        table.beginRow();
+        while (peek() == ',') {
+            position++;
+            readPair(table, true);
+        }
+        expect(' ');
+        int fieldNum = 0;
+        do {
+            if (fieldNum > 0) {
+                position++;
+            }
+            readPair(table, false);
+            fieldNum++;
+        } while (peek() == ',');
+
+        long time;
+        if (position == line.length()) {
+            time = System.currentTimeMillis();
+        } else {
+            expect(' ');
+            String timestamp = line.substring(position).trim();
+            try {
+                time = Long.parseLong(timestamp);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid timestamp: " + timestamp);
+            }
+        }
+        table.commitRow(time, connection);
+        return table;
+    }
+
+    private void readPair(TableBuffer table, boolean tag) {
+        String columnName = readToken();
+        if (columnName.isEmpty()) {
+            throw new IllegalArgumentException("Missing column name at position " + position);
+        }
+        expect('=');
+        String value = !tag && peek() == '"' ? readQuoted() : readToken();
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Missing value for column " + columnName);
+        }
+        table.setValue(columnName, value, tag);
+    }
+
+    /**
+     * 读取到未转义的空格、逗号或等号为止
+     */
+    private String readToken() {
+        token.setLength(0);
+        while (position < line.length()) {
+            char c = line.charAt(position);
+            if (c == ' ' || c == ',' || c == '=') {
+                break;
+            }
+            if (c == '\\' && position + 1 < line.length()) {
+                position++;
+                c = line.charAt(position);
+            }
+            token.append(c);
+            position++;
+        }
+        return token.toString();
+    }
+
+    private String readQuoted() {
+        token.setLength(0);
+        position++;
+        while (position < line.length()) {
+            char c = line.charAt(position++);
+            if (c == '"') {
+                return token.toString();
+            }
+            if (c == '\\' && position < line.length()) {
+                c = line.charAt(position++);
+            }
+            token.append(c);
+        }
+        throw new IllegalArgumentException("Unterminated quoted value");
+    }
+
+    private int peek() {
+        return position < line.length() ? line.charAt(position) : -1;
+    }
+
+    private void expect(char expected) {
+        if (peek() != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at position " + position);
+        }
+        position++;
+    }
+}
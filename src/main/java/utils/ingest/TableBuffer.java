@@ -0,0 +1,228 @@
+package utils.ingest;
+
+import org.apache.tsfile.common.conf.TSFileConfig;
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.utils.DateUtils;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.IMeasurementSchema;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 一个表正在攒批的 Tablet。行数据直接写入 Tablet 的列数组，每行开始时所有列标记为空，
+ * 写入值时取消标记，解析失败时不提交该行即可丢弃已写入的部分。
+ * 同时记录批次中每个连接的行数，写出后据此确认。
+ * <p>
+ * 攒批只在 selector 线程中进行；写出后的 Tablet 由写入线程通过 {@link #recycle(Tablet)} 放回复用。
+ */
+class TableBuffer {
+
+    private final TableSchema tableSchema;
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<TSDataType> dataTypes = new ArrayList<>();
+    private final boolean[] tagColumns;
+    // 小写列名到列下标
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final int batchSize;
+    private final ConcurrentLinkedQueue<Tablet> freeTablets = new ConcurrentLinkedQueue<>();
+
+    private Tablet tablet;
+    private int rowSize = 0;
+    private Map<IngestServer.Connection, Integer> rowsByConnection = new IdentityHashMap<>();
+    private long firstRowNanos;
+
+    // 当前行写入过值的列，用于检查重复的列
+    private final boolean[] rowColumns;
+
+    TableBuffer(TableSchema tableSchema, int batchSize) {
+        this.tableSchema = tableSchema;
+        this.batchSize = batchSize;
+        List<ColumnCategory> columnCategories = tableSchema.getColumnTypes();
+        this.tagColumns = new boolean[tableSchema.getColumnSchemas().size()];
+        for (IMeasurementSchema columnSchema : tableSchema.getColumnSchemas()) {
+            columnIndexes.put(columnSchema.getMeasurementName().toLowerCase(Locale.ROOT), columnNames.size());
+            tagColumns[columnNames.size()] = columnCategories.get(columnNames.size()) == ColumnCategory.TAG;
+            columnNames.add(columnSchema.getMeasurementName());
+            dataTypes.add(columnSchema.getType());
+        }
+        this.rowColumns = new boolean[columnNames.size()];
+        this.tablet = newTablet();
+    }
+
+    TableSchema getTableSchema() {
+        return tableSchema;
+    }
+
+    /**
+     * 开始新的一行，所有列先标记为空
+     */
+    void beginRow() {
+        for (BitMap bitMap : tablet.getBitMaps()) {
+            bitMap.mark(rowSize);
+        }
+        Arrays.fill(rowColumns, false);
+    }
+
+    /**
+     * 按列类型解析并写入当前行的值
+     *
+     * @param columnName 列名，不区分大小写
+     * @param text       值的文本，引号和转义已去除
+     * @param tag        是否出现在 TAG 部分
+     */
+    void setValue(String columnName, String text, boolean tag) {
+        Integer index = columnIndexes.get(columnName.toLowerCase(Locale.ROOT));
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown column: " + columnName);
+        }
+        int column = index;
+        if (tagColumns[column] != tag) {
+            throw new IllegalArgumentException(
+                    "Column " + columnName + " is a " + (tagColumns[column] ? "TAG" : "FIELD") + " column");
+        }
+        if (rowColumns[column]) {
+            throw new IllegalArgumentException("Duplicate column: " + columnName);
+        }
+        rowColumns[column] = true;
+        Object values = tablet.getValues()[column];
+        TSDataType dataType = dataTypes.get(column);
+        try {
+            switch (dataType) {
+                case INT32:
+                    ((int[]) values)[rowSize] = Integer.parseInt(text);
+                    break;
+                case INT64:
+                case TIMESTAMP:
+                    ((long[]) values)[rowSize] = Long.parseLong(text);
+                    break;
+                case FLOAT:
+                    ((float[]) values)[rowSize] = Float.parseFloat(text);
+                    break;
+                case DOUBLE:
+                    ((double[]) values)[rowSize] = Double.parseDouble(text);
+                    break;
+                case BOOLEAN:
+                    ((boolean[]) values)[rowSize] = parseBoolean(text);
+                    break;
+                case DATE:
+                    LocalDate date = LocalDate.parse(text);
+                    // 检查是否在 DATE 类型的范围内
+                    DateUtils.parseDateExpressionToInt(date);
+                    ((LocalDate[]) values)[rowSize] = date;
+                    break;
+                case TEXT:
+                case STRING:
+                case BLOB:
+                    ((Binary[]) values)[rowSize] = new Binary(text.getBytes(TSFileConfig.STRING_CHARSET));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported data type: " + dataType);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + dataType + " value for column " + columnName + ": " + text);
+        }
+        tablet.getBitMaps()[column].unmark(rowSize);
+    }
+
+    /**
+     * 提交当前行
+     */
+    void commitRow(long time, IngestServer.Connection connection) {
+        if (rowSize == 0) {
+            firstRowNanos = System.nanoTime();
+        }
+        tablet.getTimestamps()[rowSize] = time;
+        rowSize++;
+        rowsByConnection.merge(connection, 1, Integer::sum);
+    }
+
+    boolean isFull() {
+        return rowSize == batchSize;
+    }
+
+    boolean isEmpty() {
+        return rowSize == 0;
+    }
+
+    /**
+     * 批次中第一行提交的时间（System.nanoTime）
+     */
+    long getFirstRowNanos() {
+        return firstRowNanos;
+    }
+
+    /**
+     * 取出当前批次并换上一个空的 Tablet，批次为空时返回 null
+     */
+    Batch takeBatch() {
+        if (rowSize == 0) {
+            return null;
+        }
+        tablet.setRowSize(rowSize);
+        Batch batch = new Batch(this, tablet, rowsByConnection);
+        Tablet free = freeTablets.poll();
+        tablet = free != null ? free : newTablet();
+        rowSize = 0;
+        rowsByConnection = new IdentityHashMap<>();
+        return batch;
+    }
+
+    /**
+     * 写入线程写完批次后放回 Tablet
+     */
+    void recycle(Tablet used) {
+        for (Object column : used.getValues()) {
+            if (column instanceof Object[]) {
+                // 释放对象引用
+                Arrays.fill((Object[]) column, null);
+            }
+        }
+        used.setRowSize(0);
+        freeTablets.offer(used);
+    }
+
+    private Tablet newTablet() {
+        Tablet newTablet = new Tablet(columnNames, dataTypes, batchSize);
+        newTablet.initBitMaps();
+        return newTablet;
+    }
+
+    private static boolean parseBoolean(String text) {
+        if ("true".equalsIgnoreCase(text)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(text)) {
+            return false;
+        }
+        throw new NumberFormatException(text);
+    }
+
+    /**
+     * 交给写入线程的一个批次
+     */
+    static final class Batch {
+
+        final TableBuffer table;
+        final Tablet tablet;
+        final Map<IngestServer.Connection, Integer> rowsByConnection;
+
+        Batch(TableBuffer table, Tablet tablet, Map<IngestServer.Connection, Integer> rowsByConnection) {
+            this.table = table;
+            this.tablet = tablet;
+            this.rowsByConnection = rowsByConnection;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package utils.ingest;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import utils.write.DeviceSortingTabletWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 一个表的滚动文件写入：文件写满行数或打开时间超过滚动间隔后关闭，下一个批次写入新文件。
+ * 文件名为 &lt;表名&gt;-&lt;打开时间(毫秒)&gt;-&lt;序号&gt;.tsfile。
+ * <p>
+ * 每个批次先经 DeviceSortingTabletWriter 按设备和时间排序后写入，多个客户端交错写入同一设备时，
+ * 批次内的乱序会被排好，同一设备同一时间戳的多行只保留最后一行。
+ * 不晚于该设备在当前文件中已写出数据的行无法写入当前文件，DeviceSortingTabletWriter 会拒绝整个批次，
+ * 调用方需要先通过 {@link #hasLateRows(Tablet)} 检查，存在这样的行时先滚动文件。
+ * 只在写入线程中使用。
+ */
+class TableFileRoller {
+
+    // 每个批次写入后都会显式刷出，预算只限制单个批次
+    private static final long SORT_BUFFER_BUDGET = 64L * 1024 * 1024;
+
+    private final TableSchema tableSchema;
+    private final File directory;
+    private final long maxRowsPerFile;
+    private final long rollIntervalMillis;
+    private final int[] tagColumns;
+
+    private File file;
+    private ITsFileWriter writer;
+    private DeviceSortingTabletWriter sorter;
+    private long fileRows;
+    private long openMillis;
+    private long sequence = 0;
+    // 当前文件中每个设备已写出的最大时间戳
+    private final Map<List<Binary>, Long> watermarks = new HashMap<>();
+
+    TableFileRoller(TableSchema tableSchema, File directory, long maxRowsPerFile, long rollIntervalMillis) {
+        this.tableSchema = tableSchema;
+        this.directory = directory;
+        this.maxRowsPerFile = maxRowsPerFile;
+        this.rollIntervalMillis = rollIntervalMillis;
+        List<ColumnCategory> columnCategories = tableSchema.getColumnTypes();
+        List<Integer> tagColumnList = new ArrayList<>();
+        for (int i = 0; i < columnCategories.size(); i++) {
+            if (columnCategories.get(i) == ColumnCategory.TAG) {
+                tagColumnList.add(i);
+            }
+        }
+        this.tagColumns = tagColumnList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * 批次中是否有行不晚于该设备在当前文件中已写出的最大时间戳，这样的行必须写入新文件
+     */
+    boolean hasLateRows(Tablet tablet) {
+        if (writer == null || watermarks.isEmpty()) {
+            return false;
+        }
+        long[] timestamps = tablet.getTimestamps();
+        for (int r = 0; r < tablet.getRowSize(); r++) {
+            Long watermark = watermarks.get(deviceKey(tablet, r));
+            if (watermark != null && timestamps[r] <= watermark) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 写入一个批次，当前没有打开的文件时先打开新文件。调用前必须确认 {@link #hasLateRows(Tablet)} 为 false
+     */
+    void write(Tablet tablet) throws IOException, WriteProcessException {
+        if (writer == null) {
+            open();
+        }
+        sorter.write(tablet);
+        sorter.flush();
+        long[] timestamps = tablet.getTimestamps();
+        for (int r = 0; r < tablet.getRowSize(); r++) {
+            watermarks.merge(deviceKey(tablet, r), timestamps[r], Math::max);
+        }
+        fileRows += tablet.getRowSize();
+    }
+
+    /**
+     * 当前文件是否已达到滚动条件
+     */
+    boolean shouldRoll(long nowMillis) {
+        return writer != null && (fileRows >= maxRowsPerFile || nowMillis - openMillis >= rollIntervalMillis);
+    }
+
+    /**
+     * 关闭当前文件
+     *
+     * @return 关闭的文件，没有打开的文件时返回 null
+     */
+    File roll() throws IOException, WriteProcessException {
+        if (writer == null) {
+            return null;
+        }
+        File closed = file;
+        try {
+            sorter.close();
+        } finally {
+            writer.close();
+            writer = null;
+            sorter = null;
+            file = null;
+            watermarks.clear();
+        }
+        return closed;
+    }
+
+    private void open() throws IOException {
+        directory.mkdirs();
+        openMillis = System.currentTimeMillis();
+        do {
+            file = new File(directory, String.format(Locale.ROOT, "%s-%d-%d.tsfile",
+                    tableSchema.getTableName(), openMillis, sequence++));
+        } while (file.exists());
+        writer = new TsFileWriterBuilder().file(file).tableSchema(tableSchema).build();
+        sorter = new DeviceSortingTabletWriter(writer, tableSchema, SORT_BUFFER_BUDGET);
+        fileRows = 0;
+    }
+
+    /**
+     * 一行的 TAG 元组，空值为 null
+     */
+    private List<Binary> deviceKey(Tablet tablet, int row) {
+        Object[] values = tablet.getValues();
+        BitMap[] bitMaps = tablet.getBitMaps();
+        List<Binary> deviceKey = new ArrayList<>(tagColumns.length);
+        for (int tagColumn : tagColumns) {
+            boolean isNull = bitMaps != null && bitMaps[tagColumn] != null && bitMaps[tagColumn].isMarked(row);
+            deviceKey.add(isNull ? null : ((Binary[]) values[tagColumn])[row]);
+        }
+        return deviceKey;
+    }
+}
@@ -0,0 +1,195 @@
+package utils.metadata;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.file.metadata.IDeviceID;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.file.metadata.TimeseriesMetadata;
+import org.apache.tsfile.file.metadata.statistics.Statistics;
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.write.schema.IMeasurementSchema;
+import utils.JsonWriter;
+import utils.metadata.TsFileSummary.ColumnSummary;
+import utils.metadata.TsFileSummary.DeviceSummary;
+import utils.metadata.TsFileSummary.TableSummary;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 只读取 TsFile 尾部索引区的元数据检查工具，不解码任何数据页。
+ * 输出每个表、设备、列的时间范围和数据点数，以及列的编码和压缩方式（来自文件中保存的表结构）。
+ * <p>
+ * 命令行用法：TsFileMetadataInspector &lt;文件或目录&gt; [输出JSON文件] [线程数]
+ */
+public class TsFileMetadataInspector {
+
+    private static final String TSFILE_SUFFIX = ".tsfile";
+
+    /**
+     * 检查单个文件
+     *
+     * @param file TsFile 文件
+     * @return 文件摘要
+     */
+    public TsFileSummary inspect(File file) throws IOException {
+        TsFileSummary summary = new TsFileSummary(file.getPath(), file.length());
+        try (TsFileSequenceReader reader = new TsFileSequenceReader(file.getPath())) {
+            Map<String, TableSchema> tableSchemaMap = reader.readFileMetadata().getTableSchemaMap();
+            for (TableSchema tableSchema : tableSchemaMap.values()) {
+                TableSummary table = new TableSummary(tableSchema.getTableName());
+                List<IMeasurementSchema> columnSchemas = tableSchema.getColumnSchemas();
+                List<ColumnCategory> columnCategories = tableSchema.getColumnTypes();
+                for (int i = 0; i < columnSchemas.size(); i++) {
+                    IMeasurementSchema columnSchema = columnSchemas.get(i);
+                    table.getColumns().add(new ColumnSummary(columnSchema.getMeasurementName(), columnSchema.getType().name())
+                            .schema(columnCategories.get(i).name(), columnSchema.getEncodingType().name(),
+                                    columnSchema.getCompressor().name()));
+                }
+                summary.getTables().add(table);
+            }
+
+            // 不加载 chunk 元数据，只读取 TimeseriesMetadata 中的统计信息
+            Map<IDeviceID, List<TimeseriesMetadata>> timeseriesMetadataMap = reader.getAllTimeseriesMetadata(false);
+            for (Map.Entry<IDeviceID, List<TimeseriesMetadata>> entry : timeseriesMetadataMap.entrySet()) {
+                IDeviceID deviceID = entry.getKey();
+                TableSummary table = summary.getTable(deviceID.getTableName());
+                if (table == null) {
+                    // 树模型文件没有表结构，以设备ID的第一段作为分组
+                    table = new TableSummary(deviceID.getTableName());
+                    summary.getTables().add(table);
+                }
+                table.getDevices().add(summarizeDevice(deviceID, entry.getValue()));
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * 并行检查目录下（含子目录）的所有 TsFile，单个文件出错时记录错误信息而不中断
+     *
+     * @param directory   目录
+     * @param threadCount 线程数
+     * @return 按路径排序的文件摘要
+     */
+    public List<TsFileSummary> inspectDirectory(Path directory, int threadCount) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(directory)) {
+            files = stream.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(TSFILE_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threadCount));
+        try {
+            List<Future<TsFileSummary>> futures = new ArrayList<>(files.size());
+            for (Path path : files) {
+                futures.add(executor.submit(() -> inspectQuietly(path.toFile())));
+            }
+            List<TsFileSummary> summaries = new ArrayList<>(files.size());
+            for (Future<TsFileSummary> future : futures) {
+                summaries.add(future.get());
+            }
+            return summaries;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while inspecting " + directory, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to inspect " + directory, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 以JSON格式输出文件摘要
+     */
+    public static void writeJson(List<TsFileSummary> summaries, Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject().name("files").beginArray();
+        for (TsFileSummary summary : summaries) {
+            summary.writeJson(json);
+        }
+        json.endArray().endObject();
+        json.flush();
+    }
+
+    private TsFileSummary inspectQuietly(File file) {
+        try {
+            return inspect(file);
+        } catch (Exception e) {
+            TsFileSummary summary = new TsFileSummary(file.getPath(), file.length());
+            summary.setError(e.getClass().getSimpleName() + ": " + e.getMessage());
+            return summary;
+        }
+    }
+
+    private static DeviceSummary summarizeDevice(IDeviceID deviceID, List<TimeseriesMetadata> timeseriesMetadataList) {
+        DeviceSummary device = new DeviceSummary(deviceID.toString());
+        long startTime = Long.MAX_VALUE;
+        long endTime = Long.MIN_VALUE;
+        long rowCount = 0;
+        for (TimeseriesMetadata timeseriesMetadata : timeseriesMetadataList) {
+            Statistics<? extends Serializable> statistics = timeseriesMetadata.getStatistics();
+            if (timeseriesMetadata.getMeasurementId().isEmpty()) {
+                // 对齐设备的时间列，measurementId 为空串，其点数即为行数
+                device.setTimeRange(statistics.getStartTime(), statistics.getEndTime(), statistics.getCount());
+                continue;
+            }
+            device.getColumns().add(new ColumnSummary(timeseriesMetadata.getMeasurementId(),
+                    timeseriesMetadata.getTsDataType().name())
+                    .statistics(statistics.getStartTime(), statistics.getEndTime(), statistics.getCount()));
+            startTime = Math.min(startTime, statistics.getStartTime());
+            endTime = Math.max(endTime, statistics.getEndTime());
+            rowCount = Math.max(rowCount, statistics.getCount());
+        }
+        if (device.getRowCount() == 0 && rowCount > 0) {
+            // 非对齐设备没有时间列，行数取各列点数的最大值（下界）
+            device.setTimeRange(startTime, endTime, rowCount);
+        }
+        return device;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: TsFileMetadataInspector <file or directory> [output json] [threads]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        TsFileMetadataInspector inspector = new TsFileMetadataInspector();
+
+        long start = System.nanoTime();
+        List<TsFileSummary> summaries = Files.isDirectory(input)
+                ? inspector.inspectDirectory(input, threadCount)
+                : List.of(inspector.inspect(input.toFile()));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        if (args.length > 1) {
+            try (Writer writer = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                writeJson(summaries, writer);
+            }
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            writeJson(summaries, writer);
+            writer.write(System.lineSeparator());
+            writer.flush();
+        }
+        System.err.println("Inspected " + summaries.size() + " files in " + elapsedMillis + " ms");
+    }
+}
@@ -0,0 +1,255 @@
+package utils.metadata;
+
+import utils.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个 TsFile 的元数据摘要：表、设备、列以及各自的时间范围和数据点数
+ */
+public class TsFileSummary {
+
+    private final String path;
+    private final long fileSize;
+    private final List<TableSummary> tables = new ArrayList<>();
+    private String error;
+
+    public TsFileSummary(String path, long fileSize) {
+        this.path = path;
+        this.fileSize = fileSize;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public List<TableSummary> getTables() {
+        return tables;
+    }
+
+    /**
+     * 文件无法解析时的错误信息，正常时为 null
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public TableSummary getTable(String tableName) {
+        for (TableSummary table : tables) {
+            if (table.getName().equalsIgnoreCase(tableName)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    public void writeJson(JsonWriter json) throws IOException {
+        json.beginObject().name("path").value(path).name("fileSize").value(fileSize);
+        if (error != null) {
+            json.name("error").value(error);
+        }
+        json.name("tables").beginArray();
+        for (TableSummary table : tables) {
+            table.writeJson(json);
+        }
+        json.endArray().endObject();
+    }
+
+    /**
+     * 表的摘要：列定义和设备列表
+     */
+    public static class TableSummary {
+
+        private final String name;
+        private final List<ColumnSummary> columns = new ArrayList<>();
+        private final List<DeviceSummary> devices = new ArrayList<>();
+
+        public TableSummary(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<ColumnSummary> getColumns() {
+            return columns;
+        }
+
+        public List<DeviceSummary> getDevices() {
+            return devices;
+        }
+
+        /**
+         * 表中所有设备的行数之和
+         */
+        public long rowCount() {
+            long rowCount = 0;
+            for (DeviceSummary device : devices) {
+                rowCount += device.getRowCount();
+            }
+            return rowCount;
+        }
+
+        void writeJson(JsonWriter json) throws IOException {
+            json.beginObject().name("name").value(name).name("rowCount").value(rowCount());
+            json.name("columns").beginArray();
+            for (ColumnSummary column : columns) {
+                column.writeJson(json);
+            }
+            json.endArray().name("devices").beginArray();
+            for (DeviceSummary device : devices) {
+                device.writeJson(json);
+            }
+            json.endArray().endObject();
+        }
+    }
+
+    /**
+     * 设备的摘要：时间范围、行数以及每列的数据点数
+     */
+    public static class DeviceSummary {
+
+        private final String deviceId;
+        private long startTime = Long.MAX_VALUE;
+        private long endTime = Long.MIN_VALUE;
+        private long rowCount = 0;
+        private final List<ColumnSummary> columns = new ArrayList<>();
+
+        public DeviceSummary(String deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        public String getDeviceId() {
+            return deviceId;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        public List<ColumnSummary> getColumns() {
+            return columns;
+        }
+
+        void setTimeRange(long startTime, long endTime, long rowCount) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.rowCount = rowCount;
+        }
+
+        void writeJson(JsonWriter json) throws IOException {
+            json.beginObject().name("device").value(deviceId)
+                    .name("startTime").value(startTime)
+                    .name("endTime").value(endTime)
+                    .name("rowCount").value(rowCount)
+                    .name("columns").beginArray();
+            for (ColumnSummary column : columns) {
+                column.writeJson(json);
+            }
+            json.endArray().endObject();
+        }
+    }
+
+    /**
+     * 列的摘要。表级别的列描述包含分类、编码和压缩方式；设备级别的列描述包含时间范围和非空数据点数
+     */
+    public static class ColumnSummary {
+
+        private final String name;
+        private final String dataType;
+        private String category;
+        private String encoding;
+        private String compression;
+        private long startTime;
+        private long endTime;
+        private long count = -1;
+
+        public ColumnSummary(String name, String dataType) {
+            this.name = name;
+            this.dataType = dataType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDataType() {
+            return dataType;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public String getCompression() {
+            return compression;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        /**
+         * 非空数据点数，表级别的列描述中为 -1
+         */
+        public long getCount() {
+            return count;
+        }
+
+        ColumnSummary schema(String category, String encoding, String compression) {
+            this.category = category;
+            this.encoding = encoding;
+            this.compression = compression;
+            return this;
+        }
+
+        ColumnSummary statistics(long startTime, long endTime, long count) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.count = count;
+            return this;
+        }
+
+        void writeJson(JsonWriter json) throws IOException {
+            json.beginObject().name("name").value(name).name("dataType").value(dataType);
+            if (category != null) {
+                json.name("category").value(category)
+                        .name("encoding").value(encoding)
+                        .name("compression").value(compression);
+            }
+            if (count >= 0) {
+                json.name("startTime").value(startTime)
+                        .name("endTime").value(endTime)
+                        .name("count").value(count);
+            }
+            json.endObject();
+        }
+    }
+}
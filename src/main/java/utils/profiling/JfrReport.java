@@ -0,0 +1,310 @@
+package utils.profiling;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 从 JFR 记录文件中汇总的诊断信息：
+ * <ul>
+ *     <li>分配热点：按（分配的类型, 第一个非 JDK 栈帧）汇总 jdk.ObjectAllocationSample 的采样权重（估算的分配字节数）</li>
+ *     <li>CPU 热点：jdk.ExecutionSample 中栈顶方法（自身耗时）和第一个非 JDK 方法的采样次数</li>
+ *     <li>GC 停顿：jdk.GarbageCollection 的次数、停顿总时长和最长停顿，按收集器汇总</li>
+ *     <li>文件 I/O：jdk.FileRead/jdk.FileWrite 按文件路径汇总的次数、字节数和耗时</li>
+ * </ul>
+ * 第一个非 JDK 栈帧指类名不以 java.、javax.、jdk.、sun.、com.sun. 开头的第一个 Java 栈帧，
+ * 用于把 Arrays.copyOf、StringBuilder 等 JDK 内部的分配和耗时归到调用它的代码上。
+ */
+public class JfrReport {
+
+    private static final String[] JDK_PACKAGES = {"java.", "javax.", "jdk.", "sun.", "com.sun."};
+
+    private final Map<String, Counter> allocationSites = new HashMap<>();
+    private final Map<String, Counter> selfMethods = new HashMap<>();
+    private final Map<String, Counter> applicationMethods = new HashMap<>();
+    private final Map<String, Counter> gcPauses = new HashMap<>();
+    private final Map<String, Counter> fileReads = new HashMap<>();
+    private final Map<String, Counter> fileWrites = new HashMap<>();
+    private long allocatedBytes = 0;
+    private long executionSamples = 0;
+
+    /**
+     * 解析 JFR 记录文件
+     */
+    public static JfrReport parse(Path recording) throws IOException {
+        JfrReport report = new JfrReport();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                report.accept(file.readEvent());
+            }
+        }
+        return report;
+    }
+
+    private void accept(RecordedEvent event) {
+        switch (event.getEventType().getName()) {
+            case "jdk.ObjectAllocationSample":
+                long weight = event.getLong("weight");
+                allocatedBytes += weight;
+                String site = event.getClass("objectClass").getName() + " @ "
+                        + frameName(applicationFrame(event.getStackTrace()));
+                count(allocationSites, site, weight, 0);
+                break;
+            case "jdk.ExecutionSample":
+                executionSamples++;
+                RecordedStackTrace stackTrace = event.getStackTrace();
+                if (stackTrace != null && !stackTrace.getFrames().isEmpty()) {
+                    count(selfMethods, frameName(stackTrace.getFrames().get(0)), 1, 0);
+                }
+                count(applicationMethods, frameName(applicationFrame(stackTrace)), 1, 0);
+                break;
+            case "jdk.GarbageCollection":
+                count(gcPauses, event.getString("name"), event.getDuration("sumOfPauses").toNanos(),
+                        event.getDuration("longestPause").toNanos());
+                break;
+            case "jdk.FileRead":
+                count(fileReads, pathOf(event), event.getLong("bytesRead"), event.getDuration().toNanos());
+                break;
+            case "jdk.FileWrite":
+                count(fileWrites, pathOf(event), event.getLong("bytesWritten"), event.getDuration().toNanos());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 采样估算的分配字节数
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getExecutionSamples() {
+        return executionSamples;
+    }
+
+    /**
+     * 按估算分配字节数降序排列的分配热点
+     */
+    public List<Counter> topAllocationSites(int limit) {
+        return top(allocationSites, limit);
+    }
+
+    /**
+     * 按采样次数降序排列的栈顶方法
+     */
+    public List<Counter> topSelfMethods(int limit) {
+        return top(selfMethods, limit);
+    }
+
+    /**
+     * 按采样次数降序排列的第一个非 JDK 方法
+     */
+    public List<Counter> topApplicationMethods(int limit) {
+        return top(applicationMethods, limit);
+    }
+
+    /**
+     * 每个收集器的 GC 次数、停顿总时长（value，纳秒）和最长停顿（maxNanos）
+     */
+    public List<Counter> gcPauses() {
+        return top(gcPauses, Integer.MAX_VALUE);
+    }
+
+    public long totalGcPauseNanos() {
+        return sum(gcPauses);
+    }
+
+    public long gcCount() {
+        long count = 0;
+        for (Counter counter : gcPauses.values()) {
+            count += counter.count;
+        }
+        return count;
+    }
+
+    public long fileReadBytes() {
+        return sum(fileReads);
+    }
+
+    public long fileWriteBytes() {
+        return sum(fileWrites);
+    }
+
+    /**
+     * 按读取字节数降序排列的文件，value 为字节数
+     */
+    public List<Counter> topFileReads(int limit) {
+        return top(fileReads, limit);
+    }
+
+    /**
+     * 按写入字节数降序排列的文件，value 为字节数
+     */
+    public List<Counter> topFileWrites(int limit) {
+        return top(fileWrites, limit);
+    }
+
+    /**
+     * 生成 Markdown 格式的摘要
+     *
+     * @param title 标题，通常为测试或基准测试的名称
+     * @param limit 每个列表最多的行数
+     */
+    public String toMarkdown(String title, int limit) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# ").append(title).append("\n\n");
+
+        sb.append(String.format(Locale.ROOT, "## 分配热点（采样估算共 %.1f MB）\n\n", allocatedBytes / 1e6));
+        sb.append("| 类型 @ 位置 | 估算分配(MB) | 占比 | 采样数 |\n| --- | --- | --- | --- |\n");
+        for (Counter counter : topAllocationSites(limit)) {
+            sb.append(String.format(Locale.ROOT, "| %s | %.1f | %.1f%% | %d |\n", counter.key, counter.value / 1e6,
+                    percent(counter.value, allocatedBytes), counter.count));
+        }
+
+        sb.append(String.format(Locale.ROOT, "\n## CPU 热点（共 %d 个采样）\n\n", executionSamples));
+        sb.append("| 栈顶方法 | 采样数 | 占比 |\n| --- | --- | --- |\n");
+        for (Counter counter : topSelfMethods(limit)) {
+            sb.append(String.format(Locale.ROOT, "| %s | %d | %.1f%% |\n",
+                    counter.key, counter.count, percent(counter.count, executionSamples)));
+        }
+        sb.append("\n| 第一个非 JDK 方法 | 采样数 | 占比 |\n| --- | --- | --- |\n");
+        for (Counter counter : topApplicationMethods(limit)) {
+            sb.append(String.format(Locale.ROOT, "| %s | %d | %.1f%% |\n",
+                    counter.key, counter.count, percent(counter.count, executionSamples)));
+        }
+
+        sb.append("\n## GC 停顿\n\n| 收集器 | 次数 | 停顿总时长(ms) | 最长停顿(ms) |\n| --- | --- | --- | --- |\n");
+        for (Counter counter : gcPauses()) {
+            sb.append(String.format(Locale.ROOT, "| %s | %d | %.2f | %.2f |\n",
+                    counter.key, counter.count, counter.value / 1e6, counter.maxNanos / 1e6));
+        }
+
+        sb.append("\n## 文件 I/O\n\n| 操作 | 文件 | 次数 | 字节数 | 耗时(ms) |\n| --- | --- | --- | --- | --- |\n");
+        for (Counter counter : topFileReads(limit)) {
+            sb.append(String.format(Locale.ROOT, "| 读 | %s | %d | %d | %.2f |\n",
+                    counter.key, counter.count, counter.value, counter.totalNanos / 1e6));
+        }
+        for (Counter counter : topFileWrites(limit)) {
+            sb.append(String.format(Locale.ROOT, "| 写 | %s | %d | %d | %.2f |\n",
+                    counter.key, counter.count, counter.value, counter.totalNanos / 1e6));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 标准输入输出等没有路径的读写记为 &lt;unknown&gt;
+     */
+    private static String pathOf(RecordedEvent event) {
+        String path = event.getString("path");
+        return path == null ? "<unknown>" : path;
+    }
+
+    private static RecordedFrame applicationFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return null;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame() && !isJdkClass(frame.getMethod().getType().getName())) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isJdkClass(String className) {
+        for (String jdkPackage : JDK_PACKAGES) {
+            if (className.startsWith(jdkPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String frameName(RecordedFrame frame) {
+        if (frame == null) {
+            return "<unknown>";
+        }
+        String name = frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+        return frame.getLineNumber() > 0 ? name + ":" + frame.getLineNumber() : name;
+    }
+
+    private static void count(Map<String, Counter> counters, String key, long value, long nanos) {
+        Counter counter = counters.computeIfAbsent(key, Counter::new);
+        counter.count++;
+        counter.value += value;
+        counter.totalNanos += nanos;
+        counter.maxNanos = Math.max(counter.maxNanos, nanos);
+    }
+
+    private static List<Counter> top(Map<String, Counter> counters, int limit) {
+        List<Counter> sorted = new ArrayList<>(counters.values());
+        sorted.sort(Comparator.comparingLong((Counter c) -> c.value).reversed().thenComparing(c -> c.key));
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    private static long sum(Map<String, Counter> counters) {
+        long total = 0;
+        for (Counter counter : counters.values()) {
+            total += counter.value;
+        }
+        return total;
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : part * 100.0 / total;
+    }
+
+    /**
+     * 一个汇总项：次数、累计值（字节数、采样数或停顿时长，见各方法说明）以及耗时之和与最大值
+     */
+    public static final class Counter {
+
+        private final String key;
+        private long count;
+        private long value;
+        private long totalNanos;
+        private long maxNanos;
+
+        Counter(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return key + "{count=" + count + ", value=" + value + ", totalNanos=" + totalNanos
+                    + ", maxNanos=" + maxNanos + "}";
+        }
+    }
+}
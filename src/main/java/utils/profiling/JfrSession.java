@@ -0,0 +1,131 @@
+package utils.profiling;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * 一次 JDK Flight Recorder 记录：{@link #start(String)} 开始记录，{@link #stop()} 停止后在输出目录中生成
+ * &lt;名称&gt;.jfr 记录文件和 &lt;名称&gt;.md 摘要（见 {@link JfrReport}），并在 index.md 中追加一行汇总。
+ * <p>
+ * 记录的事件：对象分配采样（每秒最多 1000 个）、CPU 采样（每 10 ms）、GC 以及所有文件读写（阈值为 0，开销较大，仅用于诊断）。
+ * 记录是整个 JVM 范围的，同时运行的其他线程的事件也会被记录，因此只适合串行执行的测试和基准测试。
+ * <p>
+ * 通过系统属性开启：-Djfr=true，输出目录为 -Djfr.dir，默认 target/jfr-reports。
+ */
+public class JfrSession implements AutoCloseable {
+
+    public static final String ENABLED_PROPERTY = "jfr";
+    public static final String DIRECTORY_PROPERTY = "jfr.dir";
+    public static final String DEFAULT_DIRECTORY = "target/jfr-reports";
+    private static final int TOP_LIMIT = 20;
+    private static final String INDEX_HEADER = "| 名称 | 耗时(ms) | 估算分配(MB) | CPU 采样数 | GC 次数 | GC 停顿(ms) | 读(MB) | 写(MB) |\n"
+            + "| --- | --- | --- | --- | --- | --- | --- | --- |\n";
+
+    private final String name;
+    private final String fileName;
+    private final File directory;
+    private final Recording recording;
+    private final long startNanos;
+    private boolean stopped = false;
+
+    private JfrSession(String name, File directory) {
+        this.name = name;
+        this.fileName = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        this.directory = directory;
+        this.recording = new Recording();
+        recording.setName(name);
+        recording.enable("jdk.ObjectAllocationSample").with("throttle", "1000/s").withStackTrace();
+        recording.enable("jdk.ExecutionSample").withPeriod(Duration.ofMillis(10));
+        recording.enable("jdk.GarbageCollection");
+        recording.enable("jdk.FileRead").withThreshold(Duration.ZERO).withStackTrace();
+        recording.enable("jdk.FileWrite").withThreshold(Duration.ZERO).withStackTrace();
+        recording.start();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 是否通过 -Djfr=true 开启了记录，且当前 JVM 支持 JFR
+     */
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY) && FlightRecorder.isAvailable();
+    }
+
+    /**
+     * 输出目录，由 -Djfr.dir 指定
+     */
+    public static File defaultDirectory() {
+        return new File(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY));
+    }
+
+    public static JfrSession start(String name) {
+        return start(name, defaultDirectory());
+    }
+
+    /**
+     * 开始记录
+     *
+     * @param name      名称，用于输出文件名，其中文件名不允许的字符替换为下划线
+     * @param directory 输出目录
+     */
+    public static JfrSession start(String name, File directory) {
+        return new JfrSession(name, directory);
+    }
+
+    /**
+     * 停止记录，写出记录文件、摘要和汇总行
+     */
+    public JfrReport stop() throws IOException {
+        if (stopped) {
+            throw new IllegalStateException("Recording " + name + " is already stopped");
+        }
+        stopped = true;
+        long elapsedNanos = System.nanoTime() - startNanos;
+        try {
+            recording.stop();
+            Files.createDirectories(directory.toPath());
+            Path jfrFile = new File(directory, fileName + ".jfr").toPath();
+            recording.dump(jfrFile);
+            JfrReport report = JfrReport.parse(jfrFile);
+            Files.write(new File(directory, fileName + ".md").toPath(),
+                    report.toMarkdown(name, TOP_LIMIT).getBytes(StandardCharsets.UTF_8));
+            appendIndex(report, elapsedNanos);
+            return report;
+        } finally {
+            recording.close();
+        }
+    }
+
+    /**
+     * 未调用 stop 时丢弃记录
+     */
+    @Override
+    public void close() {
+        if (!stopped) {
+            stopped = true;
+            recording.close();
+        }
+    }
+
+    private void appendIndex(JfrReport report, long elapsedNanos) throws IOException {
+        String line = String.format(Locale.ROOT, "| [%s](%s.md) | %.1f | %.1f | %d | %d | %.2f | %.1f | %.1f |\n",
+                name, fileName, elapsedNanos / 1e6, report.getAllocatedBytes() / 1e6, report.getExecutionSamples(),
+                report.gcCount(), report.totalGcPauseNanos() / 1e6,
+                report.fileReadBytes() / 1e6, report.fileWriteBytes() / 1e6);
+        synchronized (JfrSession.class) {
+            Path index = new File(directory, "index.md").toPath();
+            if (!Files.exists(index)) {
+                Files.write(index, INDEX_HEADER.getBytes(StandardCharsets.UTF_8));
+            }
+            Files.write(index, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package utils.read;
+
+import org.apache.tsfile.block.column.Column;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.read.common.Path;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.utils.DateUtils;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按时间对齐的一批列式数据：时间列，以及每个序列的值数组和空值位图（标记表示该行为空）。
+ * 值数组的类型由序列的数据类型决定：
+ * <ul>
+ *     <li>BOOLEAN：boolean[]</li>
+ *     <li>INT32、DATE：int[]，DATE 为 TsFile 中的整数表示（yyyyMMdd），可以通过 {@link #getDate(int, int)} 转换</li>
+ *     <li>INT64、TIMESTAMP：long[]</li>
+ *     <li>FLOAT：float[]</li>
+ *     <li>DOUBLE：double[]</li>
+ *     <li>TEXT、STRING、BLOB：Binary[]</li>
+ * </ul>
+ * 数组长度为批次容量，只有前 {@link #getSize()} 个元素有效。
+ */
+public class ColumnBatch {
+
+    private final List<Path> paths;
+    private final TSDataType[] dataTypes;
+    private final long[] times;
+    private final Object[] values;
+    private final BitMap[] nulls;
+    private int size = 0;
+
+    ColumnBatch(List<Path> paths, TSDataType[] dataTypes, int capacity) {
+        this.paths = Collections.unmodifiableList(paths);
+        this.dataTypes = dataTypes.clone();
+        this.times = new long[capacity];
+        this.values = new Object[dataTypes.length];
+        this.nulls = new BitMap[dataTypes.length];
+        for (int i = 0; i < dataTypes.length; i++) {
+            values[i] = newArray(dataTypes[i], capacity);
+            nulls[i] = new BitMap(capacity);
+            nulls[i].markAll();
+        }
+    }
+
+    public List<Path> getPaths() {
+        return paths;
+    }
+
+    public int getColumnCount() {
+        return dataTypes.length;
+    }
+
+    public TSDataType getDataType(int column) {
+        return dataTypes[column];
+    }
+
+    /**
+     * 当前批次的行数
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public long[] getTimes() {
+        return times;
+    }
+
+    public boolean[] getBooleans(int column) {
+        return (boolean[]) values[column];
+    }
+
+    public int[] getInts(int column) {
+        return (int[]) values[column];
+    }
+
+    public long[] getLongs(int column) {
+        return (long[]) values[column];
+    }
+
+    public float[] getFloats(int column) {
+        return (float[]) values[column];
+    }
+
+    public double[] getDoubles(int column) {
+        return (double[]) values[column];
+    }
+
+    public Binary[] getBinaries(int column) {
+        return (Binary[]) values[column];
+    }
+
+    /**
+     * DATE 列第 row 行的日期
+     */
+    public LocalDate getDate(int column, int row) {
+        return DateUtils.parseIntToLocalDate(getInts(column)[row]);
+    }
+
+    public BitMap getBitMap(int column) {
+        return nulls[column];
+    }
+
+    public boolean isNull(int column, int row) {
+        return nulls[column].isMarked(row);
+    }
+
+    /**
+     * 清空批次，所有值重新标记为空
+     */
+    void reset() {
+        for (int i = 0; i < values.length; i++) {
+            nulls[i].markAll();
+            if (values[i] instanceof Object[]) {
+                // 释放对象引用
+                Arrays.fill((Object[]) values[i], 0, size, null);
+            }
+        }
+        size = 0;
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * 将 TsBlock 值列中 position 处的值复制到第 row 行
+     */
+    void copy(int column, int row, Column source, int position) {
+        if (source.isNull(position)) {
+            return;
+        }
+        switch (dataTypes[column]) {
+            case BOOLEAN:
+                ((boolean[]) values[column])[row] = source.getBoolean(position);
+                break;
+            case INT32:
+            case DATE:
+                ((int[]) values[column])[row] = source.getInt(position);
+                break;
+            case INT64:
+            case TIMESTAMP:
+                ((long[]) values[column])[row] = source.getLong(position);
+                break;
+            case FLOAT:
+                ((float[]) values[column])[row] = source.getFloat(position);
+                break;
+            case DOUBLE:
+                ((double[]) values[column])[row] = source.getDouble(position);
+                break;
+            case TEXT:
+            case STRING:
+            case BLOB:
+                ((Binary[]) values[column])[row] = source.getBinary(position);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataTypes[column]);
+        }
+        nulls[column].unmark(row);
+    }
+
+    private static Object newArray(TSDataType dataType, int capacity) {
+        switch (dataType) {
+            case BOOLEAN:
+                return new boolean[capacity];
+            case INT32:
+            case DATE:
+                return new int[capacity];
+            case INT64:
+            case TIMESTAMP:
+                return new long[capacity];
+            case FLOAT:
+                return new float[capacity];
+            case DOUBLE:
+                return new double[capacity];
+            case TEXT:
+            case STRING:
+            case BLOB:
+                return new Binary[capacity];
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package utils.read;
+
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.file.metadata.ChunkMetadata;
+import org.apache.tsfile.file.metadata.IChunkMetadata;
+import org.apache.tsfile.file.metadata.TimeseriesMetadata;
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.read.common.Path;
+import org.apache.tsfile.read.common.block.TsBlock;
+import org.apache.tsfile.read.filter.basic.Filter;
+import org.apache.tsfile.read.reader.IPageReader;
+import org.apache.tsfile.read.reader.chunk.ChunkReader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 树模型的列式批量读取器，替代 QueryExpression + QueryDataSet 逐行返回 RowRecord 的方式。
+ * 对给定的一组 Path 按时间做全外连接，每次返回一个 {@link ColumnBatch}，值保存在基本类型数组中，
+ * 缺失的值通过空值位图标记，读取过程中不为每行创建 RowRecord、Field 或装箱对象。
+ * <p>
+ * 每个序列直接从 chunk 解码 page，可选的时间过滤条件先用于跳过 chunk，再下推到 page 的解码中。
+ * 传入线程池时，各序列的下一个 page 会在线程池中提前解码，同一设备的多个序列可以并行读取；
+ * 不传入线程池时在调用线程中顺序解码。
+ * <p>
+ * 只支持非对齐序列，不处理 mods 文件中的删除。next 返回的批次对象会被复用，下次调用 next 后内容失效。
+ */
+public class TreeBatchReader implements AutoCloseable {
+
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private final TsFileSequenceReader reader;
+    private final Filter timeFilter;
+    private final ExecutorService executor;
+    private final SeriesCursor[] cursors;
+    private final ColumnBatch batch;
+    // 关闭后解码任务不再继续解码
+    private volatile boolean closed = false;
+
+    public TreeBatchReader(TsFileSequenceReader reader, List<Path> paths, Filter timeFilter) throws IOException {
+        this(reader, paths, timeFilter, DEFAULT_BATCH_SIZE, null);
+    }
+
+    /**
+     * @param reader     文件读取器，由调用方负责关闭
+     * @param paths      要读取的序列
+     * @param timeFilter 时间过滤条件，为 null 时读取全部数据
+     * @param batchSize  每批的最大行数
+     * @param executor   解码 page 使用的线程池，为 null 时顺序读取；由调用方负责关闭
+     */
+    public TreeBatchReader(TsFileSequenceReader reader, List<Path> paths, Filter timeFilter, int batchSize,
+                           ExecutorService executor) throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive, but was " + batchSize);
+        }
+        this.reader = reader;
+        this.timeFilter = timeFilter;
+        this.executor = executor;
+        this.cursors = new SeriesCursor[paths.size()];
+        TSDataType[] dataTypes = new TSDataType[paths.size()];
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            TimeseriesMetadata timeseriesMetadata =
+                    reader.readTimeseriesMetadata(path.getIDeviceID(), path.getMeasurement(), true);
+            if (timeseriesMetadata == null) {
+                throw new IllegalArgumentException("Timeseries does not exist: " + path.getFullPath());
+            }
+            dataTypes[i] = timeseriesMetadata.getTsDataType();
+            cursors[i] = new SeriesCursor(timeseriesMetadata);
+        }
+        this.batch = new ColumnBatch(new ArrayList<>(paths), dataTypes, batchSize);
+        for (SeriesCursor cursor : cursors) {
+            cursor.prefetch();
+        }
+    }
+
+    /**
+     * 是否还有数据
+     */
+    public boolean hasNext() throws IOException {
+        for (SeriesCursor cursor : cursors) {
+            if (cursor.hasCurrent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取下一批数据，每个时间戳一行，某个序列在该时间戳没有值时标记为空
+     */
+    public ColumnBatch next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        batch.reset();
+        long[] times = batch.getTimes();
+        int row = 0;
+        while (row < times.length) {
+            long minTime = Long.MAX_VALUE;
+            boolean found = false;
+            for (SeriesCursor cursor : cursors) {
+                if (cursor.hasCurrent() && (!found || cursor.currentTime() < minTime)) {
+                    minTime = cursor.currentTime();
+                    found = true;
+                }
+            }
+            if (!found) {
+                break;
+            }
+            times[row] = minTime;
+            for (int i = 0; i < cursors.length; i++) {
+                SeriesCursor cursor = cursors[i];
+                if (cursor.hasCurrent() && cursor.currentTime() == minTime) {
+                    batch.copy(i, row, cursor.block.getColumn(0), cursor.position);
+                    cursor.position++;
+                }
+            }
+            row++;
+        }
+        batch.setSize(row);
+        return batch;
+    }
+
+    /**
+     * 停止预读并等待正在执行的解码任务结束，返回后不再访问文件读取器，调用方可以随后关闭文件读取器；
+     * 不关闭线程池。解码任务的结果和异常都被忽略。
+     * 线程池需要在本方法返回后再关闭，否则排队中的解码任务可能永远不会执行
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (SeriesCursor cursor : cursors) {
+            if (cursor.pending == null) {
+                continue;
+            }
+            // CompletableFuture.cancel 不会中断正在执行的任务，且取消后 get 立即返回，因此不取消而是等待任务结束，
+            // 排队中的任务开始执行时会看到 closed 并立即返回
+            try {
+                cursor.pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ignored) {
+                // 关闭时不关心解码结果
+            } finally {
+                cursor.pending = null;
+            }
+        }
+    }
+
+    /**
+     * 单个序列的读取位置。chunk 和 page 的状态只由解码任务访问，调用线程只访问当前的 TsBlock，
+     * 每个序列同一时刻最多只有一个解码任务
+     */
+    private final class SeriesCursor {
+
+        private final List<ChunkMetadata> chunkMetadataList;
+        private int chunkIndex = 0;
+        private List<IPageReader> pageReaders = Collections.emptyList();
+        private int pageIndex = 0;
+
+        private CompletableFuture<TsBlock> pending;
+        private TsBlock block;
+        private int position = 0;
+        private boolean finished = false;
+
+        SeriesCursor(TimeseriesMetadata timeseriesMetadata) throws IOException {
+            if (timeFilter != null && timeseriesMetadata.getStatistics() != null && !timeFilter.satisfyStartEndTime(
+                    timeseriesMetadata.getStatistics().getStartTime(), timeseriesMetadata.getStatistics().getEndTime())) {
+                chunkMetadataList = Collections.emptyList();
+            } else {
+                chunkMetadataList = new ArrayList<>(reader.readChunkMetaDataList(timeseriesMetadata));
+                chunkMetadataList.sort(Comparator.comparingLong(IChunkMetadata::getStartTime));
+            }
+        }
+
+        /**
+         * 在线程池中开始解码下一个 TsBlock
+         */
+        void prefetch() {
+            if (executor != null && !finished) {
+                pending = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return loadBlock();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor);
+            }
+        }
+
+        boolean hasCurrent() throws IOException {
+            while (!finished && (block == null || position >= block.getPositionCount())) {
+                block = nextBlock();
+                position = 0;
+                if (block == null) {
+                    finished = true;
+                } else {
+                    prefetch();
+                }
+            }
+            return !finished;
+        }
+
+        long currentTime() {
+            return block.getTimeByIndex(position);
+        }
+
+        private TsBlock nextBlock() throws IOException {
+            if (pending == null) {
+                return loadBlock();
+            }
+            try {
+                return pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + batch.getPaths());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                pending = null;
+            }
+        }
+
+        /**
+         * 解码下一个非空的 page，没有更多数据时返回 null
+         */
+        private TsBlock loadBlock() throws IOException {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                if (pageIndex < pageReaders.size()) {
+                    TsBlock tsBlock = pageReaders.get(pageIndex++).getAllSatisfiedData();
+                    if (tsBlock.getPositionCount() > 0) {
+                        return tsBlock;
+                    }
+                    continue;
+                }
+                if (chunkIndex >= chunkMetadataList.size()) {
+                    return null;
+                }
+                ChunkMetadata chunkMetadata = chunkMetadataList.get(chunkIndex++);
+                if (timeFilter != null
+                        && !timeFilter.satisfyStartEndTime(chunkMetadata.getStartTime(), chunkMetadata.getEndTime())) {
+                    continue;
+                }
+                pageReaders = new ChunkReader(reader.readMemChunk(chunkMetadata), timeFilter).loadPageReaderList();
+                pageIndex = 0;
+            }
+        }
+    }
+}
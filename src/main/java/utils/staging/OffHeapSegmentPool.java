@@ -0,0 +1,143 @@
+package utils.staging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 固定大小的堆外内存段（direct ByteBuffer）池。
+ * 内存段按需分配，总量不超过内存预算，释放后放回空闲列表复用，不会被重复分配。
+ * <p>
+ * 池会记录所有未归还的内存段，{@link #close()} 时仍未归还的内存段视为泄漏并打印警告；
+ * 开启 trackAllocationSites 时同时记录每个内存段的申请位置，便于定位泄漏，但每次申请都会创建异常对象。
+ * 所有方法都是线程安全的。
+ */
+public class OffHeapSegmentPool implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapSegmentPool.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private final long memoryBudget;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final boolean trackAllocationSites;
+
+    private final Deque<ByteBuffer> freeSegments = new ArrayDeque<>();
+    // 未归还的内存段及其申请位置，不记录申请位置时值为 null
+    private final Map<ByteBuffer, Throwable> outstanding = new IdentityHashMap<>();
+    private int allocatedSegments = 0;
+    private boolean closed = false;
+
+    public OffHeapSegmentPool(long memoryBudget) {
+        this(memoryBudget, DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * @param memoryBudget         堆外内存预算（字节）
+     * @param segmentSize          内存段大小，必须是 8 的倍数
+     * @param trackAllocationSites 是否记录申请位置
+     */
+    public OffHeapSegmentPool(long memoryBudget, int segmentSize, boolean trackAllocationSites) {
+        if (segmentSize <= 0 || segmentSize % Long.BYTES != 0) {
+            throw new IllegalArgumentException("segmentSize must be a positive multiple of 8, but was " + segmentSize);
+        }
+        if (memoryBudget < segmentSize) {
+            throw new IllegalArgumentException(
+                    "memoryBudget must be at least one segment (" + segmentSize + " bytes), but was " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.min(Integer.MAX_VALUE, memoryBudget / segmentSize);
+        this.trackAllocationSites = trackAllocationSites;
+    }
+
+    /**
+     * 申请一个已清空的内存段，超出内存预算时返回 null
+     */
+    public synchronized ByteBuffer tryAcquire() {
+        if (closed) {
+            throw new IllegalStateException("OffHeapSegmentPool is closed");
+        }
+        ByteBuffer segment = freeSegments.pollFirst();
+        if (segment == null) {
+            if (allocatedSegments >= maxSegments) {
+                return null;
+            }
+            segment = ByteBuffer.allocateDirect(segmentSize).order(ByteOrder.nativeOrder());
+            allocatedSegments++;
+        }
+        segment.clear();
+        outstanding.put(segment, trackAllocationSites ? new Throwable("Segment acquired here") : null);
+        return segment;
+    }
+
+    /**
+     * 归还内存段
+     */
+    public synchronized void release(ByteBuffer segment) {
+        if (!outstanding.containsKey(segment)) {
+            throw new IllegalArgumentException("Segment does not belong to this pool or was already released");
+        }
+        outstanding.remove(segment);
+        if (!closed) {
+            freeSegments.addFirst(segment);
+        }
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * 已分配的堆外内存（字节），包括空闲的内存段
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long) allocatedSegments * segmentSize;
+    }
+
+    /**
+     * 正在使用的堆外内存（字节）
+     */
+    public synchronized long getUsedBytes() {
+        return (long) outstanding.size() * segmentSize;
+    }
+
+    /**
+     * 未归还的内存段数
+     */
+    public synchronized int getOutstandingSegments() {
+        return outstanding.size();
+    }
+
+    /**
+     * 关闭内存池，丢弃空闲的内存段；仍有未归还的内存段时打印警告，可以通过 getOutstandingSegments 查看数量
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        freeSegments.clear();
+        if (!outstanding.isEmpty()) {
+            LOGGER.warn("{} off-heap segments ({} bytes) were not released", outstanding.size(),
+                    (long) outstanding.size() * segmentSize);
+            for (Throwable site : outstanding.values()) {
+                if (site != null) {
+                    LOGGER.warn("Leaked segment", site);
+                }
+            }
+        }
+    }
+}
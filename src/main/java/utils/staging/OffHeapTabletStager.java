@@ -0,0 +1,480 @@
+package utils.staging;
+
+import org.apache.tsfile.common.conf.TSFileConfig;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.utils.DateUtils;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.IMeasurementSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.write.TabletSink;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 堆外暂存区：解析后的行数据按列追加到堆外内存段中，内存预算用完或调用 flush 时，
+ * 再按 Tablet 大小批量复制到一个复用的 Tablet 的列数组里交给写入目标。
+ * 堆上只保留当前行和一个 Tablet，加载的数据量增大时堆内存占用和 GC 停顿不随之增长。
+ * <p>
+ * 每列使用三个流：定长值（空值写入 0 占位）、空值位图（每 8 行一个字节，与 BitMap 的布局相同，可以整段复制），
+ * TEXT/STRING/BLOB 另有一个长度流，值保存在字节流中。DATE 以 yyyyMMdd 形式的整数保存。
+ * 每行在提交时检查所需空间，预算不足时先写出已暂存的所有行，因此不会出现写了一半的行。
+ * <p>
+ * 使用完必须调用 {@link #close()} 归还内存段；未关闭就被回收时会打印警告并归还。
+ * 内存预算至少需要容纳每个流一个内存段，即 (1 + 列数 * 2 + 变长列数) 个内存段。非线程安全。
+ */
+public class OffHeapTabletStager implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapTabletStager.class);
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final int DEFAULT_TABLET_SIZE = 1024;
+
+    private final TabletSink sink;
+    private final Tablet tablet;
+    private final TSDataType[] dataTypes;
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final Streams streams;
+    private final Cleaner.Cleanable cleanable;
+
+    // 当前行，定长值保存为 long 的位表示
+    private boolean rowOpen = false;
+    private long rowTime;
+    private final long[] rowValues;
+    private final byte[][] rowBytes;
+    private final boolean[] rowPresent;
+
+    private int stagedRows = 0;
+    private final int[] pendingNullBits;
+    private long drainNum = 0;
+
+    // 读出变长值长度、DATE 和 BOOLEAN 使用的缓冲区
+    private final int[] intBuffer;
+    private final byte[] byteBuffer;
+
+    public OffHeapTabletStager(TabletSink sink, TableSchema tableSchema, OffHeapSegmentPool pool) {
+        this(sink, tableSchema, pool, DEFAULT_TABLET_SIZE);
+    }
+
+    /**
+     * @param sink        写入目标
+     * @param tableSchema 表结构，列下标与其中的列顺序一致
+     * @param pool        堆外内存段池，内存预算由池决定
+     * @param tabletSize  每个 Tablet 的最大行数，必须是 8 的倍数
+     */
+    public OffHeapTabletStager(TabletSink sink, TableSchema tableSchema, OffHeapSegmentPool pool, int tabletSize) {
+        if (tabletSize <= 0 || tabletSize % 8 != 0) {
+            throw new IllegalArgumentException("tabletSize must be a positive multiple of 8, but was " + tabletSize);
+        }
+        this.sink = sink;
+        List<String> columnNames = new ArrayList<>();
+        List<TSDataType> dataTypeList = new ArrayList<>();
+        int variableColumns = 0;
+        for (IMeasurementSchema columnSchema : tableSchema.getColumnSchemas()) {
+            columnIndexes.put(columnSchema.getMeasurementName(), columnNames.size());
+            columnNames.add(columnSchema.getMeasurementName());
+            dataTypeList.add(columnSchema.getType());
+            if (widthOf(columnSchema.getType()) == 0) {
+                variableColumns++;
+            }
+        }
+        int columnNum = columnNames.size();
+        long requiredSegments = 1 + columnNum * 2L + variableColumns;
+        if (pool.getMemoryBudget() / pool.getSegmentSize() < requiredSegments) {
+            throw new IllegalArgumentException("memoryBudget of " + pool.getMemoryBudget() + " bytes is too small for "
+                    + columnNum + " columns, at least " + requiredSegments * pool.getSegmentSize() + " bytes are required");
+        }
+        this.dataTypes = dataTypeList.toArray(new TSDataType[0]);
+        this.tablet = new Tablet(columnNames, dataTypeList, tabletSize);
+        this.tablet.initBitMaps();
+        this.streams = new Streams(pool, dataTypes);
+        this.cleanable = CLEANER.register(this, streams);
+        this.rowValues = new long[columnNum];
+        this.rowBytes = new byte[columnNum][];
+        this.rowPresent = new boolean[columnNum];
+        this.pendingNullBits = new int[columnNum];
+        this.intBuffer = new int[tabletSize];
+        this.byteBuffer = new byte[tabletSize];
+    }
+
+    /**
+     * 列名对应的列下标
+     */
+    public int columnIndex(String columnName) {
+        Integer index = columnIndexes.get(columnName);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown column: " + columnName);
+        }
+        return index;
+    }
+
+    /**
+     * 开始新的一行，上一行在此时提交；未设置的列为空值
+     */
+    public void beginRow(long time) throws IOException, WriteProcessException {
+        commitRow();
+        rowOpen = true;
+        rowTime = time;
+    }
+
+    public void setInt(int column, int value) {
+        setBits(column, value);
+    }
+
+    public void setLong(int column, long value) {
+        setBits(column, value);
+    }
+
+    public void setFloat(int column, float value) {
+        setBits(column, Float.floatToRawIntBits(value));
+    }
+
+    public void setDouble(int column, double value) {
+        setBits(column, Double.doubleToRawLongBits(value));
+    }
+
+    public void setBoolean(int column, boolean value) {
+        setBits(column, value ? 1 : 0);
+    }
+
+    public void setDate(int column, LocalDate value) {
+        setBits(column, DateUtils.parseDateExpressionToInt(value));
+    }
+
+    public void setBytes(int column, byte[] value) {
+        checkRow();
+        rowBytes[column] = value;
+        rowPresent[column] = value != null;
+    }
+
+    public void setString(int column, String value) {
+        setBytes(column, value.getBytes(TSFileConfig.STRING_CHARSET));
+    }
+
+    /**
+     * 按列类型写入当前行的值，null 表示空值。
+     * 支持的值类型：INT32 为 Integer，INT64/TIMESTAMP 为 Long，FLOAT 为 Float，DOUBLE 为 Double，BOOLEAN 为 Boolean，
+     * TEXT/STRING/BLOB 为 String、byte[] 或 Binary，DATE 为 LocalDate
+     */
+    public void setValue(int column, Object value) {
+        if (value == null) {
+            return;
+        }
+        switch (dataTypes[column]) {
+            case INT32:
+                setInt(column, (Integer) value);
+                break;
+            case INT64:
+            case TIMESTAMP:
+                setLong(column, (Long) value);
+                break;
+            case FLOAT:
+                setFloat(column, (Float) value);
+                break;
+            case DOUBLE:
+                setDouble(column, (Double) value);
+                break;
+            case BOOLEAN:
+                setBoolean(column, (Boolean) value);
+                break;
+            case DATE:
+                setDate(column, (LocalDate) value);
+                break;
+            case TEXT:
+            case STRING:
+            case BLOB:
+                if (value instanceof byte[]) {
+                    setBytes(column, (byte[]) value);
+                } else if (value instanceof Binary) {
+                    setBytes(column, ((Binary) value).getValues());
+                } else {
+                    setString(column, value.toString());
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataTypes[column]);
+        }
+    }
+
+    /**
+     * 提交当前行并写出所有暂存的行
+     */
+    public void flush() throws IOException, WriteProcessException {
+        commitRow();
+        drain();
+    }
+
+    /**
+     * 写出剩余的行并归还所有内存段，不关闭写入目标
+     */
+    @Override
+    public void close() throws IOException, WriteProcessException {
+        try {
+            flush();
+        } finally {
+            streams.closed = true;
+            cleanable.clean();
+        }
+    }
+
+    /**
+     * 已暂存尚未写出的行数
+     */
+    public int getStagedRows() {
+        return stagedRows;
+    }
+
+    /**
+     * 因内存预算不足或 flush 而写出的次数
+     */
+    public long getDrainNum() {
+        return drainNum;
+    }
+
+    private void setBits(int column, long bits) {
+        checkRow();
+        rowValues[column] = bits;
+        rowPresent[column] = true;
+    }
+
+    private void checkRow() {
+        if (!rowOpen) {
+            throw new IllegalStateException("beginRow must be called before setting values");
+        }
+    }
+
+    private void commitRow() throws IOException, WriteProcessException {
+        if (!rowOpen) {
+            return;
+        }
+        if (!reserveRow()) {
+            drain();
+            if (!reserveRow()) {
+                throw new IllegalStateException("A single row does not fit into the off-heap memory budget");
+            }
+        }
+        streams.times.putLong(rowTime);
+        int bit = stagedRows & 7;
+        for (int c = 0; c < dataTypes.length; c++) {
+            boolean present = rowPresent[c];
+            int width = widthOf(dataTypes[c]);
+            if (width == Long.BYTES) {
+                streams.values[c].putLong(present ? rowValues[c] : 0);
+            } else if (width == Integer.BYTES) {
+                streams.values[c].putInt(present ? (int) rowValues[c] : 0);
+            } else if (width == 1) {
+                streams.values[c].putByte(present ? (byte) rowValues[c] : 0);
+            } else {
+                byte[] bytes = present ? rowBytes[c] : null;
+                streams.lengths[c].putInt(bytes == null ? 0 : bytes.length);
+                if (bytes != null) {
+                    streams.values[c].putBytes(bytes);
+                }
+                rowBytes[c] = null;
+            }
+            if (!present) {
+                pendingNullBits[c] |= 1 << bit;
+            }
+            if (bit == 7) {
+                streams.nulls[c].putByte((byte) pendingNullBits[c]);
+                pendingNullBits[c] = 0;
+            }
+            rowPresent[c] = false;
+        }
+        stagedRows++;
+        rowOpen = false;
+    }
+
+    /**
+     * 为当前行在每个流中预留空间，空值位图在每 8 行的第一行预留一个字节
+     */
+    private boolean reserveRow() {
+        if (!streams.times.ensureWritable(Long.BYTES)) {
+            return false;
+        }
+        boolean newNullByte = (stagedRows & 7) == 0;
+        for (int c = 0; c < dataTypes.length; c++) {
+            int width = widthOf(dataTypes[c]);
+            if (width == 0) {
+                int length = rowPresent[c] && rowBytes[c] != null ? rowBytes[c].length : 0;
+                if (!streams.lengths[c].ensureWritable(Integer.BYTES) || !streams.values[c].ensureWritable(length)) {
+                    return false;
+                }
+            } else if (!streams.values[c].ensureWritable(width)) {
+                return false;
+            }
+            if (newNullByte && !streams.nulls[c].ensureWritable(1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按 Tablet 大小批量复制所有暂存的行并写出，然后归还内存段
+     */
+    private void drain() throws IOException, WriteProcessException {
+        if (stagedRows == 0) {
+            return;
+        }
+        if ((stagedRows & 7) != 0) {
+            // 补齐最后一个不完整的空值字节，空间已在该字节的第一行预留
+            for (int c = 0; c < dataTypes.length; c++) {
+                streams.nulls[c].putByte((byte) pendingNullBits[c]);
+                pendingNullBits[c] = 0;
+            }
+        }
+        Object[] values = tablet.getValues();
+        BitMap[] bitMaps = tablet.getBitMaps();
+        int tabletSize = tablet.getMaxRowNumber();
+        for (int done = 0; done < stagedRows; done += tabletSize) {
+            int rowNum = Math.min(tabletSize, stagedRows - done);
+            streams.times.getLongs(tablet.getTimestamps(), rowNum);
+            for (int c = 0; c < dataTypes.length; c++) {
+                streams.nulls[c].getBytes(bitMaps[c].getByteArray(), 0, (rowNum + 7) / 8);
+                fillColumn(c, values[c], bitMaps[c], rowNum);
+            }
+            tablet.setRowSize(rowNum);
+            sink.write(tablet);
+        }
+        tablet.setRowSize(0);
+        for (Object column : values) {
+            if (column instanceof Object[]) {
+                // 释放对象引用
+                Arrays.fill((Object[]) column, null);
+            }
+        }
+        streams.reset();
+        stagedRows = 0;
+        drainNum++;
+    }
+
+    private void fillColumn(int column, Object target, BitMap bitMap, int rowNum) {
+        SegmentStream stream = streams.values[column];
+        switch (dataTypes[column]) {
+            case INT32:
+                stream.getInts((int[]) target, rowNum);
+                break;
+            case INT64:
+            case TIMESTAMP:
+                stream.getLongs((long[]) target, rowNum);
+                break;
+            case FLOAT:
+                stream.getFloats((float[]) target, rowNum);
+                break;
+            case DOUBLE:
+                stream.getDoubles((double[]) target, rowNum);
+                break;
+            case BOOLEAN:
+                stream.getBytes(byteBuffer, 0, rowNum);
+                boolean[] flags = (boolean[]) target;
+                for (int r = 0; r < rowNum; r++) {
+                    flags[r] = byteBuffer[r] != 0;
+                }
+                break;
+            case DATE:
+                stream.getInts(intBuffer, rowNum);
+                LocalDate[] dates = (LocalDate[]) target;
+                for (int r = 0; r < rowNum; r++) {
+                    dates[r] = bitMap.isMarked(r) ? null : DateUtils.parseIntToLocalDate(intBuffer[r]);
+                }
+                break;
+            case TEXT:
+            case STRING:
+            case BLOB:
+                streams.lengths[column].getInts(intBuffer, rowNum);
+                Binary[] binaries = (Binary[]) target;
+                for (int r = 0; r < rowNum; r++) {
+                    if (bitMap.isMarked(r)) {
+                        binaries[r] = null;
+                        continue;
+                    }
+                    byte[] bytes = new byte[intBuffer[r]];
+                    stream.getBytes(bytes, 0, bytes.length);
+                    binaries[r] = new Binary(bytes);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataTypes[column]);
+        }
+    }
+
+    /**
+     * 定长类型的字节数，变长类型返回 0
+     */
+    private static int widthOf(TSDataType dataType) {
+        switch (dataType) {
+            case BOOLEAN:
+                return 1;
+            case INT32:
+            case FLOAT:
+            case DATE:
+                return Integer.BYTES;
+            case INT64:
+            case TIMESTAMP:
+            case DOUBLE:
+                return Long.BYTES;
+            case TEXT:
+            case STRING:
+            case BLOB:
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        }
+    }
+
+    /**
+     * 暂存区使用的所有流，同时作为 Cleaner 的清理动作，不能引用暂存区本身
+     */
+    private static final class Streams implements Runnable {
+
+        final SegmentStream times;
+        final SegmentStream[] values;
+        final SegmentStream[] lengths;
+        final SegmentStream[] nulls;
+        volatile boolean closed = false;
+
+        Streams(OffHeapSegmentPool pool, TSDataType[] dataTypes) {
+            times = new SegmentStream(pool);
+            values = new SegmentStream[dataTypes.length];
+            lengths = new SegmentStream[dataTypes.length];
+            nulls = new SegmentStream[dataTypes.length];
+            for (int c = 0; c < dataTypes.length; c++) {
+                values[c] = new SegmentStream(pool);
+                nulls[c] = new SegmentStream(pool);
+                if (widthOf(dataTypes[c]) == 0) {
+                    lengths[c] = new SegmentStream(pool);
+                }
+            }
+        }
+
+        void reset() {
+            times.reset();
+            for (int c = 0; c < values.length; c++) {
+                values[c].reset();
+                nulls[c].reset();
+                if (lengths[c] != null) {
+                    lengths[c].reset();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!closed) {
+                LOGGER.warn("OffHeapTabletStager was not closed, releasing its off-heap segments");
+            }
+            reset();
+        }
+    }
+}
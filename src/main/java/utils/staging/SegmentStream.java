@@ -0,0 +1,170 @@
+package utils.staging;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 由堆外内存段组成的先进先出字节流：顺序追加，顺序批量读出。
+ * 写入前需要先用 {@link #ensureWritable(int)} 预留空间，预留失败（超出内存预算）时不会写入任何数据。
+ * 固定宽度的值不会跨内存段（内存段大小是 8 的倍数，同一个流只写入一种宽度），批量读取时可以直接使用类型视图复制。
+ * 非线程安全。
+ */
+class SegmentStream {
+
+    private final OffHeapSegmentPool pool;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    // 正在写入的内存段下标，之后的内存段是预留的空段
+    private int writeIndex = 0;
+    private int readIndex = 0;
+    private int readPosition = 0;
+    private long writableBytes = 0;
+
+    SegmentStream(OffHeapSegmentPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 预留至少 bytes 字节的可写空间
+     *
+     * @return 超出内存预算时返回 false
+     */
+    boolean ensureWritable(int bytes) {
+        while (writableBytes < bytes) {
+            ByteBuffer segment = pool.tryAcquire();
+            if (segment == null) {
+                return false;
+            }
+            segments.add(segment);
+            writableBytes += segment.capacity();
+        }
+        return true;
+    }
+
+    void putLong(long value) {
+        writeSegment(Long.BYTES).putLong(value);
+        writableBytes -= Long.BYTES;
+    }
+
+    void putInt(int value) {
+        writeSegment(Integer.BYTES).putInt(value);
+        writableBytes -= Integer.BYTES;
+    }
+
+    void putByte(byte value) {
+        writeSegment(1).put(value);
+        writableBytes--;
+    }
+
+    void putBytes(byte[] src) {
+        int offset = 0;
+        while (offset < src.length) {
+            ByteBuffer segment = writeSegment(1);
+            int length = Math.min(segment.remaining(), src.length - offset);
+            segment.put(src, offset, length);
+            offset += length;
+        }
+        writableBytes -= src.length;
+    }
+
+    void getLongs(long[] dst, int length) {
+        int offset = 0;
+        while (offset < length) {
+            ByteBuffer view = readView(Long.BYTES);
+            int count = Math.min(view.remaining() / Long.BYTES, length - offset);
+            view.asLongBuffer().get(dst, offset, count);
+            readPosition += count * Long.BYTES;
+            offset += count;
+        }
+    }
+
+    void getDoubles(double[] dst, int length) {
+        int offset = 0;
+        while (offset < length) {
+            ByteBuffer view = readView(Double.BYTES);
+            int count = Math.min(view.remaining() / Double.BYTES, length - offset);
+            view.asDoubleBuffer().get(dst, offset, count);
+            readPosition += count * Double.BYTES;
+            offset += count;
+        }
+    }
+
+    void getInts(int[] dst, int length) {
+        int offset = 0;
+        while (offset < length) {
+            ByteBuffer view = readView(Integer.BYTES);
+            int count = Math.min(view.remaining() / Integer.BYTES, length - offset);
+            view.asIntBuffer().get(dst, offset, count);
+            readPosition += count * Integer.BYTES;
+            offset += count;
+        }
+    }
+
+    void getFloats(float[] dst, int length) {
+        int offset = 0;
+        while (offset < length) {
+            ByteBuffer view = readView(Float.BYTES);
+            int count = Math.min(view.remaining() / Float.BYTES, length - offset);
+            view.asFloatBuffer().get(dst, offset, count);
+            readPosition += count * Float.BYTES;
+            offset += count;
+        }
+    }
+
+    void getBytes(byte[] dst, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            ByteBuffer view = readView(1);
+            int count = Math.min(view.remaining(), end - offset);
+            view.get(dst, offset, count);
+            readPosition += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * 清空流并归还所有内存段
+     */
+    void reset() {
+        for (ByteBuffer segment : segments) {
+            pool.release(segment);
+        }
+        segments.clear();
+        writeIndex = 0;
+        readIndex = 0;
+        readPosition = 0;
+        writableBytes = 0;
+    }
+
+    /**
+     * 占用的内存段数
+     */
+    int segmentCount() {
+        return segments.size();
+    }
+
+    private ByteBuffer writeSegment(int width) {
+        ByteBuffer segment = segments.get(writeIndex);
+        if (segment.remaining() < width) {
+            // 固定宽度的流中剩余空间一定为 0
+            writableBytes -= segment.remaining();
+            segment = segments.get(++writeIndex);
+        }
+        return segment;
+    }
+
+    /**
+     * 从读取位置开始、到该内存段已写入位置为止的视图，当前内存段读完时移到下一个
+     */
+    private ByteBuffer readView(int width) {
+        ByteBuffer segment = segments.get(readIndex);
+        if (segment.position() - readPosition < width) {
+            readIndex++;
+            readPosition = 0;
+            segment = segments.get(readIndex);
+        }
+        ByteBuffer view = segment.duplicate().order(segment.order());
+        view.limit(segment.position()).position(readPosition);
+        return view;
+    }
+}
@@ -0,0 +1,412 @@
+package utils.write;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.IMeasurementSchema;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.IndexSorter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 写入前按设备排序的缓冲写入器。
+ * 输入可以是多个设备交错的 Tablet，行数据先按列复制到缓冲区，达到内存预算后按 (TAG 元组, 时间) 做下标排序，
+ * 再为每个设备连续输出只包含该设备的 Tablet，减少每个设备的小 chunk 数量。
+ * <p>
+ * 缓冲区内的乱序时间戳会被排好序；同一设备同一时间戳的多行只保留最后写入的一行。
+ * 不晚于某个设备已经刷出的最大时间戳的行无法再写入同一个文件，按 {@link LateRowPolicy} 处理：
+ * 默认整个 Tablet 被拒绝并抛出 WriteProcessException，缓冲区不变，调用方可以换一个文件重新写入；
+ * 也可以选择丢弃这些行并计数，通过 {@link #getDroppedRowNum()} 查看。增大内存预算可以减少这种情况。
+ * <p>
+ * 输入 Tablet 的列顺序必须与构造时的 TableSchema 一致。本类不负责关闭底层的 ITsFileWriter。
+ */
+public class DeviceSortingTabletWriter implements TabletSink, AutoCloseable {
+
+    /**
+     * 不晚于设备已刷出的最大时间戳的行的处理方式
+     */
+    public enum LateRowPolicy {
+        // 拒绝包含这样的行的整个 Tablet，抛出 WriteProcessException
+        REJECT,
+        // 刷出时丢弃这样的行，记录日志并计数；同一时间戳保留先刷出的行
+        DROP
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceSortingTabletWriter.class);
+
+    private static final int DEFAULT_TABLET_SIZE = 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Binary 对象头、数组引用等的估算开销
+    private static final int BINARY_OVERHEAD = 40;
+
+    private final ITsFileWriter writer;
+    private final List<String> columnNames = new ArrayList<>();
+    private final List<TSDataType> dataTypes = new ArrayList<>();
+    private final int[] tagColumns;
+    private final long memoryBudget;
+    private final LateRowPolicy lateRowPolicy;
+    private final long fixedRowBytes;
+    private final Tablet outputTablet;
+
+    private long[] times = new long[INITIAL_CAPACITY];
+    private final Object[] columns;
+    private final BitSet[] nulls;
+    private int size = 0;
+    private long bufferedBytes = 0;
+
+    // 每个设备已经写出的最大时间戳
+    private final Map<List<Binary>, Long> flushedTimes = new HashMap<>();
+    private long droppedRowNum = 0;
+
+    public DeviceSortingTabletWriter(ITsFileWriter writer, TableSchema tableSchema, long memoryBudget) {
+        this(writer, tableSchema, memoryBudget, DEFAULT_TABLET_SIZE);
+    }
+
+    public DeviceSortingTabletWriter(ITsFileWriter writer, TableSchema tableSchema, long memoryBudget, int tabletSize) {
+        this(writer, tableSchema, memoryBudget, tabletSize, LateRowPolicy.REJECT);
+    }
+
+    /**
+     * @param writer        底层写入器
+     * @param tableSchema   表结构
+     * @param memoryBudget  缓冲区内存预算（字节，估算值）
+     * @param tabletSize    输出 Tablet 的最大行数
+     * @param lateRowPolicy 不晚于设备已刷出的最大时间戳的行的处理方式
+     */
+    public DeviceSortingTabletWriter(ITsFileWriter writer, TableSchema tableSchema, long memoryBudget, int tabletSize,
+                                     LateRowPolicy lateRowPolicy) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("memoryBudget must be positive, but was " + memoryBudget);
+        }
+        this.writer = writer;
+        this.memoryBudget = memoryBudget;
+        this.lateRowPolicy = lateRowPolicy;
+        List<ColumnCategory> columnCategories = tableSchema.getColumnTypes();
+        List<Integer> tagColumnList = new ArrayList<>();
+        long rowBytes = Long.BYTES + Integer.BYTES;
+        for (int i = 0; i < tableSchema.getColumnSchemas().size(); i++) {
+            IMeasurementSchema columnSchema = tableSchema.getColumnSchemas().get(i);
+            columnNames.add(columnSchema.getMeasurementName());
+            dataTypes.add(columnSchema.getType());
+            if (columnCategories.get(i) == ColumnCategory.TAG) {
+                tagColumnList.add(i);
+            }
+            rowBytes += fixedBytesOf(columnSchema.getType());
+        }
+        this.fixedRowBytes = rowBytes;
+        this.tagColumns = tagColumnList.stream().mapToInt(Integer::intValue).toArray();
+        this.columns = new Object[columnNames.size()];
+        this.nulls = new BitSet[columnNames.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = newArray(dataTypes.get(i), INITIAL_CAPACITY);
+            nulls[i] = new BitSet();
+        }
+        this.outputTablet = new Tablet(columnNames, dataTypes, tabletSize);
+    }
+
+    /**
+     * 将 Tablet 中的行复制到缓冲区，超过内存预算时触发一次排序写出
+     *
+     * @throws WriteProcessException 策略为 {@link LateRowPolicy#REJECT} 且 Tablet 中有行不晚于该设备已刷出的最大时间戳，
+     *                               此时 Tablet 中的行都没有写入
+     */
+    @Override
+    public void write(Tablet tablet) throws IOException, WriteProcessException {
+        Object[] values = tablet.getValues();
+        if (values.length != columns.length) {
+            throw new IllegalArgumentException(
+                    "Tablet has " + values.length + " columns, but the table schema has " + columns.length);
+        }
+        if (lateRowPolicy == LateRowPolicy.REJECT) {
+            checkLateRows(tablet);
+        }
+        int rowSize = tablet.getRowSize();
+        ensureCapacity(size + rowSize);
+        System.arraycopy(tablet.getTimestamps(), 0, times, size, rowSize);
+        BitMap[] bitMaps = tablet.getBitMaps();
+        long bytes = fixedRowBytes * rowSize;
+        for (int c = 0; c < columns.length; c++) {
+            System.arraycopy(values[c], 0, columns[c], size, rowSize);
+            BitMap bitMap = bitMaps == null ? null : bitMaps[c];
+            if (bitMap != null) {
+                for (int r = 0; r < rowSize; r++) {
+                    if (bitMap.isMarked(r)) {
+                        nulls[c].set(size + r);
+                    }
+                }
+            }
+            if (columns[c] instanceof Binary[]) {
+                Binary[] binaries = (Binary[]) columns[c];
+                for (int r = size; r < size + rowSize; r++) {
+                    if (nulls[c].get(r)) {
+                        // 统一用 null 表示空值，便于排序时比较 TAG
+                        binaries[r] = null;
+                    } else if (binaries[r] != null) {
+                        bytes += binaries[r].getLength();
+                    }
+                }
+            }
+        }
+        size += rowSize;
+        bufferedBytes += bytes;
+        if (bufferedBytes >= memoryBudget) {
+            flush();
+        }
+    }
+
+    /**
+     * 排序并写出缓冲区中的所有行
+     */
+    public void flush() throws IOException, WriteProcessException {
+        if (size == 0) {
+            return;
+        }
+        int[] order = IndexSorter.identity(size);
+        IndexSorter.sort(order, 0, size, (left, right) -> {
+            int cmp = compareDevice(left, right);
+            return cmp != 0 ? cmp : Long.compare(times[left], times[right]);
+        });
+
+        int runStart = 0;
+        while (runStart < size) {
+            int runEnd = runStart + 1;
+            while (runEnd < size && compareDevice(order[runStart], order[runEnd]) == 0) {
+                runEnd++;
+            }
+            writeDevice(order, runStart, runEnd);
+            runStart = runEnd;
+        }
+
+        for (Object column : columns) {
+            if (column instanceof Object[]) {
+                // 释放对象引用
+                Arrays.fill((Object[]) column, 0, size, null);
+            }
+        }
+        for (BitSet bitSet : nulls) {
+            bitSet.clear();
+        }
+        size = 0;
+        bufferedBytes = 0;
+    }
+
+    /**
+     * 写出缓冲区中剩余的行，不关闭底层写入器
+     */
+    @Override
+    public void close() throws IOException, WriteProcessException {
+        flush();
+    }
+
+    /**
+     * 策略为 {@link LateRowPolicy#DROP} 时，因时间戳不晚于该设备已写出数据而被丢弃的行数
+     */
+    public long getDroppedRowNum() {
+        return droppedRowNum;
+    }
+
+    /**
+     * 检查 Tablet 中是否有行不晚于该设备已刷出的最大时间戳，有则抛出异常，报错中列出每个设备的行数
+     */
+    private void checkLateRows(Tablet tablet) throws WriteProcessException {
+        if (flushedTimes.isEmpty()) {
+            return;
+        }
+        Object[] values = tablet.getValues();
+        BitMap[] bitMaps = tablet.getBitMaps();
+        long[] timestamps = tablet.getTimestamps();
+        Map<List<Binary>, Long> lateRowNums = new LinkedHashMap<>();
+        for (int r = 0; r < tablet.getRowSize(); r++) {
+            List<Binary> deviceKey = new ArrayList<>(tagColumns.length);
+            for (int tagColumn : tagColumns) {
+                boolean isNull = bitMaps != null && bitMaps[tagColumn] != null && bitMaps[tagColumn].isMarked(r);
+                deviceKey.add(isNull ? null : ((Binary[]) values[tagColumn])[r]);
+            }
+            Long flushedTime = flushedTimes.get(deviceKey);
+            if (flushedTime != null && timestamps[r] <= flushedTime) {
+                lateRowNums.merge(deviceKey, 1L, Long::sum);
+            }
+        }
+        if (lateRowNums.isEmpty()) {
+            return;
+        }
+        List<String> details = new ArrayList<>(lateRowNums.size());
+        for (Map.Entry<List<Binary>, Long> entry : lateRowNums.entrySet()) {
+            details.add(entry.getValue() + " rows of device " + entry.getKey()
+                    + " are not later than its last written time " + flushedTimes.get(entry.getKey()));
+        }
+        throw new WriteProcessException("Rejected tablet: " + String.join(", ", details));
+    }
+
+    private void writeDevice(int[] order, int runStart, int runEnd) throws IOException, WriteProcessException {
+        List<Binary> deviceKey = new ArrayList<>(tagColumns.length);
+        for (int tagColumn : tagColumns) {
+            deviceKey.add(((Binary[]) columns[tagColumn])[order[runStart]]);
+        }
+        long watermark = flushedTimes.getOrDefault(deviceKey, Long.MIN_VALUE);
+        long lastTime = watermark;
+        long dropped = 0;
+        for (int i = runStart; i < runEnd; i++) {
+            int row = order[i];
+            if (i + 1 < runEnd && times[order[i + 1]] == times[row]) {
+                // 相同时间戳只保留最后写入的一行，排序是稳定的
+                continue;
+            }
+            if (times[row] <= watermark) {
+                dropped++;
+                continue;
+            }
+            appendRow(row);
+            lastTime = times[row];
+            if (outputTablet.getRowSize() == outputTablet.getMaxRowNumber()) {
+                writer.write(outputTablet);
+                outputTablet.reset();
+            }
+        }
+        if (outputTablet.getRowSize() != 0) {
+            writer.write(outputTablet);
+            outputTablet.reset();
+        }
+        if (lastTime > watermark) {
+            flushedTimes.put(deviceKey, lastTime);
+        }
+        if (dropped > 0) {
+            droppedRowNum += dropped;
+            LOGGER.warn("Dropped {} out-of-order rows of device {}", dropped, deviceKey);
+        }
+    }
+
+    private void appendRow(int row) {
+        int target = outputTablet.getRowSize();
+        outputTablet.addTimestamp(target, times[row]);
+        for (int c = 0; c < columns.length; c++) {
+            if (nulls[c].get(row)) {
+                continue;
+            }
+            switch (dataTypes.get(c)) {
+                case INT32:
+                    outputTablet.addValue(target, c, ((int[]) columns[c])[row]);
+                    break;
+                case INT64:
+                case TIMESTAMP:
+                    outputTablet.addValue(target, c, ((long[]) columns[c])[row]);
+                    break;
+                case FLOAT:
+                    outputTablet.addValue(target, c, ((float[]) columns[c])[row]);
+                    break;
+                case DOUBLE:
+                    outputTablet.addValue(target, c, ((double[]) columns[c])[row]);
+                    break;
+                case BOOLEAN:
+                    outputTablet.addValue(target, c, ((boolean[]) columns[c])[row]);
+                    break;
+                case DATE:
+                    outputTablet.addValue(target, c, ((LocalDate[]) columns[c])[row]);
+                    break;
+                case TEXT:
+                case STRING:
+                case BLOB:
+                    Binary binary = ((Binary[]) columns[c])[row];
+                    if (binary != null) {
+                        outputTablet.addValue(target, c, binary.getValues());
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported data type: " + dataTypes.get(c));
+            }
+        }
+    }
+
+    private int compareDevice(int left, int right) {
+        for (int tagColumn : tagColumns) {
+            Binary[] tags = (Binary[]) columns[tagColumn];
+            Binary l = tags[left];
+            Binary r = tags[right];
+            if (l == r) {
+                continue;
+            }
+            if (l == null) {
+                return -1;
+            }
+            if (r == null) {
+                return 1;
+            }
+            int cmp = l.compareTo(r);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= times.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, times.length << 1);
+        times = Arrays.copyOf(times, newCapacity);
+        for (int c = 0; c < columns.length; c++) {
+            Object newColumn = newArray(dataTypes.get(c), newCapacity);
+            System.arraycopy(columns[c], 0, newColumn, 0, size);
+            columns[c] = newColumn;
+        }
+    }
+
+    private static Object newArray(TSDataType dataType, int capacity) {
+        switch (dataType) {
+            case INT32:
+                return new int[capacity];
+            case INT64:
+            case TIMESTAMP:
+                return new long[capacity];
+            case FLOAT:
+                return new float[capacity];
+            case DOUBLE:
+                return new double[capacity];
+            case BOOLEAN:
+                return new boolean[capacity];
+            case DATE:
+                return new LocalDate[capacity];
+            case TEXT:
+            case STRING:
+            case BLOB:
+                return new Binary[capacity];
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        }
+    }
+
+    private static long fixedBytesOf(TSDataType dataType) {
+        switch (dataType) {
+            case BOOLEAN:
+                return 1;
+            case INT32:
+            case FLOAT:
+                return Integer.BYTES;
+            case INT64:
+            case TIMESTAMP:
+            case DOUBLE:
+                return Long.BYTES;
+            case DATE:
+                // 引用 + LocalDate 对象
+                return 32;
+            default:
+                return BINARY_OVERHEAD;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package utils.write;
+
+import org.apache.tsfile.common.conf.TSFileConfig;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.utils.BitMap;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.IMeasurementSchema;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 面向稀疏数据（大部分单元格为空）的 Tablet 加载器。
+ * 输入为稀疏行（时间戳 + 非空列的下标和值）或 (时间戳, 列, 值) 三元组，值直接写入 Tablet 的列数组，只处理非空单元格：
+ * <ul>
+ *     <li>不经过 Tablet.addTimestamp / addValue，避免逐行逐列地维护位图和按列名查找</li>
+ *     <li>位图初始全部标记为空，写入值时取消对应行的标记</li>
+ *     <li>每批写出后只对本批写入过值的列整体重新标记为空，整批没有值的列不做任何处理</li>
+ * </ul>
+ * 三元组按到达顺序组成行，时间戳与当前行不同时开始新的一行，因此同一行的三元组必须连续到达；
+ * 同一时间戳需要拆成多行时（例如多个设备）使用 {@link #beginRow(long)}。
+ * <p>
+ * Tablet 写满或调用 {@link #flush()} 时交给写入目标，写入目标返回后 Tablet 会被复用，不能再持有。
+ * 按类型写值的方法（setDouble 等）要求列类型匹配，否则抛出 ClassCastException。
+ */
+public class SparseTabletLoader implements AutoCloseable {
+
+    private static final int DEFAULT_TABLET_SIZE = 1024;
+
+    private final TabletSink sink;
+    private final Tablet tablet;
+    private final List<TSDataType> dataTypes = new ArrayList<>();
+    private final Map<String, Integer> columnIndexes = new HashMap<>();
+    private final long[] timestamps;
+    private final Object[] values;
+    private final BitMap[] bitMaps;
+
+    // 当前批次中写入过值的列
+    private final boolean[] dirty;
+    private final int[] dirtyColumns;
+    private int dirtyNum = 0;
+
+    private int row = -1;
+    private long rowTime;
+    private long rowNum = 0;
+    private long cellNum = 0;
+
+    public SparseTabletLoader(TabletSink sink, TableSchema tableSchema) {
+        this(sink, tableSchema, DEFAULT_TABLET_SIZE);
+    }
+
+    /**
+     * @param sink        写入目标
+     * @param tableSchema 表结构，列下标与其中的列顺序一致
+     * @param tabletSize  每批的最大行数
+     */
+    public SparseTabletLoader(TabletSink sink, TableSchema tableSchema, int tabletSize) {
+        if (tabletSize <= 0) {
+            throw new IllegalArgumentException("tabletSize must be positive, but was " + tabletSize);
+        }
+        this.sink = sink;
+        List<String> columnNames = new ArrayList<>();
+        for (IMeasurementSchema columnSchema : tableSchema.getColumnSchemas()) {
+            columnIndexes.put(columnSchema.getMeasurementName(), columnNames.size());
+            columnNames.add(columnSchema.getMeasurementName());
+            dataTypes.add(columnSchema.getType());
+        }
+        this.tablet = new Tablet(columnNames, dataTypes, tabletSize);
+        this.tablet.initBitMaps();
+        this.timestamps = tablet.getTimestamps();
+        this.values = tablet.getValues();
+        this.bitMaps = tablet.getBitMaps();
+        for (BitMap bitMap : bitMaps) {
+            bitMap.markAll();
+        }
+        this.dirty = new boolean[columnNames.size()];
+        this.dirtyColumns = new int[columnNames.size()];
+    }
+
+    /**
+     * 列名对应的列下标，用于预先解析稀疏输入中的列
+     */
+    public int columnIndex(String columnName) {
+        Integer index = columnIndexes.get(columnName);
+        if (index == null) {
+            throw new IllegalArgumentException("Unknown column: " + columnName);
+        }
+        return index;
+    }
+
+    /**
+     * 开始新的一行，之后的 setXxx 写入这一行；当前批次已满时先写出
+     */
+    public void beginRow(long time) throws IOException, WriteProcessException {
+        if (row + 1 == timestamps.length) {
+            flush();
+        }
+        row++;
+        timestamps[row] = time;
+        rowTime = time;
+        rowNum++;
+    }
+
+    /**
+     * 写入一个稀疏行
+     *
+     * @param time    时间戳
+     * @param columns 非空列的下标
+     * @param values  与 columns 对应的值，为 null 的值视为空
+     */
+    public void addRow(long time, int[] columns, Object[] values) throws IOException, WriteProcessException {
+        if (columns.length != values.length) {
+            throw new IllegalArgumentException(
+                    "columns has " + columns.length + " elements, but values has " + values.length);
+        }
+        beginRow(time);
+        for (int i = 0; i < columns.length; i++) {
+            setValue(columns[i], values[i]);
+        }
+    }
+
+    /**
+     * 写入一个稀疏行，所有非空列均为 DOUBLE 类型
+     */
+    public void addRow(long time, int[] columns, double[] values, int length) throws IOException, WriteProcessException {
+        beginRow(time);
+        for (int i = 0; i < length; i++) {
+            setDouble(columns[i], values[i]);
+        }
+    }
+
+    /**
+     * 写入一个 (时间戳, 列, 值) 三元组，时间戳与当前行不同时开始新的一行
+     */
+    public void add(long time, int column, Object value) throws IOException, WriteProcessException {
+        ensureRow(time);
+        setValue(column, value);
+    }
+
+    public void addDouble(long time, int column, double value) throws IOException, WriteProcessException {
+        ensureRow(time);
+        setDouble(column, value);
+    }
+
+    public void addLong(long time, int column, long value) throws IOException, WriteProcessException {
+        ensureRow(time);
+        setLong(column, value);
+    }
+
+    /**
+     * 按列类型写入当前行的值，null 表示空值。
+     * 支持的值类型：INT32 为 Integer，INT64/TIMESTAMP 为 Long，FLOAT 为 Float，DOUBLE 为 Double，BOOLEAN 为 Boolean，
+     * TEXT/STRING/BLOB 为 String、byte[] 或 Binary，DATE 为 LocalDate
+     */
+    public void setValue(int column, Object value) {
+        if (value == null) {
+            return;
+        }
+        switch (dataTypes.get(column)) {
+            case INT32:
+                setInt(column, (Integer) value);
+                break;
+            case INT64:
+            case TIMESTAMP:
+                setLong(column, (Long) value);
+                break;
+            case FLOAT:
+                setFloat(column, (Float) value);
+                break;
+            case DOUBLE:
+                setDouble(column, (Double) value);
+                break;
+            case BOOLEAN:
+                setBoolean(column, (Boolean) value);
+                break;
+            case TEXT:
+            case STRING:
+            case BLOB:
+                if (value instanceof Binary) {
+                    setBinary(column, (Binary) value);
+                } else if (value instanceof byte[]) {
+                    setBinary(column, new Binary((byte[]) value));
+                } else {
+                    setBinary(column, new Binary(value.toString(), TSFileConfig.STRING_CHARSET));
+                }
+                break;
+            case DATE:
+                setDate(column, (LocalDate) value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataTypes.get(column));
+        }
+    }
+
+    public void setInt(int column, int value) {
+        ((int[]) values[column])[currentRow()] = value;
+        markPresent(column);
+    }
+
+    public void setLong(int column, long value) {
+        ((long[]) values[column])[currentRow()] = value;
+        markPresent(column);
+    }
+
+    public void setFloat(int column, float value) {
+        ((float[]) values[column])[currentRow()] = value;
+        markPresent(column);
+    }
+
+    public void setDouble(int column, double value) {
+        ((double[]) values[column])[currentRow()] = value;
+        markPresent(column);
+    }
+
+    public void setBoolean(int column, boolean value) {
+        ((boolean[]) values[column])[currentRow()] = value;
+        markPresent(column);
+    }
+
+    public void setBinary(int column, Binary value) {
+        ((Binary[]) values[column])[currentRow()] = value;
+        markPresent(column);
+    }
+
+    public void setDate(int column, LocalDate value) {
+        ((LocalDate[]) values[column])[currentRow()] = value;
+        markPresent(column);
+    }
+
+    /**
+     * 写出当前批次，之后重新标记本批写入过值的列
+     */
+    public void flush() throws IOException, WriteProcessException {
+        if (row < 0) {
+            return;
+        }
+        tablet.setRowSize(row + 1);
+        sink.write(tablet);
+        for (int i = 0; i < dirtyNum; i++) {
+            int column = dirtyColumns[i];
+            bitMaps[column].markAll();
+            if (values[column] instanceof Object[]) {
+                // 释放对象引用
+                Arrays.fill((Object[]) values[column], 0, row + 1, null);
+            }
+            dirty[column] = false;
+        }
+        dirtyNum = 0;
+        tablet.setRowSize(0);
+        row = -1;
+    }
+
+    @Override
+    public void close() throws IOException, WriteProcessException {
+        flush();
+    }
+
+    /**
+     * 已加载的行数
+     */
+    public long getRowNum() {
+        return rowNum;
+    }
+
+    /**
+     * 已加载的非空单元格数
+     */
+    public long getCellNum() {
+        return cellNum;
+    }
+
+    private void ensureRow(long time) throws IOException, WriteProcessException {
+        if (row < 0 || time != rowTime) {
+            beginRow(time);
+        }
+    }
+
+    private int currentRow() {
+        if (row < 0) {
+            throw new IllegalStateException("beginRow must be called before setting values");
+        }
+        return row;
+    }
+
+    private void markPresent(int column) {
+        if (!dirty[column]) {
+            dirty[column] = true;
+            dirtyColumns[dirtyNum++] = column;
+        }
+        bitMaps[column].unmark(row);
+        cellNum++;
+    }
+}
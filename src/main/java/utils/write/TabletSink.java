@@ -0,0 +1,15 @@
+package utils.write;
+
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.write.record.Tablet;
+
+import java.io.IOException;
+
+/**
+ * 接收 Tablet 的写入目标，ITsFileWriter::write 以及本包中的各类缓冲写入器均可作为实现
+ */
+@FunctionalInterface
+public interface TabletSink {
+
+    void write(Tablet tablet) throws IOException, WriteProcessException;
+}
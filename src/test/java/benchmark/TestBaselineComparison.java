@@ -0,0 +1,140 @@
+package benchmark;
+
+import benchmark.BaselineComparison.MetricChange;
+import benchmark.BaselineStore.Baseline;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestBaselineComparison {
+
+    private static final String BENCHMARK = "TestBenchmark";
+    private static final double DELTA = 1e-9;
+
+    /**
+     * 测试多轮吞吐量的 95% 置信区间（预期值按 Welch t 检验手工计算）：
+     * 下降超过阈值且置信区间不包含 0 时为回退，上升时为提升，变化超过阈值但置信区间包含 0 时无显著变化
+     */
+    @Test
+    public void testConfidenceInterval() {
+        // 每轮 1000 个操作，吞吐量分别为 1000、1250、800 ops/s 等
+        List<BenchmarkResult> baselines = Arrays.asList(
+                result("slower", 1000, 1_000_000_000L, 800_000_000L, 1_000_000_000L, 800_000_000L,
+                        1_000_000_000L, 800_000_000L),
+                result("faster", 1000, 1_250_000_000L, 1_000_000_000L, 1_250_000_000L, 1_000_000_000L,
+                        1_250_000_000L, 1_000_000_000L),
+                result("noisy", 1000, 1_000_000_000L, 800_000_000L, 1_250_000_000L));
+        List<BenchmarkResult> currents = Arrays.asList(
+                result("slower", 1000, 1_250_000_000L, 1_000_000_000L, 1_250_000_000L, 1_000_000_000L,
+                        1_250_000_000L, 1_000_000_000L),
+                result("faster", 1000, 1_000_000_000L, 800_000_000L, 1_000_000_000L, 800_000_000L,
+                        1_000_000_000L, 800_000_000L),
+                result("noisy", 1000, 1_250_000_000L, 1_000_000_000L, 1_250_000_000L));
+        ComparisonReport report = new BaselineComparison(5).compare(baseline(baselines), baseline(currents));
+
+        // 均值 1125 -> 900，Welch 自由度 9.54，t = 2.262
+        assertChange(find(report, "slower", BaselineComparison.THROUGHPUT), 1125, 900, -20,
+                -34.39418277561383, -5.605817224386174, MetricChange.Verdict.REGRESSION);
+        assertChange(find(report, "faster", BaselineComparison.THROUGHPUT), 900, 1125, 25,
+                7.007271530482717, 42.99272846951728, MetricChange.Verdict.IMPROVEMENT);
+        // 下降 14.8% 超过阈值，但自由度 2.98 时 t = 4.303，置信区间包含 0
+        assertChange(find(report, "noisy", BaselineComparison.THROUGHPUT), 1016.6666666666666, 866.6666666666666,
+                -14.754098360655737, -76.65356026057098, 47.14536353925951, MetricChange.Verdict.UNCHANGED);
+        // slower 的 p99 同样从 1000 ms 变为 1250 ms
+        assertChange(find(report, "slower", BaselineComparison.P99), 1000, 1250, 25,
+                Double.NaN, Double.NaN, MetricChange.Verdict.REGRESSION);
+        assert report.regressions().size() == 2 && report.hasRegression() : report.regressions();
+        assert report.getUnmatched().isEmpty() : report.getUnmatched();
+    }
+
+    /**
+     * 测试阈值边界：只有一轮时没有置信区间，只按阈值判断，变化恰好等于阈值时无显著变化；
+     * 吞吐量越高越好，自定义指标越低越好，基线为 0 时变化为无穷
+     */
+    @Test
+    public void testThresholdEdges() {
+        List<BenchmarkResult> baselines = Arrays.asList(
+                result("ops950", 1000, 1_000_000_000L),
+                result("ops949", 1000, 1_000_000_000L),
+                result("ops1050", 1000, 1_000_000_000L),
+                result("ops1051", 1000, 1_000_000_000L),
+                result("metric", 1000, 1_000_000_000L)
+                        .addMetric("up5", 100).addMetric("up6", 100).addMetric("down5", 100).addMetric("down6", 100)
+                        .addMetric("fromZero", 0).addMetric("zero", 0),
+                result("baselineOnly", 1000, 1_000_000_000L));
+        List<BenchmarkResult> currents = Arrays.asList(
+                result("ops950", 950, 1_000_000_000L),
+                result("ops949", 949, 1_000_000_000L),
+                result("ops1050", 1050, 1_000_000_000L),
+                result("ops1051", 1051, 1_000_000_000L),
+                result("metric", 1000, 1_000_000_000L)
+                        .addMetric("up5", 105).addMetric("up6", 106).addMetric("down5", 95).addMetric("down6", 94)
+                        .addMetric("fromZero", 1).addMetric("zero", 0),
+                result("currentOnly", 1000, 1_000_000_000L));
+        ComparisonReport report = new BaselineComparison(5).compare(baseline(baselines), baseline(currents));
+
+        assertChange(find(report, "ops950", BaselineComparison.THROUGHPUT), 1000, 950, -5,
+                Double.NaN, Double.NaN, MetricChange.Verdict.UNCHANGED);
+        assertChange(find(report, "ops949", BaselineComparison.THROUGHPUT), 1000, 949, -5.1,
+                Double.NaN, Double.NaN, MetricChange.Verdict.REGRESSION);
+        assertChange(find(report, "ops1050", BaselineComparison.THROUGHPUT), 1000, 1050, 5,
+                Double.NaN, Double.NaN, MetricChange.Verdict.UNCHANGED);
+        assertChange(find(report, "ops1051", BaselineComparison.THROUGHPUT), 1000, 1051, 5.1,
+                Double.NaN, Double.NaN, MetricChange.Verdict.IMPROVEMENT);
+        assert find(report, "metric", "up5").getVerdict() == MetricChange.Verdict.UNCHANGED;
+        assert find(report, "metric", "up6").getVerdict() == MetricChange.Verdict.REGRESSION;
+        assert find(report, "metric", "down5").getVerdict() == MetricChange.Verdict.UNCHANGED;
+        assert find(report, "metric", "down6").getVerdict() == MetricChange.Verdict.IMPROVEMENT;
+        MetricChange fromZero = find(report, "metric", "fromZero");
+        assert fromZero.getChangePercent() == Double.POSITIVE_INFINITY
+                && fromZero.getVerdict() == MetricChange.Verdict.REGRESSION : fromZero;
+        MetricChange zero = find(report, "metric", "zero");
+        assert zero.getChangePercent() == 0 && zero.getVerdict() == MetricChange.Verdict.UNCHANGED : zero;
+        assert report.regressions().size() == 3 : report.regressions();
+        assert report.getUnmatched().equals(Arrays.asList(BENCHMARK + " / baselineOnly（仅基线）",
+                BENCHMARK + " / currentOnly（仅当前）")) : report.getUnmatched();
+
+        // 阈值为 0 时任何变差都是回退
+        ComparisonReport strict = new BaselineComparison(0).compare(baseline(baselines), baseline(currents));
+        assert find(strict, "ops950", BaselineComparison.THROUGHPUT).getVerdict() == MetricChange.Verdict.REGRESSION;
+        assert find(strict, "metric", "zero").getVerdict() == MetricChange.Verdict.UNCHANGED;
+    }
+
+    private static BenchmarkResult result(String name, long operationsPerIteration, long... iterationNanos) {
+        return new BenchmarkResult(name, iterationNanos, operationsPerIteration, 0);
+    }
+
+    private static List<Baseline> baseline(List<BenchmarkResult> results) {
+        BenchmarkEnvironment environment = new BenchmarkEnvironment("1.0", null, "1.0", "test", "linux", "amd64", 4,
+                null, 1024, "java");
+        return Collections.singletonList(new Baseline(BENCHMARK, "2026-01-01T00:00:00Z", environment, results));
+    }
+
+    private static MetricChange find(ComparisonReport report, String result, String metric) {
+        for (MetricChange change : report.getChanges()) {
+            if (change.getResult().equals(BENCHMARK + " / " + result) && change.getMetric().equals(metric)) {
+                return change;
+            }
+        }
+        throw new AssertionError("没有找到 " + result + " 的指标 " + metric);
+    }
+
+    private static void assertChange(MetricChange change, double baselineValue, double currentValue,
+                                     double changePercent, double ciLowPercent, double ciHighPercent,
+                                     MetricChange.Verdict verdict) {
+        assert close(change.getBaselineValue(), baselineValue) && close(change.getCurrentValue(), currentValue)
+                && close(change.getChangePercent(), changePercent) : "实际结果：" + change;
+        assert close(change.getCiLowPercent(), ciLowPercent) && close(change.getCiHighPercent(), ciHighPercent)
+                : "实际置信区间：[" + change.getCiLowPercent() + ", " + change.getCiHighPercent() + "]";
+        assert change.getVerdict() == verdict : "实际结论：" + change;
+    }
+
+    private static boolean close(double actual, double expected) {
+        if (Double.isNaN(expected)) {
+            return Double.isNaN(actual);
+        }
+        return Math.abs(actual - expected) <= DELTA * Math.max(1, Math.abs(expected));
+    }
+}
@@ -0,0 +1,280 @@
+package org.apache.tsfile.table;
+
+import benchmark.TableFileGenerator;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.read.filter.basic.Filter;
+import org.apache.tsfile.read.filter.factory.TagFilterBuilder;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.testng.Reporter;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+/**
+ * 大规模场景下的 testQuery1 / testQuery2：千万级行数、百万级 TAG 元组、5 个以上 TAG 列、一年的时间范围。
+ * 属于 scale 分组，默认不执行，使用 mvn test -P scale 开启，数据规模和预算通过系统属性调整：
+ * <ul>
+ *     <li>scale.rows：总行数，默认 10000000</li>
+ *     <li>scale.devices：设备数（不同 TAG 元组数），默认 1000000</li>
+ *     <li>scale.tags：TAG 列数，默认 5</li>
+ *     <li>scale.days：时间范围（天），默认 365</li>
+ *     <li>scale.maxHeapMb：查询期间堆内存使用上限，默认 2048</li>
+ *     <li>scale.timeBudgetSeconds：单次查询的耗时上限，默认 600</li>
+ * </ul>
+ */
+@Test(groups = "scale")
+public class TestITsFileReaderScale {
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final long rowNum = Long.getLong("scale.rows", 10_000_000L);
+    private final int deviceNum = Integer.getInteger("scale.devices", 1_000_000);
+    private final int tagNum = Integer.getInteger("scale.tags", 5);
+    private final long days = Long.getLong("scale.days", 365L);
+    private final long maxHeapBytes = Long.getLong("scale.maxHeapMb", 2048L) * 1024 * 1024;
+    private final long timeBudgetNanos = Long.getLong("scale.timeBudgetSeconds", 600L) * 1_000_000_000L;
+
+    private final File f = new File("data/tsfile/scale/table_scale.tsfile");
+    private TableFileGenerator generator;
+    private List<String> columnNameList;
+    private long rowsPerDevice;
+    private long timeInterval;
+
+    @BeforeClass(groups = "scale")
+    public void GenerateTsFile() throws IOException, WriteProcessException {
+        rowsPerDevice = Math.max(1, rowNum / deviceNum);
+        timeInterval = Math.max(1, days * DAY_MILLIS / rowsPerDevice);
+        generator = new TableFileGenerator()
+                .deviceNum(deviceNum)
+                .rowsPerDevice(rowsPerDevice)
+                .tagColumnNum(tagNum)
+                .fieldColumnNum(2)
+                .startTime(0)
+                .timeInterval(timeInterval);
+        columnNameList = generator.columnNames();
+        long start = System.nanoTime();
+        generator.generate(f);
+        Reporter.log(String.format(Locale.ROOT, "Generated %d rows of %d devices in %.1f s, file size %d bytes",
+                generator.totalRows(), deviceNum, (System.nanoTime() - start) / 1e9, f.length()));
+    }
+
+    /**
+     * 大规模下的 query(String tableName, List<String> columnNames, long startTime, long endTime)
+     */
+    @Test(groups = "scale")
+    public void testQuery1() throws Exception {
+        assertQuery(null, Long.MIN_VALUE, Long.MAX_VALUE, generator.totalRows());
+
+        // 只查询后半段时间
+        long startTime = generator.endTime() / 2;
+        long rowsInRange = 0;
+        for (long row = 0; row < rowsPerDevice; row++) {
+            if (row * timeInterval >= startTime) {
+                rowsInRange++;
+            }
+        }
+        assertQuery(null, startTime, Long.MAX_VALUE, rowsInRange * deviceNum);
+    }
+
+    /**
+     * 大规模下的 query(String tableName, List<String> columnNames, long startTime, long endTime, Filter tagFilter)
+     */
+    @Test(groups = "scale")
+    public void testQuery2() throws Exception {
+        TagFilterBuilder filterBuilder = new TagFilterBuilder(generator.tableSchema());
+        String tag0 = columnNameList.get(0);
+        String tag1 = columnNameList.get(1);
+        String lastTag = columnNameList.get(tagNum - 1);
+        String device = generator.tagValue(deviceNum / 2, 0);
+
+        // 等于 / 不等于
+        assertTagQuery(filterBuilder.eq(tag0, device), d -> generator.tagValue(d, 0).equals(device));
+        assertTagQuery(filterBuilder.eq(tag1, "tag1_0"), d -> generator.tagValue(d, 1).equals("tag1_0"));
+        assertTagQuery(filterBuilder.neq(tag0, device), d -> !generator.tagValue(d, 0).equals(device));
+
+        // 范围
+        assertTagQuery(filterBuilder.lt(tag0, "device_5"), d -> generator.tagValue(d, 0).compareTo("device_5") < 0);
+        assertTagQuery(filterBuilder.gteq(tag0, "device_5"), d -> generator.tagValue(d, 0).compareTo("device_5") >= 0);
+        assertTagQuery(filterBuilder.betweenAnd(tag0, "device_1", "device_2"), d -> {
+            String value = generator.tagValue(d, 0);
+            return value.compareTo("device_1") >= 0 && value.compareTo("device_2") <= 0;
+        });
+
+        // 组合
+        assertTagQuery(filterBuilder.and(filterBuilder.eq(tag1, "tag1_1"), filterBuilder.eq(lastTag, lastTag + "_0")),
+                d -> generator.tagValue(d, 1).equals("tag1_1") && generator.tagValue(d, tagNum - 1).equals(lastTag + "_0"));
+        assertTagQuery(filterBuilder.or(filterBuilder.eq(tag0, device), filterBuilder.eq(lastTag, lastTag + "_1")),
+                d -> generator.tagValue(d, 0).equals(device) || generator.tagValue(d, tagNum - 1).equals(lastTag + "_1"));
+        assertTagQuery(filterBuilder.not(filterBuilder.eq(lastTag, lastTag + "_0")),
+                d -> !generator.tagValue(d, tagNum - 1).equals(lastTag + "_0"));
+
+        // 正则与通配符
+        assertTagQuery(filterBuilder.regExp(tag0, "device_1.*"), d -> generator.tagValue(d, 0).matches("device_1.*"));
+        assertTagQuery(filterBuilder.like(tag0, "device_9%"), d -> generator.tagValue(d, 0).startsWith("device_9"));
+    }
+
+    private void assertTagQuery(Filter filter, IntPredicate devicePredicate) throws Exception {
+        long matchedDeviceNum = 0;
+        for (int d = 0; d < deviceNum; d++) {
+            if (devicePredicate.test(d)) {
+                matchedDeviceNum++;
+            }
+        }
+        assertQuery(filter, Long.MIN_VALUE, Long.MAX_VALUE, matchedDeviceNum * rowsPerDevice);
+    }
+
+    /**
+     * 执行查询并校验行数、耗时和查询期间的堆内存峰值
+     */
+    private void assertQuery(Filter filter, long startTime, long endTime, long expectRowNum)
+            throws IOException, ReadProcessException, NoTableException, NoMeasurementException, InterruptedException {
+        long actualRowNum = 0;
+        long start = System.nanoTime();
+        try (HeapSampler heapSampler = new HeapSampler()) {
+            try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+                 ResultSet resultSet = filter == null
+                         ? reader.query(generator.getTableName(), columnNameList, startTime, endTime)
+                         : reader.query(generator.getTableName(), columnNameList, startTime, endTime, filter)) {
+                while (resultSet.next()) {
+                    actualRowNum++;
+                }
+                // 读取器关闭前 GC 一次，保证至少采样到一次查询期间的存活对象大小
+                heapSampler.collect();
+            }
+            long elapsed = System.nanoTime() - start;
+            long peakHeap = heapSampler.peak();
+            String summary = String.format(Locale.ROOT, "filter=%s rows=%d elapsed=%.1f s peakHeap=%d MB",
+                    filter, actualRowNum, elapsed / 1e9, peakHeap / 1024 / 1024);
+            Reporter.log(summary);
+            assert actualRowNum == expectRowNum
+                    : "Actual row number: " + actualRowNum + ", expected row number: " + expectRowNum + "，" + summary;
+            assert elapsed <= timeBudgetNanos : "查询耗时超出预算：" + summary;
+            assert peakHeap <= maxHeapBytes : "查询期间堆内存超出上限：" + summary;
+        }
+    }
+
+    /**
+     * 记录查询期间的堆内存峰值：监听 GC 通知，取每次 GC 后各堆内存池占用之和的最大值，近似于存活对象大小，
+     * 不受尚未回收的垃圾影响；期间没有发生 GC 时，取后台线程定期采样的堆内存占用的最大值，它是存活对象大小的上界
+     */
+    private static class HeapSampler implements AutoCloseable {
+
+        private static final long SAMPLE_INTERVAL_MILLIS = 20;
+        private static final long COLLECT_TIMEOUT_MILLIS = 5000;
+
+        private final Set<String> heapPoolNames = new HashSet<>();
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private final NotificationListener listener = this::handleNotification;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private volatile long sampledPeak = 0;
+
+        private long gcCount = 0;
+        private long afterGcPeak = 0;
+
+        HeapSampler() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPoolNames.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (bean instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) bean;
+                    emitter.addNotificationListener(listener, null, null);
+                    emitters.add(emitter);
+                }
+            }
+            thread = new Thread(() -> {
+                while (running) {
+                    sample();
+                    try {
+                        Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "heap-sampler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private synchronized void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> entry : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (heapPoolNames.contains(entry.getKey())) {
+                    used += entry.getValue().getUsed();
+                }
+            }
+            gcCount++;
+            afterGcPeak = Math.max(afterGcPeak, used);
+            notifyAll();
+        }
+
+        /**
+         * 触发一次 GC 并等待其通知，通知由 JVM 的后台线程异步发出
+         */
+        synchronized void collect() throws InterruptedException {
+            long before = gcCount;
+            System.gc();
+            long deadline = System.currentTimeMillis() + COLLECT_TIMEOUT_MILLIS;
+            while (gcCount == before && System.currentTimeMillis() < deadline) {
+                wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        }
+
+        synchronized long peak() {
+            sample();
+            return gcCount > 0 ? afterGcPeak : sampledPeak;
+        }
+
+        private void sample() {
+            sampledPeak = Math.max(sampledPeak, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(listener);
+                } catch (ListenerNotFoundException ignored) {
+                    // 已经移除
+                }
+            }
+            emitters.clear();
+            running = false;
+            thread.interrupt();
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package utils;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestJsonReader {
+
+    /**
+     * 测试 JsonWriter 的输出能被原样读回：转义字符、NaN 和 Infinity 写为 null、负数和带指数的数、嵌套的对象和数组
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        String text = "quote \" backslash \\ slash / newline \n cr \r tab \t control \u0001 中文";
+        StringWriter out = new StringWriter();
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject()
+                .name("text").value(text)
+                .name("null").value((String) null)
+                .name("negative").value(-1234567890123L)
+                .name("min").value(Long.MIN_VALUE)
+                .name("small").value(-1.5e-7)
+                .name("large").value(1.0e300)
+                .name("nan").value(Double.NaN)
+                .name("infinity").value(Double.NEGATIVE_INFINITY)
+                .name("bool").value(true)
+                .name("array").beginArray()
+                .value(1).value(-2.5).beginObject().endObject().beginArray().endArray()
+                .endArray()
+                .name("key \"with\" escapes\n").value(false)
+                .endObject();
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("text", text);
+        expected.put("null", null);
+        expected.put("negative", -1234567890123L);
+        expected.put("min", Long.MIN_VALUE);
+        expected.put("small", -1.5e-7);
+        expected.put("large", 1.0e300);
+        expected.put("nan", null);
+        expected.put("infinity", null);
+        expected.put("bool", true);
+        expected.put("array", Arrays.asList(1L, -2.5, new LinkedHashMap<>(), new ArrayList<>()));
+        expected.put("key \"with\" escapes\n", false);
+
+        Object parsed = JsonReader.parse(out.toString());
+        assert parsed.equals(expected) : "实际结果：" + parsed + "，JSON：" + out;
+        assert JsonReader.parse(new StringReader(out.toString())).equals(expected);
+        // 保持键的顺序
+        assert new ArrayList<>(((Map<?, ?>) parsed).keySet()).equals(new ArrayList<>(expected.keySet()));
+    }
+
+    /**
+     * 测试手写的 JSON：空白、unicode 转义、不带小数点的指数、负零
+     */
+    @Test
+    public void testParse() {
+        Object parsed = JsonReader.parse(" {\n\t\"a\\u0041\\/\" : [ 1e3 , -2E-2 , -0 , 0.5 ] } ");
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("aA/", Arrays.asList(1000.0, -0.02, 0L, 0.5));
+        assert parsed.equals(expected) : "实际结果：" + parsed;
+        assert JsonReader.parse("\"\"").equals("");
+        assert JsonReader.parse("null") == null;
+    }
+
+    /**
+     * 测试不合法的输入，报错中包含出错的位置
+     */
+    @Test
+    public void testInvalid() {
+        List<String> inputs = Arrays.asList("[1,]", "{\"a\" 1}", "{\"a\":1,}", "\"abc", "1 2", "tru", "-", "\"\\x\"", "");
+        List<String> messages = Arrays.asList(
+                "Unexpected character ']' at position 3",
+                "Expected ':' at position 5",
+                "Expected object key at position 7",
+                "Unterminated string at position 4",
+                "Unexpected trailing content at position 2",
+                "Expected 'true' at position 0",
+                "Invalid number '-' at position 1",
+                "Invalid escape '\\x' at position 3",
+                "Unexpected end of input at position 0");
+        for (int i = 0; i < inputs.size(); i++) {
+            try {
+                JsonReader.parse(inputs.get(i));
+                assert false : "预期报错但是没有报错：" + inputs.get(i);
+            } catch (IllegalArgumentException e) {
+                assert e.getMessage().equals(messages.get(i))
+                        : "实际报错与预期不一致，预期：" + messages.get(i) + "，实际：" + e.getMessage();
+            }
+        }
+    }
+}
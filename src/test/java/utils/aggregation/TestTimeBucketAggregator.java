@@ -0,0 +1,355 @@
+package utils.aggregation;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.ColumnSchemaBuilder;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.read.filter.factory.TagFilterBuilder;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.query.dataset.ResultSetMetadata;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestTimeBucketAggregator {
+
+    private final String tableName = "table1";
+    private final File f = new File("data/tsfile/time_bucket_aggregator.tsfile");
+    private final File statisticsFile = new File("data/tsfile/time_bucket_aggregator_statistics.tsfile");
+    private final List<String> columnNameList = Arrays.asList("Tag1", "S1");
+    private TableSchema tableSchema;
+
+    /**
+     * 生成 20 行数据：偶数行 Tag1=a，奇数行 Tag1=b，S1 等于行号，第 19 行 S1 为空
+     */
+    @BeforeTest
+    public void GenerateTsFile() throws IOException, WriteProcessException {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        f.getParentFile().mkdirs();
+        tableSchema = new TableSchema(tableName, Arrays.asList(
+                new ColumnSchemaBuilder().name("Tag1").dataType(TSDataType.STRING).category(ColumnCategory.TAG).build(),
+                new ColumnSchemaBuilder().name("S1").dataType(TSDataType.INT32).category(ColumnCategory.FIELD).build()));
+        try (ITsFileWriter writer = new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build()) {
+            Tablet tablet = new Tablet(columnNameList, Arrays.asList(TSDataType.STRING, TSDataType.INT32));
+            for (int row = 0; row < 20; row++) {
+                tablet.addTimestamp(row, row);
+                tablet.addValue(row, "Tag1", row % 2 == 0 ? "a" : "b");
+                if (row != 19) {
+                    tablet.addValue(row, "S1", row);
+                }
+            }
+            writer.write(tablet);
+        }
+    }
+
+    /**
+     * 生成 Tag1 为 a、b 两个设备的数据，每个设备 30000 行，时间为 0~29999，每个 Tablet 只包含一个设备的 1000 行，
+     * 两个设备交替写入；S1 为 INT32，S2 为 DOUBLE，S2 每 7 行一个空值
+     */
+    @BeforeTest
+    public void GenerateStatisticsTsFile() throws IOException, WriteProcessException {
+        if (statisticsFile.exists()) {
+            Files.delete(statisticsFile.toPath());
+        }
+        statisticsFile.getParentFile().mkdirs();
+        TableSchema schema = new TableSchema(tableName, Arrays.asList(
+                new ColumnSchemaBuilder().name("Tag1").dataType(TSDataType.STRING).category(ColumnCategory.TAG).build(),
+                new ColumnSchemaBuilder().name("S1").dataType(TSDataType.INT32).category(ColumnCategory.FIELD).build(),
+                new ColumnSchemaBuilder().name("S2").dataType(TSDataType.DOUBLE).category(ColumnCategory.FIELD).build()));
+        try (ITsFileWriter writer = new TsFileWriterBuilder().file(statisticsFile).tableSchema(schema).build()) {
+            Tablet tablet = new Tablet(Arrays.asList("Tag1", "S1", "S2"),
+                    Arrays.asList(TSDataType.STRING, TSDataType.INT32, TSDataType.DOUBLE));
+            for (int block = 0; block < 30; block++) {
+                for (String tag : Arrays.asList("a", "b")) {
+                    tablet.reset();
+                    for (int row = 0; row < 1000; row++) {
+                        long time = block * 1000L + row;
+                        tablet.addTimestamp(row, time);
+                        tablet.addValue(row, "Tag1", tag);
+                        tablet.addValue(row, "S1", tag.equals("a") ? (int) (time % 1000) - 500 : (int) (time % 777));
+                        if (time % 7 != 0) {
+                            // 0.5 的倍数，求和没有舍入误差
+                            tablet.addValue(row, "S2", tag.equals("a") ? time * 0.5 : -time * 0.5);
+                        }
+                    }
+                    writer.write(tablet);
+                }
+            }
+        }
+    }
+
+    /**
+     * 测试按 TAG 分组的时间桶聚合
+     */
+    @Test
+    public void testGroupByTag() throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        TimeBucketAggregator aggregator = new TimeBucketAggregatorBuilder()
+                .interval(10)
+                .groupBy("Tag1")
+                .aggregate("S1", AggregationType.COUNT, AggregationType.SUM, AggregationType.MIN,
+                        AggregationType.MAX, AggregationType.AVG, AggregationType.FIRST, AggregationType.LAST)
+                .build();
+        // 每行：时间桶起始时间, Tag1, count, sum, min, max, avg, first, last；整数列的 min/max/first/last 为 INT64
+        Object[][] expected = {
+                {0L, "a", 5L, 20.0, 0L, 8L, 4.0, 0L, 8L},
+                {10L, "a", 5L, 70.0, 10L, 18L, 14.0, 10L, 18L},
+                {0L, "b", 5L, 25.0, 1L, 9L, 5.0, 1L, 9L},
+                {10L, "b", 4L, 56.0, 11L, 17L, 14.0, 11L, 17L},
+        };
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             ResultSet resultSet = aggregator.query(reader, tableName, Long.MIN_VALUE, Long.MAX_VALUE, null)) {
+            ResultSetMetadata metadata = resultSet.getMetadata();
+            assert metadata.getColumnName(1).equals("Time");
+            assert metadata.getColumnName(2).equals("Tag1");
+            assert metadata.getColumnName(3).equals("count(S1)");
+            assert metadata.getColumnType(3).equals(TSDataType.INT64);
+            assert metadata.getColumnType(4).equals(TSDataType.DOUBLE);
+            assert metadata.getColumnName(5).equals("min(S1)");
+            assert metadata.getColumnType(5).equals(TSDataType.INT64);
+            assert metadata.getColumnType(7).equals(TSDataType.DOUBLE);
+            int actualRowNum = 0;
+            while (resultSet.next()) {
+                Object[] row = expected[actualRowNum];
+                assert resultSet.getLong(1) == (long) row[0] : "第 " + actualRowNum + " 行时间不一致：" + resultSet.getLong(1);
+                assert resultSet.getString(2).equals(row[1]) : "第 " + actualRowNum + " 行分组不一致：" + resultSet.getString(2);
+                assert resultSet.getLong(3) == (long) row[2] : "第 " + actualRowNum + " 行 count 不一致：" + resultSet.getLong(3);
+                for (int i = 3; i < row.length; i++) {
+                    String message = "第 " + actualRowNum + " 行第 " + (i + 1) + " 列不一致：";
+                    if (row[i] instanceof Long) {
+                        assert resultSet.getLong(i + 1) == (long) row[i] : message + resultSet.getLong(i + 1);
+                    } else {
+                        assert resultSet.getDouble(i + 1) == (double) row[i] : message + resultSet.getDouble(i + 1);
+                    }
+                }
+                actualRowNum++;
+            }
+            assert actualRowNum == expected.length : "Actual row number: " + actualRowNum + ", expected row number: " + expected.length;
+        }
+    }
+
+    /**
+     * 测试不分组并带 TAG 过滤条件的聚合，以及时间范围裁剪
+     */
+    @Test
+    public void testWithoutGroupBy() throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        TimeBucketAggregator aggregator = new TimeBucketAggregatorBuilder()
+                .interval(5)
+                .aggregate("S1", AggregationType.COUNT, AggregationType.SUM)
+                .build();
+        TagFilterBuilder filterBuilder = new TagFilterBuilder(tableSchema);
+        long[] expectedTime = {10, 15};
+        long[] expectedCount = {2, 2};
+        double[] expectedSum = {24, 32};
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             ResultSet resultSet = aggregator.query(reader, tableName, 10, 18, filterBuilder.eq("Tag1", "b"))) {
+            int actualRowNum = 0;
+            while (resultSet.next()) {
+                assert resultSet.getLong(1) == expectedTime[actualRowNum];
+                assert resultSet.getLong(2) == expectedCount[actualRowNum];
+                assert resultSet.getDouble(3) == expectedSum[actualRowNum];
+                actualRowNum++;
+            }
+            assert actualRowNum == expectedTime.length : "Actual row number: " + actualRowNum + ", expected row number: " + expectedTime.length;
+        }
+    }
+
+    /**
+     * 测试基于统计信息的聚合路径与 ResultSet 扫描结果一致，查询范围两端的 page 需要解码
+     */
+    @Test
+    public void testAggregateStatistics() throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        TimeBucketAggregator aggregator = new TimeBucketAggregatorBuilder()
+                .interval(10)
+                .groupBy("Tag1")
+                .aggregate("S1", AggregationType.COUNT, AggregationType.SUM, AggregationType.MIN,
+                        AggregationType.MAX, AggregationType.AVG, AggregationType.FIRST, AggregationType.LAST)
+                .build();
+        int columnNum = 9;
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             TsFileSequenceReader sequenceReader = new TsFileSequenceReader(f.getPath());
+             ResultSet expected = aggregator.query(reader, tableName, 3, 16, null);
+             ResultSet actual = aggregator.aggregateStatistics(sequenceReader, tableName, 3, 16, Collections.emptyMap())) {
+            int actualRowNum = assertSameResult(expected, actual, columnNum, "时间桶 10");
+            assert actualRowNum == 4 : "Actual row number: " + actualRowNum + ", expected row number: 4";
+        }
+
+        // TAG 等值过滤
+        try (TsFileSequenceReader sequenceReader = new TsFileSequenceReader(f.getPath());
+             ResultSet actual = aggregator.aggregateStatistics(
+                     sequenceReader, tableName, Long.MIN_VALUE, Long.MAX_VALUE, Collections.singletonMap("Tag1", "b"))) {
+            int actualRowNum = 0;
+            while (actual.next()) {
+                assert actual.getString(2).equals("b");
+                actualRowNum++;
+            }
+            assert actualRowNum == 2 : "Actual row number: " + actualRowNum + ", expected row number: 2";
+        }
+    }
+
+    /**
+     * 测试统计信息确实被直接合并，且结果与 ResultSet 扫描一致：
+     * 时间桶覆盖整个文件时合并 chunk 统计信息；chunk 跨越多个时间桶时合并落在单个时间桶内的 page 统计信息；
+     * 查询范围两端的 page 被解码
+     */
+    @Test
+    public void testStatisticsMerge() throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        StatisticsAggregation chunkLevel = assertStatisticsAggregation(1_000_000, Long.MIN_VALUE, Long.MAX_VALUE);
+        assert chunkLevel.getMergedChunkNum() > 0 && chunkLevel.getMergedPageNum() == 0
+                && chunkLevel.getDecodedPageNum() == 0
+                : "合并 chunk 数：" + chunkLevel.getMergedChunkNum() + "，合并 page 数：" + chunkLevel.getMergedPageNum()
+                + "，解码 page 数：" + chunkLevel.getDecodedPageNum();
+
+        StatisticsAggregation pageLevel = assertStatisticsAggregation(10000, Long.MIN_VALUE, Long.MAX_VALUE);
+        assert pageLevel.getMergedPageNum() > 0 : "合并 page 数：" + pageLevel.getMergedPageNum();
+
+        StatisticsAggregation boundary = assertStatisticsAggregation(10000, 3, 25000);
+        assert boundary.getMergedPageNum() > 0 && boundary.getDecodedPageNum() > 0
+                : "合并 page 数：" + boundary.getMergedPageNum() + "，解码 page 数：" + boundary.getDecodedPageNum();
+    }
+
+    /**
+     * 分别用 ResultSet 扫描和统计信息聚合 S1、S2，检查每一列都一致，返回统计信息聚合以便检查其使用情况
+     */
+    private StatisticsAggregation assertStatisticsAggregation(long interval, long startTime, long endTime)
+            throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        AggregationType[] types = {AggregationType.COUNT, AggregationType.SUM, AggregationType.MIN,
+                AggregationType.MAX, AggregationType.AVG, AggregationType.FIRST, AggregationType.LAST};
+        TimeBucketAggregator aggregator = new TimeBucketAggregatorBuilder()
+                .interval(interval)
+                .groupBy("Tag1")
+                .aggregate("S1", types)
+                .aggregate("S2", types)
+                .build();
+        // Time, Tag1, S1 的 7 个聚合, S2 的 7 个聚合
+        int columnNum = 2 + types.length * 2;
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(statisticsFile).build();
+             TsFileSequenceReader sequenceReader = new TsFileSequenceReader(statisticsFile.getPath())) {
+            StatisticsAggregation statisticsAggregation =
+                    aggregator.statisticsAggregation(sequenceReader, startTime, endTime);
+            try (ResultSet expected = aggregator.query(reader, tableName, startTime, endTime, null);
+                 ResultSet actual = statisticsAggregation.run(tableName, Collections.singletonList("Tag1"),
+                         Collections.emptyMap())) {
+                int actualRowNum = assertSameResult(expected, actual, columnNum, "时间桶 " + interval);
+                assert actualRowNum > 0 : "Actual row number: " + actualRowNum;
+            }
+            return statisticsAggregation;
+        }
+    }
+
+    /**
+     * 逐行逐列比较两个聚合结果的类型和值，返回行数
+     */
+    private int assertSameResult(ResultSet expected, ResultSet actual, int columnNum, String name) throws IOException {
+        ResultSetMetadata metadata = expected.getMetadata();
+        for (int i = 1; i <= columnNum; i++) {
+            assert actual.getMetadata().getColumnType(i) == metadata.getColumnType(i)
+                    : name + " 第 " + i + " 列类型不一致：" + actual.getMetadata().getColumnType(i);
+        }
+        int actualRowNum = 0;
+        while (expected.next()) {
+            assert actual.next() : name + " 统计信息聚合结果行数不足";
+            for (int i = 1; i <= columnNum; i++) {
+                String message = name + " 第 " + actualRowNum + " 行第 " + i + " 列不一致";
+                assert actual.isNull(i) == expected.isNull(i) : message;
+                if (expected.isNull(i)) {
+                    continue;
+                }
+                if (metadata.getColumnType(i) == TSDataType.DOUBLE) {
+                    assert actual.getDouble(i) == expected.getDouble(i)
+                            : message + "，预期：" + expected.getDouble(i) + "，实际：" + actual.getDouble(i);
+                } else if (metadata.getColumnType(i) == TSDataType.STRING) {
+                    assert actual.getString(i).equals(expected.getString(i)) : message;
+                } else {
+                    assert actual.getLong(i) == expected.getLong(i)
+                            : message + "，预期：" + expected.getLong(i) + "，实际：" + actual.getLong(i);
+                }
+            }
+            actualRowNum++;
+        }
+        assert !actual.next() : name + " 统计信息聚合结果行数过多";
+        return actualRowNum;
+    }
+
+    /**
+     * 测试 INT64 列超过 2^53 的值：min/max/first/last 两条路径都精确输出，不经过 double 舍入
+     */
+    @Test
+    public void testLongPrecision() throws IOException, WriteProcessException, ReadProcessException,
+            NoTableException, NoMeasurementException {
+        File longFile = new File("data/tsfile/time_bucket_aggregator_long.tsfile");
+        if (longFile.exists()) {
+            Files.delete(longFile.toPath());
+        }
+        TableSchema schema = new TableSchema(tableName, Arrays.asList(
+                new ColumnSchemaBuilder().name("Tag1").dataType(TSDataType.STRING).category(ColumnCategory.TAG).build(),
+                new ColumnSchemaBuilder().name("S1").dataType(TSDataType.INT64).category(ColumnCategory.FIELD).build()));
+        long base = (1L << 53) + 1;
+        long[] values = {base + 2, base, Long.MAX_VALUE, base + 4};
+        try (ITsFileWriter writer = new TsFileWriterBuilder().file(longFile).tableSchema(schema).build()) {
+            Tablet tablet = new Tablet(columnNameList, Arrays.asList(TSDataType.STRING, TSDataType.INT64));
+            for (int row = 0; row < values.length; row++) {
+                tablet.addTimestamp(row, row);
+                tablet.addValue(row, "Tag1", "a");
+                tablet.addValue(row, "S1", values[row]);
+            }
+            writer.write(tablet);
+        }
+        TimeBucketAggregator aggregator = new TimeBucketAggregatorBuilder()
+                .interval(100)
+                .aggregate("S1", AggregationType.MIN, AggregationType.MAX, AggregationType.FIRST, AggregationType.LAST)
+                .build();
+        long[] expected = {base, Long.MAX_VALUE, base + 2, base + 4};
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(longFile).build();
+             TsFileSequenceReader sequenceReader = new TsFileSequenceReader(longFile.getPath());
+             ResultSet scanned = aggregator.query(reader, tableName, Long.MIN_VALUE, Long.MAX_VALUE, null);
+             ResultSet merged = aggregator.aggregateStatistics(
+                     sequenceReader, tableName, Long.MIN_VALUE, Long.MAX_VALUE, Collections.emptyMap())) {
+            for (ResultSet resultSet : Arrays.asList(scanned, merged)) {
+                assert resultSet.next() : "没有聚合结果";
+                for (int i = 0; i < expected.length; i++) {
+                    assert resultSet.getMetadata().getColumnType(i + 2) == TSDataType.INT64;
+                    assert resultSet.getLong(i + 2) == expected[i]
+                            : "第 " + (i + 2) + " 列不一致，预期：" + expected[i] + "，实际：" + resultSet.getLong(i + 2);
+                }
+                assert !resultSet.next() : "聚合结果行数过多";
+            }
+        }
+    }
+
+    /**
+     * 测试参数校验
+     */
+    @Test
+    public void testBuilderException() {
+        try {
+            new TimeBucketAggregatorBuilder().aggregate("S1", AggregationType.SUM).build();
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("interval must be positive, but was -1") : "实际报错：" + e.getMessage();
+        }
+        try {
+            new TimeBucketAggregatorBuilder().interval(10).build();
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("at least one aggregation is required") : "实际报错：" + e.getMessage();
+        }
+    }
+}
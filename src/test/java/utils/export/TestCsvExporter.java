@@ -0,0 +1,166 @@
+package utils.export;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.ColumnSchemaBuilder;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.filter.factory.TagFilterBuilder;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import utils.ParserCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+public class TestCsvExporter {
+
+    private final String tableName = "table1";
+    private final File dir = new File("data/csv_export_test");
+    private final File f = new File(dir, "csv_export.tsfile");
+    private final List<String> columnNameList = Arrays.asList("Tag1", "S1", "S2", "S3", "S4", "S5");
+    private TableSchema tableSchema;
+
+    /**
+     * 生成 20 行数据：偶数行 Tag1=a，奇数行 Tag1=b；S1 等于行号，行号除以 5 余 4 时为空；
+     * S3 包含逗号和引号，S4 为 2024-01-01 之后的第 row 天
+     */
+    @BeforeClass
+    public void GenerateTsFile() throws IOException, WriteProcessException {
+        dir.mkdirs();
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        tableSchema = new TableSchema(tableName, Arrays.asList(
+                new ColumnSchemaBuilder().name("Tag1").dataType(TSDataType.STRING).category(ColumnCategory.TAG).build(),
+                new ColumnSchemaBuilder().name("S1").dataType(TSDataType.INT32).category(ColumnCategory.FIELD).build(),
+                new ColumnSchemaBuilder().name("S2").dataType(TSDataType.DOUBLE).category(ColumnCategory.FIELD).build(),
+                new ColumnSchemaBuilder().name("S3").dataType(TSDataType.TEXT).category(ColumnCategory.FIELD).build(),
+                new ColumnSchemaBuilder().name("S4").dataType(TSDataType.DATE).category(ColumnCategory.FIELD).build(),
+                new ColumnSchemaBuilder().name("S5").dataType(TSDataType.BOOLEAN).category(ColumnCategory.FIELD).build()));
+        try (ITsFileWriter writer = new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build()) {
+            Tablet tablet = new Tablet(columnNameList, Arrays.asList(TSDataType.STRING, TSDataType.INT32,
+                    TSDataType.DOUBLE, TSDataType.TEXT, TSDataType.DATE, TSDataType.BOOLEAN));
+            for (int row = 0; row < 20; row++) {
+                tablet.addTimestamp(row, row);
+                tablet.addValue(row, "Tag1", row % 2 == 0 ? "a" : "b");
+                if (row % 5 != 4) {
+                    tablet.addValue(row, "S1", row);
+                }
+                tablet.addValue(row, "S2", row * 0.1);
+                tablet.addValue(row, "S3", "text,\"" + row + "\"");
+                tablet.addValue(row, "S4", LocalDate.of(2024, 1, 1).plusDays(row));
+                tablet.addValue(row, "S5", row % 3 == 0);
+            }
+            writer.write(tablet);
+        }
+    }
+
+    /**
+     * 测试导出全部列后用 ParserCSV 解析，得到与写入值一致的字符串
+     */
+    @Test
+    public void testRoundTrip() throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        File output = new File(dir, "all.csv");
+        CsvExporter.Part part = new CsvExporter(tableName).columns(columnNameList).export(f, output);
+        assert part.getRowNum() == 20 : "Actual row number: " + part.getRowNum();
+        assert part.getByteNum() == output.length() : "Actual byte number: " + part.getByteNum();
+
+        List<Object[]> rows = parse(output, ',');
+        assert Arrays.toString(rows.get(0)).equalsIgnoreCase("[Time, Tag1, S1, S2, S3, S4, S5]")
+                : "列名：" + Arrays.toString(rows.get(0));
+        List<String> actual = new ArrayList<>();
+        for (Object[] row : rows.subList(1, rows.size())) {
+            actual.add(Arrays.toString(row));
+        }
+        List<String> expected = new ArrayList<>();
+        for (int row = 0; row < 20; row++) {
+            expected.add(Arrays.toString(new Object[]{String.valueOf(row), row % 2 == 0 ? "a" : "b",
+                    row % 5 != 4 ? String.valueOf(row) : "", String.valueOf(row * 0.1), "text,\"" + row + "\"",
+                    LocalDate.of(2024, 1, 1).plusDays(row).toString(), String.valueOf(row % 3 == 0)}));
+        }
+        // 查询结果按设备排列，比较时忽略顺序
+        Collections.sort(actual);
+        Collections.sort(expected);
+        assert actual.equals(expected) : "Actual rows: " + actual;
+    }
+
+    /**
+     * 测试时间范围、TAG 过滤、投影、分隔符和不输出列名
+     */
+    @Test
+    public void testFilterAndProjection()
+            throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        File output = new File(dir, "filtered.csv");
+        CsvExporter.Part part = new CsvExporter(tableName)
+                .columns("S1")
+                .timeRange(3, 12)
+                .tagFilter(new TagFilterBuilder(tableSchema).eq("Tag1", "a"))
+                .delimiter(';')
+                .header(false)
+                .export(f, output);
+        assert part.getRowNum() == 5 : "Actual row number: " + part.getRowNum();
+
+        List<Object[]> rows = parse(output, ';');
+        Object[][] expected = {{"4", ""}, {"6", "6"}, {"8", "8"}, {"10", "10"}, {"12", "12"}};
+        assert rows.size() == expected.length : "Actual row number: " + rows.size();
+        for (int i = 0; i < expected.length; i++) {
+            assert Arrays.equals(rows.get(i), expected[i]) : "第 " + i + " 行：" + Arrays.toString(rows.get(i));
+        }
+    }
+
+    /**
+     * 测试按时间分段并行导出：各段时间范围相连且不重叠，合并后与单个文件的导出结果一致
+     */
+    @Test
+    public void testSplit() throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        File single = new File(dir, "single.csv");
+        new CsvExporter(tableName).header(false).export(f, single);
+        List<String> expected = new ArrayList<>();
+        for (Object[] row : parse(single, ',')) {
+            expected.add(Arrays.toString(row));
+        }
+
+        List<CsvExporter.Part> parts = new CsvExporter(tableName).header(false).export(f, new File(dir, "split.csv"), 3);
+        assert parts.size() == 3 : "Actual part number: " + parts.size();
+        assert parts.get(0).getStartTime() == 0 && parts.get(2).getEndTime() == 19 : "分段：" + parts;
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            CsvExporter.Part part = parts.get(i);
+            assert part.getFile().getName().equals("split-" + i + ".csv") : "文件名：" + part.getFile();
+            if (i > 0) {
+                assert part.getStartTime() == parts.get(i - 1).getEndTime() + 1 : "分段：" + parts;
+            }
+            for (Object[] row : parse(part.getFile(), ',')) {
+                long time = Long.parseLong((String) row[0]);
+                assert time >= part.getStartTime() && time <= part.getEndTime() : part + " 中的时间：" + time;
+                actual.add(Arrays.toString(row));
+            }
+        }
+        Collections.sort(actual);
+        Collections.sort(expected);
+        assert actual.equals(expected) : "Actual rows: " + actual;
+    }
+
+    private static List<Object[]> parse(File file, char delimiter) throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        Iterator<Object[]> iterator = new ParserCSV().load(file.getPath(), delimiter);
+        while (iterator.hasNext()) {
+            rows.add(iterator.next());
+        }
+        return rows;
+    }
+}
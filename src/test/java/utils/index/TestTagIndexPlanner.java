@@ -0,0 +1,168 @@
+package utils.index;
+
+import benchmark.TableFileGenerator;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestTagIndexPlanner {
+
+    private final File dir = new File("data/tsfile/tag_index_test");
+    private final List<File> files = new ArrayList<>();
+    private final TagIndexPlanner planner = new TagIndexPlanner();
+
+    /**
+     * 生成 4 个文件：第 i 个文件包含 device_(3i) .. device_(3i+2)，时间范围为 [1000i, 1000i + 900]；
+     * 第 2 个文件的 tag1 使用布隆过滤器；第 3 个文件没有索引
+     */
+    @BeforeClass
+    public void GenerateTsFile() throws IOException, WriteProcessException {
+        dir.mkdirs();
+        for (int i = 0; i < 4; i++) {
+            TableFileGenerator generator = new TableFileGenerator()
+                    .firstDevice(i * 3)
+                    .deviceNum(3)
+                    .rowsPerDevice(10)
+                    .timeInterval(100)
+                    .startTime(i * 1000L);
+            File f = new File(dir, "file_" + i + ".tsfile");
+            if (f.exists()) {
+                Files.delete(f.toPath());
+            }
+            Files.deleteIfExists(TagIndex.sidecarOf(f).toPath());
+            TableSchema tableSchema = generator.tableSchema();
+            TagIndexBuilder indexBuilder = new TagIndexBuilder(tableSchema, i == 2 ? 1 : 4096, 4096);
+            try (ITsFileWriter writer = new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build()) {
+                generator.writeTablets(indexBuilder.wrap(writer::write));
+            }
+            if (i != 3) {
+                indexBuilder.writeSidecar(f);
+            }
+            files.add(f);
+        }
+    }
+
+    /**
+     * 测试索引内容
+     */
+    @Test
+    public void testIndexContent() throws IOException {
+        TagIndex index = TagIndex.read(TagIndex.sidecarOf(files.get(1)));
+        assert index.getTableName().equals("table1");
+        assert index.getTagColumns().equals(Arrays.asList("tag0", "tag1")) : index.getTagColumns();
+        assert index.getMinTime() == 1000 && index.getMaxTime() == 1900 : index;
+        assert index.columnIndex("TAG0").getDictionary().equals(Arrays.asList("device_3", "device_4", "device_5"));
+        assert index.columnIndex("tag1").getDictionary().equals(Arrays.asList("tag1_0", "tag1_1"));
+        assert index.getDevices().size() == 3 : index;
+        assert index.getDevices().get(0).getTags().equals(Arrays.asList("device_3", "tag1_1"));
+        assert index.matches(files.get(1));
+
+        TagIndex bloomIndex = TagIndex.read(TagIndex.sidecarOf(files.get(2)));
+        assert !bloomIndex.columnIndex("tag1").isDictionary();
+        assert bloomIndex.columnIndex("tag1").mayContain("tag1_0");
+        assert !bloomIndex.columnIndex("tag1").mayContain("tag1_2");
+    }
+
+    /**
+     * 测试等于、IN、范围和组合条件的文件及设备筛选，没有索引的文件总是保留
+     */
+    @Test
+    public void testPlan() {
+        assertPlan(TagPredicate.eq("tag0", "device_4"), Long.MIN_VALUE, Long.MAX_VALUE,
+                Arrays.asList("file_1.tsfile:[[device_4, tag1_0]]", "file_3.tsfile:null"));
+        assertPlan(TagPredicate.in("tag0", "device_0", "device_7", "device_100"), Long.MIN_VALUE, Long.MAX_VALUE,
+                Arrays.asList("file_0.tsfile:[[device_0, tag1_0]]", "file_2.tsfile:[[device_7, tag1_1]]",
+                        "file_3.tsfile:null"));
+        assertPlan(TagPredicate.range("tag0", "device_4", false, "device_6", true), Long.MIN_VALUE, Long.MAX_VALUE,
+                Arrays.asList("file_1.tsfile:[[device_5, tag1_1]]", "file_2.tsfile:[[device_6, tag1_0]]",
+                        "file_3.tsfile:null"));
+        assertPlan(TagPredicate.and(TagPredicate.eq("tag1", "tag1_1"), TagPredicate.between("tag0", "device_0", "device_2")),
+                Long.MIN_VALUE, Long.MAX_VALUE,
+                Arrays.asList("file_0.tsfile:[[device_1, tag1_1]]", "file_3.tsfile:null"));
+        assertPlan(TagPredicate.or(TagPredicate.eq("tag0", "device_1"), TagPredicate.eq("tag0", "device_8")),
+                Long.MIN_VALUE, Long.MAX_VALUE,
+                Arrays.asList("file_0.tsfile:[[device_1, tag1_1]]", "file_2.tsfile:[[device_8, tag1_0]]",
+                        "file_3.tsfile:null"));
+        // 不存在的值
+        assertPlan(TagPredicate.eq("tag1", "tag1_9"), Long.MIN_VALUE, Long.MAX_VALUE,
+                Collections.singletonList("file_3.tsfile:null"));
+    }
+
+    /**
+     * 测试时间范围筛选
+     */
+    @Test
+    public void testTimeRange() {
+        assertPlan(null, 1500, 2100, Arrays.asList(
+                "file_1.tsfile:[[device_3, tag1_1], [device_4, tag1_0], [device_5, tag1_1]]",
+                "file_2.tsfile:[[device_6, tag1_0], [device_7, tag1_1], [device_8, tag1_0]]",
+                "file_3.tsfile:null"));
+        assertPlan(TagPredicate.eq("tag0", "device_0"), 1000, 2000, Collections.singletonList("file_3.tsfile:null"));
+    }
+
+    /**
+     * 测试查询索引没有覆盖的表时文件都保留：一个 TsFile 中可能还有其他表
+     */
+    @Test
+    public void testOtherTable() {
+        List<String> actual = new ArrayList<>();
+        for (TagIndexPlanner.FilePlan plan : planner.plan(files, "table2", TagPredicate.eq("tag0", "device_100"),
+                Long.MIN_VALUE, Long.MAX_VALUE)) {
+            actual.add(plan.getFile().getName() + ":" + plan.getDevices());
+        }
+        assert actual.equals(Arrays.asList("file_0.tsfile:null", "file_1.tsfile:null", "file_2.tsfile:null",
+                "file_3.tsfile:null")) : "实际结果：" + actual;
+    }
+
+    /**
+     * 测试 TsFile 被重写而索引没有更新时，过期的索引不被使用，文件总是保留
+     */
+    @Test
+    public void testStaleIndex() throws IOException, WriteProcessException {
+        File f = new File(dir, "stale.tsfile");
+        Files.deleteIfExists(f.toPath());
+        Files.deleteIfExists(TagIndex.sidecarOf(f).toPath());
+        TableFileGenerator generator = new TableFileGenerator().deviceNum(3).rowsPerDevice(10);
+        TableSchema tableSchema = generator.tableSchema();
+        TagIndexBuilder indexBuilder = new TagIndexBuilder(tableSchema);
+        try (ITsFileWriter writer = new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build()) {
+            generator.writeTablets(indexBuilder.wrap(writer::write));
+        }
+        indexBuilder.writeSidecar(f);
+        List<File> staleFiles = Collections.singletonList(f);
+        assert planner.plan(staleFiles, "table1", TagPredicate.eq("tag0", "device_100"), Long.MIN_VALUE,
+                Long.MAX_VALUE).isEmpty();
+
+        long oldModifiedTime = f.lastModified();
+        Files.delete(f.toPath());
+        TableFileGenerator rewritten = new TableFileGenerator().firstDevice(100).deviceNum(3).rowsPerDevice(10);
+        try (ITsFileWriter writer = new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build()) {
+            rewritten.writeTablets(writer::write);
+        }
+        // 文件长度可能相同，直接设置修改时间以保证与索引记录的不同，不依赖文件系统的时间精度
+        Files.setLastModifiedTime(f.toPath(), FileTime.fromMillis(oldModifiedTime + 2000));
+        List<TagIndexPlanner.FilePlan> plans = planner.plan(staleFiles, "table1",
+                TagPredicate.eq("tag0", "device_100"), Long.MIN_VALUE, Long.MAX_VALUE);
+        assert plans.size() == 1 && plans.get(0).getDevices() == null : "实际结果：" + plans.size();
+    }
+
+    private void assertPlan(TagPredicate predicate, long startTime, long endTime, List<String> expected) {
+        List<String> actual = new ArrayList<>();
+        for (TagIndexPlanner.FilePlan plan : planner.plan(files, "TABLE1", predicate, startTime, endTime)) {
+            actual.add(plan.getFile().getName() + ":" + plan.getDevices());
+        }
+        assert actual.equals(expected) : "条件 " + predicate + " 实际结果：" + actual + "，预期结果：" + expected;
+    }
+}
@@ -0,0 +1,236 @@
+package utils.ingest;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.file.metadata.ColumnSchemaBuilder;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class TestIngestServer {
+
+    private final String tableName = "table1";
+    private final List<String> columnNameList = Arrays.asList("Tag1", "S1", "S2", "S3", "S4");
+    private final TableSchema tableSchema = new TableSchema(tableName, Arrays.asList(
+            new ColumnSchemaBuilder().name("Tag1").dataType(TSDataType.STRING).category(ColumnCategory.TAG).build(),
+            new ColumnSchemaBuilder().name("S1").dataType(TSDataType.INT64).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S2").dataType(TSDataType.DOUBLE).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S3").dataType(TSDataType.TEXT).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S4").dataType(TSDataType.BOOLEAN).category(ColumnCategory.FIELD).build()));
+
+    /**
+     * 测试行协议的解析和校验：不合法的行立即返回 ERR，合法的行在写入 ITsFileWriter 后返回 OK，
+     * 客户端关闭输出流后服务端在全部确认后关闭连接
+     */
+    @Test
+    public void testLineProtocol() throws Exception {
+        File dir = cleanDirectory("data/tsfile/ingest_test_1");
+        IngestServer server = new IngestServer(dir).register(tableSchema).batchSize(2).lingerMillis(20)
+                .ackOnBuffer(true).start();
+        List<String> responses;
+        try {
+            responses = send(server.getPort(), Arrays.asList(
+                    "table1,tag1=d1 s1=1,s2=1.5 1",
+                    "TABLE1,TAG1=d1 S1=2,s3=\"a b,c\\\"\" 2",
+                    "table1,tag1=d1 s1=x 3",
+                    "",
+                    "# comment",
+                    "table2,tag1=d1 s1=1 4",
+                    "table1,s1=1 s2=1 5",
+                    "table1,tag1=d1 s1=1,s1=2 6",
+                    "table1,tag1=d\\ 2 s4=true 7",
+                    "table1,tag1=d1 s5=1 8",
+                    "table1,tag1=d1",
+                    "table1,tag1=d1 s2=9 9"));
+        } finally {
+            server.close();
+        }
+        List<String> errors = new ArrayList<>();
+        long acked = 0;
+        for (String response : responses) {
+            if (response.startsWith("OK ")) {
+                acked += Long.parseLong(response.substring(3));
+            } else {
+                errors.add(response);
+            }
+        }
+        assert errors.equals(Arrays.asList(
+                "ERR 3 Invalid INT64 value for column s1: x",
+                "ERR 6 Unknown table: table2",
+                "ERR 7 Column s1 is a FIELD column",
+                "ERR 8 Duplicate column: s1",
+                "ERR 10 Unknown column: s5",
+                "ERR 11 Expected ' ' at position 14")) : "实际报错：" + errors;
+        assert acked == 4 : "确认的行数：" + acked;
+        assert server.getAcceptedRowNum() == 4 && server.getRejectedLineNum() == 6
+                : "接收行数：" + server.getAcceptedRowNum() + "，丢弃行数：" + server.getRejectedLineNum();
+
+        List<String> rows = readAll(server.getClosedFiles());
+        assert rows.equals(Arrays.asList(
+                "d 2,7,null,null,null,true",
+                "d1,1,1,1.5,null,null",
+                "d1,2,2,null,a b,c\",null",
+                "d1,9,null,9.0,null,null")) : rows;
+    }
+
+    /**
+     * 测试多个客户端并发写入、按行数和时间滚动文件以及默认在文件关闭后才确认
+     */
+    @Test
+    public void testConcurrentClientsWithRolling() throws Exception {
+        File dir = cleanDirectory("data/tsfile/ingest_test_2");
+        int clientNum = 8;
+        int rowsPerClient = 5000;
+        IngestServer server = new IngestServer(dir).register(tableSchema)
+                .batchSize(512)
+                .maxRowsPerFile(10000)
+                .rollIntervalMillis(500)
+                .start();
+        long acked = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(clientNum);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int c = 0; c < clientNum; c++) {
+                List<String> lines = new ArrayList<>(rowsPerClient);
+                for (int r = 0; r < rowsPerClient; r++) {
+                    lines.add("table1,tag1=device_" + c + " s1=" + r + ",s2=" + r * 0.5 + " " + r);
+                }
+                futures.add(executor.submit(() -> send(server.getPort(), lines)));
+            }
+            for (Future<List<String>> future : futures) {
+                for (String response : future.get()) {
+                    assert response.startsWith("OK ") : "实际应答：" + response;
+                    acked += Long.parseLong(response.substring(3));
+                }
+            }
+        } finally {
+            executor.shutdown();
+            server.close();
+        }
+        long rowNum = (long) clientNum * rowsPerClient;
+        assert acked == rowNum : "确认的行数：" + acked;
+        assert server.getWrittenRowNum() == rowNum && server.getLateRollNum() == 0
+                : "写入行数：" + server.getWrittenRowNum() + "，提前滚动次数：" + server.getLateRollNum();
+        assert server.getClosedFiles().size() >= 4 : "文件数：" + server.getClosedFiles().size();
+        assert readAll(server.getClosedFiles()).size() == rowNum
+                : "Actual row number: " + readAll(server.getClosedFiles()).size();
+    }
+
+    /**
+     * 测试两个客户端在不同批次中写入同一设备时间戳重叠的数据：后一个批次中的乱序行写入新文件，确认的行都能读出
+     */
+    @Test
+    public void testOverlappingTimestamps() throws Exception {
+        File dir = cleanDirectory("data/tsfile/ingest_test_3");
+        IngestServer server = new IngestServer(dir).register(tableSchema).batchSize(10).ackOnBuffer(true)
+                .start();
+        long acked = 0;
+        try {
+            for (int c = 0; c < 2; c++) {
+                List<String> lines = new ArrayList<>();
+                // 第二个客户端的时间戳 50~149 与第一个客户端的 0~99 重叠
+                for (int t = c * 50; t < c * 50 + 100; t++) {
+                    lines.add("table1,tag1=d1 s1=" + (c * 1000 + t) + " " + t);
+                }
+                for (String response : send(server.getPort(), lines)) {
+                    assert response.startsWith("OK ") : "实际应答：" + response;
+                    acked += Long.parseLong(response.substring(3));
+                }
+            }
+        } finally {
+            server.close();
+        }
+        assert acked == 200 : "确认的行数：" + acked;
+        assert server.getWrittenRowNum() == 200 : "写入行数：" + server.getWrittenRowNum();
+        assert server.getLateRollNum() == 1 && server.getClosedFiles().size() == 2
+                : "提前滚动次数：" + server.getLateRollNum() + "，文件数：" + server.getClosedFiles().size();
+        List<String> rows = readAll(server.getClosedFiles());
+        assert rows.size() == 200 : "Actual row number: " + rows.size();
+        for (int t = 50; t < 100; t++) {
+            assert rows.contains("d1," + t + "," + t + ",null,null,null") : "缺少第一个客户端的行：" + t;
+            assert rows.contains("d1," + t + "," + (1000 + t) + ",null,null,null") : "缺少第二个客户端的行：" + t;
+        }
+    }
+
+    /**
+     * 发送所有行后关闭输出流，读取应答直到服务端关闭连接
+     */
+    private List<String> send(int port, List<String> lines) throws IOException {
+        List<String> responses = new ArrayList<>();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+            socket.shutdownOutput();
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String response;
+            while ((response = reader.readLine()) != null) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    private File cleanDirectory(String path) throws IOException {
+        File dir = new File(path);
+        if (dir.exists()) {
+            try (Stream<Path> paths = Files.walk(dir.toPath())) {
+                for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(p);
+                }
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * 读出所有文件的数据并排序，每行格式为 Tag1,Time,S1,S2,S3,S4
+     */
+    private List<String> readAll(List<File> files) throws IOException, ReadProcessException, NoTableException,
+            NoMeasurementException {
+        List<String> rows = new ArrayList<>();
+        for (File f : files) {
+            try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+                 ResultSet resultSet = reader.query(tableName, columnNameList, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                while (resultSet.next()) {
+                    rows.add(resultSet.getString("Tag1") + "," + resultSet.getLong("Time") + ","
+                            + (resultSet.isNull("S1") ? "null" : resultSet.getLong("S1")) + ","
+                            + (resultSet.isNull("S2") ? "null" : resultSet.getDouble("S2")) + ","
+                            + (resultSet.isNull("S3") ? "null" : resultSet.getString("S3")) + ","
+                            + (resultSet.isNull("S4") ? "null" : resultSet.getBoolean("S4")));
+                }
+            }
+        }
+        rows.sort(null);
+        return rows;
+    }
+}
@@ -0,0 +1,90 @@
+package utils.metadata;
+
+import benchmark.TableFileGenerator;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class TestTsFileMetadataInspector {
+
+    private final File directory = new File("data/tsfile/inspector");
+    private final File f1 = new File(directory, "inspector1.tsfile");
+    private final File f2 = new File(directory, "sub/inspector2.tsfile");
+    private final File badFile = new File(directory, "bad.tsfile");
+    private final TableFileGenerator generator = new TableFileGenerator()
+            .deviceNum(3)
+            .rowsPerDevice(100)
+            .tagColumnNum(2)
+            .fieldColumnNum(2);
+
+    @BeforeTest
+    public void GenerateTsFile() throws IOException, WriteProcessException {
+        generator.generate(f1);
+        generator.generate(f2);
+        Files.write(badFile.toPath(), "not a tsfile".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 测试单个文件的元数据摘要
+     */
+    @Test
+    public void testInspect() throws IOException {
+        TsFileSummary summary = new TsFileMetadataInspector().inspect(f1);
+        assert summary.getError() == null;
+        assert summary.getFileSize() == f1.length();
+        assert summary.getTables().size() == 1 : "表数量不一致：" + summary.getTables().size();
+
+        TsFileSummary.TableSummary table = summary.getTable(generator.getTableName());
+        assert table != null : "找不到表：" + generator.getTableName();
+        assert table.getColumns().size() == 4 : "列数量不一致：" + table.getColumns().size();
+        assert table.getColumns().get(0).getCategory().equals("TAG");
+        assert table.getColumns().get(2).getCategory().equals("FIELD");
+        assert table.getColumns().get(2).getDataType().equals("DOUBLE");
+        assert table.getColumns().get(2).getEncoding() != null;
+        assert table.getColumns().get(2).getCompression() != null;
+
+        assert table.getDevices().size() == 3 : "设备数量不一致：" + table.getDevices().size();
+        assert table.rowCount() == generator.totalRows() : "行数不一致：" + table.rowCount();
+        for (TsFileSummary.DeviceSummary device : table.getDevices()) {
+            assert device.getStartTime() == 0;
+            assert device.getEndTime() == generator.endTime();
+            assert device.getColumns().size() == 2 : "设备列数量不一致：" + device.getColumns().size();
+            for (TsFileSummary.ColumnSummary column : device.getColumns()) {
+                assert column.getCount() == 100 : "列点数不一致：" + column.getCount();
+            }
+        }
+    }
+
+    /**
+     * 测试并行检查目录，损坏的文件只记录错误信息
+     */
+    @Test
+    public void testInspectDirectory() throws IOException {
+        List<TsFileSummary> summaries = new TsFileMetadataInspector().inspectDirectory(directory.toPath(), 2);
+        assert summaries.size() == 3 : "文件数量不一致：" + summaries.size();
+        int errorNum = 0;
+        for (TsFileSummary summary : summaries) {
+            if (summary.getError() != null) {
+                assert summary.getPath().endsWith("bad.tsfile");
+                errorNum++;
+            } else {
+                assert summary.getTable(generator.getTableName()).rowCount() == generator.totalRows();
+            }
+        }
+        assert errorNum == 1 : "出错文件数量不一致：" + errorNum;
+
+        StringWriter writer = new StringWriter();
+        TsFileMetadataInspector.writeJson(summaries, writer);
+        String json = writer.toString();
+        assert json.startsWith("{\"files\":[") : json;
+        assert json.contains("\"rowCount\":" + generator.totalRows()) : json;
+        assert json.contains("\"error\":") : json;
+    }
+}
@@ -0,0 +1,46 @@
+package utils.profiling;
+
+import jdk.jfr.FlightRecorder;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 为每次测试方法调用记录一次 JFR，摘要写入 -Djfr.dir 指定的目录（默认 target/jfr-reports），见 {@link JfrSession}。
+ * 通过 mvn test -P jfr 注册，@BeforeClass 等配置方法不记录；同一方法多次调用（数据驱动）时名称后加调用序号。
+ * 记录是整个 JVM 范围的，测试需要串行执行。
+ */
+public class JfrTestListener implements IInvokedMethodListener {
+
+    private final Map<ITestResult, JfrSession> sessions = new IdentityHashMap<>();
+    private final Map<String, Integer> invocations = new HashMap<>();
+
+    @Override
+    public synchronized void beforeInvocation(IInvokedMethod method, ITestResult testResult) {
+        if (!method.isTestMethod() || !FlightRecorder.isAvailable()) {
+            return;
+        }
+        String name = testResult.getMethod().getQualifiedName();
+        int invocation = invocations.merge(name, 1, Integer::sum);
+        sessions.put(testResult, JfrSession.start(invocation == 1 ? name : name + "[" + invocation + "]"));
+    }
+
+    @Override
+    public synchronized void afterInvocation(IInvokedMethod method, ITestResult testResult) {
+        JfrSession session = sessions.remove(testResult);
+        if (session == null) {
+            return;
+        }
+        try {
+            session.stop();
+        } catch (IOException e) {
+            // 诊断信息写出失败不影响测试结果
+            System.err.println("Failed to write JFR summary of " + testResult.getMethod().getQualifiedName() + ": " + e);
+        }
+    }
+}
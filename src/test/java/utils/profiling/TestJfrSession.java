@@ -0,0 +1,72 @@
+package utils.profiling;
+
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestJfrSession {
+
+    private final File dir = new File("data/jfr_test");
+
+    /**
+     * 测试记录一段分配内存、读写文件并触发 GC 的负载后，摘要中包含对应的分配位置、文件和 GC
+     */
+    @Test
+    public void testReport() throws IOException {
+        dir.mkdirs();
+        for (String name : new String[]{"index.md", "workload.md", "workload.jfr"}) {
+            Files.deleteIfExists(new File(dir, name).toPath());
+        }
+        File data = new File(dir, "data.bin");
+        JfrSession session = JfrSession.start("workload", dir);
+        allocate();
+        try (FileOutputStream output = new FileOutputStream(data)) {
+            for (int i = 0; i < 100; i++) {
+                output.write(new byte[10_000]);
+            }
+        }
+        byte[] buffer = new byte[65536];
+        try (FileInputStream input = new FileInputStream(data)) {
+            while (input.read(buffer) > 0) {
+                // 只统计读取
+            }
+        }
+        System.gc();
+        JfrReport report = session.stop();
+
+        assert report.getAllocatedBytes() > 0 : "没有分配采样";
+        assert report.topAllocationSites(5).get(0).getKey().startsWith("[B @ utils.profiling.TestJfrSession.allocate")
+                : "分配热点：" + report.topAllocationSites(5);
+        assert report.gcCount() > 0 : "没有记录到 GC";
+        assert report.topFileWrites(10).stream().anyMatch(
+                c -> c.getKey().endsWith("data.bin") && c.getValue() == 1_000_000)
+                : "文件写入：" + report.topFileWrites(10);
+        assert report.fileReadBytes() >= 1_000_000 : "读取字节数：" + report.fileReadBytes();
+
+        String summary = new String(Files.readAllBytes(new File(dir, "workload.md").toPath()), StandardCharsets.UTF_8);
+        assert summary.startsWith("# workload") && summary.contains("## GC 停顿") : summary;
+        List<String> index = Files.readAllLines(new File(dir, "index.md").toPath(), StandardCharsets.UTF_8);
+        assert index.size() == 3 && index.get(2).startsWith("| [workload](workload.md) |") : index;
+        assert new File(dir, "workload.jfr").length() > 0 : "记录文件为空";
+    }
+
+    /**
+     * 分配约 200 MB 的 byte[]，只保留最近的一部分
+     */
+    private static void allocate() {
+        List<byte[]> retained = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            retained.add(new byte[10_000]);
+            if (retained.size() > 1000) {
+                retained.clear();
+            }
+        }
+    }
+}
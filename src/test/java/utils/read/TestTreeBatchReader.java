@@ -0,0 +1,198 @@
+package utils.read;
+
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.enums.TSEncoding;
+import org.apache.tsfile.read.TsFileSequenceReader;
+import org.apache.tsfile.read.common.Path;
+import org.apache.tsfile.read.filter.factory.TimeFilterApi;
+import org.apache.tsfile.utils.Binary;
+import org.apache.tsfile.write.TsFileWriter;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.schema.IMeasurementSchema;
+import org.apache.tsfile.write.schema.MeasurementSchema;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class TestTreeBatchReader {
+
+    private final File f = new File("data/tsfile/tree_batch_reader.tsfile");
+    private final String device1 = "root.db1.d1";
+    private final String device2 = "root.db1.d2";
+    private final List<Path> paths = Arrays.asList(
+            new Path(device1, "m1", true),
+            new Path(device1, "m2", true),
+            new Path(device1, "m3", true),
+            new Path(device2, "m1", true));
+
+    /**
+     * d1.m1 (INT32) 只有偶数行，d1.m2 (DOUBLE) 只有奇数行，d1.m3 (TEXT) 每行都有，时间为 0..19；
+     * d2.m1 (INT64) 时间为 10..29
+     */
+    @BeforeClass
+    public void GenerateTsFile() throws IOException, WriteProcessException {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        f.getParentFile().mkdirs();
+        try (TsFileWriter writer = new TsFileWriter(f)) {
+            List<IMeasurementSchema> schemas1 = Arrays.asList(
+                    new MeasurementSchema("m1", TSDataType.INT32, TSEncoding.PLAIN),
+                    new MeasurementSchema("m2", TSDataType.DOUBLE, TSEncoding.PLAIN),
+                    new MeasurementSchema("m3", TSDataType.TEXT, TSEncoding.PLAIN));
+            List<IMeasurementSchema> schemas2 = Arrays.asList(
+                    new MeasurementSchema("m1", TSDataType.INT64, TSEncoding.PLAIN));
+            for (IMeasurementSchema schema : schemas1) {
+                writer.registerTimeseries(device1, schema);
+            }
+            writer.registerTimeseries(device2, schemas2.get(0));
+
+            Tablet tablet1 = new Tablet(device1, schemas1);
+            for (int r = 0; r < 20; r++) {
+                tablet1.addTimestamp(r, r);
+                if (r % 2 == 0) {
+                    tablet1.addValue("m1", r, r * 10);
+                } else {
+                    tablet1.addValue("m2", r, r * 0.5);
+                }
+                tablet1.addValue("m3", r, "v" + r);
+            }
+            writer.writeTree(tablet1);
+
+            Tablet tablet2 = new Tablet(device2, schemas2);
+            for (int r = 0; r < 20; r++) {
+                tablet2.addTimestamp(r, r + 10);
+                tablet2.addValue("m1", r, (r + 10) * 100L);
+            }
+            writer.writeTree(tablet2);
+        }
+    }
+
+    /**
+     * 测试全部数据按时间对齐，批次大小小于总行数
+     */
+    @Test
+    public void testReadAll() throws IOException {
+        try (TsFileSequenceReader reader = new TsFileSequenceReader(f.getPath());
+             TreeBatchReader batchReader = new TreeBatchReader(reader, paths, null, 7, null)) {
+            List<String> rows = readAll(batchReader);
+            assert rows.size() == 30 : "Actual row number: " + rows.size() + ", expected row number: 30";
+            for (int t = 0; t < 30; t++) {
+                assert rows.get(t).equals(expectRow(t)) : "实际：" + rows.get(t) + "，预期：" + expectRow(t);
+            }
+        }
+    }
+
+    /**
+     * 测试时间过滤条件和并行读取
+     */
+    @Test
+    public void testTimeFilterInParallel() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (TsFileSequenceReader reader = new TsFileSequenceReader(f.getPath());
+             TreeBatchReader batchReader = new TreeBatchReader(reader, paths, TimeFilterApi.between(5, 14), 4, executor)) {
+            List<String> rows = readAll(batchReader);
+            assert rows.size() == 10 : "Actual row number: " + rows.size() + ", expected row number: 10";
+            for (int t = 5; t <= 14; t++) {
+                assert rows.get(t - 5).equals(expectRow(t)) : "实际：" + rows.get(t - 5) + "，预期：" + expectRow(t);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试 close 等待正在执行的解码任务结束后才返回，之后可以安全地关闭文件读取器
+     */
+    @Test
+    public void testCloseWaitsForPrefetch() throws IOException, InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 解码任务开始执行后阻塞，直到 release
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try (TsFileSequenceReader reader = new TsFileSequenceReader(f.getPath())) {
+            TreeBatchReader batchReader = new TreeBatchReader(reader, paths, null, 4, executor);
+            started.await();
+            Thread closer = new Thread(batchReader::close, "tree-batch-reader-closer");
+            closer.start();
+            closer.join(200);
+            assert closer.isAlive() : "解码任务结束前 close 就返回了";
+            release.countDown();
+            closer.join(10000);
+            assert !closer.isAlive() : "解码任务结束后 close 没有返回";
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 测试序列不存在
+     */
+    @Test
+    public void testNotExistPath() throws IOException {
+        try (TsFileSequenceReader reader = new TsFileSequenceReader(f.getPath())) {
+            new TreeBatchReader(reader, Arrays.asList(new Path(device1, "m4", true)), null);
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Timeseries does not exist: root.db1.d1.m4") : "实际报错：" + e.getMessage();
+        }
+    }
+
+    /**
+     * 每行格式为 Time,d1.m1,d1.m2,d1.m3,d2.m1
+     */
+    private List<String> readAll(TreeBatchReader batchReader) throws IOException {
+        List<String> rows = new ArrayList<>();
+        while (batchReader.hasNext()) {
+            ColumnBatch batch = batchReader.next();
+            assert batch.getDataType(0) == TSDataType.INT32 && batch.getDataType(3) == TSDataType.INT64;
+            int[] m1 = batch.getInts(0);
+            double[] m2 = batch.getDoubles(1);
+            Binary[] m3 = batch.getBinaries(2);
+            long[] d2m1 = batch.getLongs(3);
+            for (int row = 0; row < batch.getSize(); row++) {
+                rows.add(batch.getTimes()[row] + ","
+                        + (batch.isNull(0, row) ? "null" : m1[row]) + ","
+                        + (batch.isNull(1, row) ? "null" : m2[row]) + ","
+                        + (batch.isNull(2, row) ? "null" : m3[row].getStringValue(StandardCharsets.UTF_8)) + ","
+                        + (batch.isNull(3, row) ? "null" : d2m1[row]));
+            }
+        }
+        return rows;
+    }
+
+    private String expectRow(int t) {
+        boolean inDevice1 = t < 20;
+        boolean inDevice2 = t >= 10;
+        return t + ","
+                + (inDevice1 && t % 2 == 0 ? t * 10 : "null") + ","
+                + (inDevice1 && t % 2 == 1 ? t * 0.5 : "null") + ","
+                + (inDevice1 ? "v" + t : "null") + ","
+                + (inDevice2 ? t * 100L : "null");
+    }
+}
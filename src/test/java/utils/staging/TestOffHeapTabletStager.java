@@ -0,0 +1,184 @@
+package utils.staging;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.ColumnSchemaBuilder;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestOffHeapTabletStager {
+
+    private final String tableName = "table1";
+    private final List<String> columnNameList = Arrays.asList("Tag1", "S1", "S2", "S3", "S4", "S5");
+    private final TableSchema tableSchema = new TableSchema(tableName, Arrays.asList(
+            new ColumnSchemaBuilder().name("Tag1").dataType(TSDataType.STRING).category(ColumnCategory.TAG).build(),
+            new ColumnSchemaBuilder().name("S1").dataType(TSDataType.INT64).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S2").dataType(TSDataType.DOUBLE).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S3").dataType(TSDataType.INT32).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S4").dataType(TSDataType.BOOLEAN).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S5").dataType(TSDataType.DATE).category(ColumnCategory.FIELD).build()));
+
+    /**
+     * 测试多种类型和空值，内存预算只有 256 字节的内存段 16 个，写入过程中会多次因预算不足而写出，
+     * 每次写出又按 Tablet 大小 16 拆分，验证读出的数据与写入的一致，且所有内存段都已归还
+     */
+    @Test
+    public void testRoundTrip() throws IOException, WriteProcessException, ReadProcessException,
+            NoTableException, NoMeasurementException {
+        File f = new File("data/tsfile/off_heap_stager_1.tsfile");
+        int rowNum = 1000;
+        List<String> expected = new ArrayList<>();
+        long drainNum;
+        try (OffHeapSegmentPool pool = new OffHeapSegmentPool(256 * 16, 256, true)) {
+            try (ITsFileWriter writer = newWriter(f);
+                 OffHeapTabletStager stager = new OffHeapTabletStager(writer::write, tableSchema, pool, 16)) {
+                int tag = stager.columnIndex("Tag1");
+                for (int r = 0; r < rowNum; r++) {
+                    stager.beginRow(r);
+                    String tagValue = "device_" + r % 3;
+                    Long s1 = r % 7 == 0 ? null : (long) r * 10;
+                    Double s2 = r % 5 == 0 ? null : r * 0.5;
+                    Integer s3 = r % 2 == 0 ? null : -r;
+                    Boolean s4 = r % 11 == 0 ? null : r % 3 == 0;
+                    LocalDate s5 = r % 13 == 0 ? null : LocalDate.of(2024, 1, 1).plusDays(r);
+                    stager.setString(tag, tagValue);
+                    stager.setValue(stager.columnIndex("S1"), s1);
+                    stager.setValue(stager.columnIndex("S2"), s2);
+                    stager.setValue(stager.columnIndex("S3"), s3);
+                    stager.setValue(stager.columnIndex("S4"), s4);
+                    stager.setValue(stager.columnIndex("S5"), s5);
+                    expected.add(tagValue + "," + r + "," + s1 + "," + s2 + "," + s3 + "," + s4 + "," + s5);
+                }
+                assert pool.getUsedBytes() <= pool.getMemoryBudget() : "超出内存预算：" + pool.getUsedBytes();
+                drainNum = stager.getDrainNum();
+            }
+            assert drainNum > 1 : "预期因内存预算不足多次写出，实际写出次数：" + drainNum;
+            assert pool.getOutstandingSegments() == 0 : "未归还的内存段数：" + pool.getOutstandingSegments();
+        }
+        expected.sort(null);
+        List<String> actual = readAll(f);
+        actual.sort(null);
+        assert actual.size() == rowNum : "Actual row number: " + actual.size();
+        assert actual.equals(expected) : "读出的数据与写入的不一致";
+    }
+
+    /**
+     * 测试 flush 后继续写入，以及行数不是 8 的倍数时空值位图的补齐
+     */
+    @Test
+    public void testFlush() throws IOException, WriteProcessException, ReadProcessException,
+            NoTableException, NoMeasurementException {
+        File f = new File("data/tsfile/off_heap_stager_2.tsfile");
+        try (OffHeapSegmentPool pool = new OffHeapSegmentPool(1024 * 1024, 1024, false);
+             ITsFileWriter writer = newWriter(f);
+             OffHeapTabletStager stager = new OffHeapTabletStager(writer::write, tableSchema, pool)) {
+            stager.beginRow(1);
+            stager.setString(0, "a");
+            stager.setLong(1, 10L);
+            stager.beginRow(2);
+            stager.setString(0, "a");
+            stager.setDouble(2, 2.5);
+            stager.flush();
+            assert stager.getStagedRows() == 0 : "flush 后仍有暂存的行：" + stager.getStagedRows();
+            assert pool.getUsedBytes() == 0 : "flush 后未归还内存段：" + pool.getUsedBytes();
+            stager.beginRow(3);
+            stager.setString(0, "a");
+            stager.setBoolean(4, true);
+        }
+        assert readAll(f).equals(Arrays.asList(
+                "a,1,10,null,null,null,null", "a,2,null,2.5,null,null,null", "a,3,null,null,null,true,null"))
+                : readAll(f);
+    }
+
+    /**
+     * 测试内存段泄漏统计和非法参数
+     */
+    @Test
+    public void testPoolAndIllegalInput() throws IOException, WriteProcessException {
+        OffHeapSegmentPool pool = new OffHeapSegmentPool(1024, 256, true);
+        ByteBuffer first = pool.tryAcquire();
+        ByteBuffer second = pool.tryAcquire();
+        pool.tryAcquire();
+        pool.tryAcquire();
+        assert pool.tryAcquire() == null : "超出内存预算时应返回 null";
+        pool.release(first);
+        assert pool.tryAcquire() == first : "归还的内存段应被复用";
+        pool.release(second);
+        assert pool.getAllocatedBytes() == 1024 : "已分配内存：" + pool.getAllocatedBytes();
+        assert pool.getOutstandingSegments() == 3 : "未归还的内存段数：" + pool.getOutstandingSegments();
+        pool.close();
+        assert pool.getOutstandingSegments() == 3 : "关闭后未归还的内存段数：" + pool.getOutstandingSegments();
+
+        try {
+            new OffHeapSegmentPool(1024, 100, false);
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("segmentSize must be a positive multiple of 8, but was 100")
+                    : "实际报错：" + e.getMessage();
+        }
+        try {
+            new OffHeapTabletStager(tablet -> {
+            }, tableSchema, new OffHeapSegmentPool(1024, 256, false));
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals(
+                    "memoryBudget of 1024 bytes is too small for 6 columns, at least 3584 bytes are required")
+                    : "实际报错：" + e.getMessage();
+        }
+        OffHeapTabletStager stager = new OffHeapTabletStager(tablet -> {
+        }, tableSchema, new OffHeapSegmentPool(4096, 256, false));
+        try {
+            stager.setLong(1, 10L);
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalStateException e) {
+            assert e.getMessage().equals("beginRow must be called before setting values") : "实际报错：" + e.getMessage();
+        } finally {
+            stager.close();
+        }
+    }
+
+    private ITsFileWriter newWriter(File f) throws IOException {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        f.getParentFile().mkdirs();
+        return new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build();
+    }
+
+    /**
+     * 读出全部数据，每行格式为 Tag1,Time,S1,S2,S3,S4,S5
+     */
+    private List<String> readAll(File f) throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        List<String> rows = new ArrayList<>();
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             ResultSet resultSet = reader.query(tableName, columnNameList, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            while (resultSet.next()) {
+                rows.add(resultSet.getString("Tag1") + "," + resultSet.getLong("Time") + ","
+                        + (resultSet.isNull("S1") ? "null" : resultSet.getLong("S1")) + ","
+                        + (resultSet.isNull("S2") ? "null" : resultSet.getDouble("S2")) + ","
+                        + (resultSet.isNull("S3") ? "null" : resultSet.getInt("S3")) + ","
+                        + (resultSet.isNull("S4") ? "null" : resultSet.getBoolean("S4")) + ","
+                        + (resultSet.isNull("S5") ? "null" : resultSet.getDate("S5")));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,145 @@
+package utils.write;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.ColumnSchemaBuilder;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.apache.tsfile.write.record.Tablet;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestDeviceSortingTabletWriter {
+
+    private final String tableName = "table1";
+    private final List<String> columnNameList = Arrays.asList("Tag1", "S1");
+    private final List<TSDataType> dataTypeList = Arrays.asList(TSDataType.STRING, TSDataType.INT64);
+    private final TableSchema tableSchema = new TableSchema(tableName, Arrays.asList(
+            new ColumnSchemaBuilder().name("Tag1").dataType(TSDataType.STRING).category(ColumnCategory.TAG).build(),
+            new ColumnSchemaBuilder().name("S1").dataType(TSDataType.INT64).category(ColumnCategory.FIELD).build()));
+
+    /**
+     * 测试设备交错、时间乱序、时间戳重复的输入，排序后按设备连续写出，重复时间戳保留最后一行
+     */
+    @Test
+    public void testSortAndDeduplicate() throws IOException, WriteProcessException, ReadProcessException,
+            NoTableException, NoMeasurementException {
+        File f = new File("data/tsfile/device_sorting_1.tsfile");
+        try (ITsFileWriter writer = newWriter(f);
+             DeviceSortingTabletWriter sortingWriter = new DeviceSortingTabletWriter(writer, tableSchema, 1024 * 1024)) {
+            sortingWriter.write(tablet(new String[]{"a", "b", "a"}, new long[]{3, 1, 1}, new Long[]{30L, 10L, 10L}));
+            sortingWriter.write(tablet(new String[]{"b", "a", "a"}, new long[]{2, 2, 2}, new Long[]{20L, 2L, null}));
+            sortingWriter.write(tablet(new String[]{"a"}, new long[]{2}, new Long[]{20L}));
+            assert sortingWriter.getDroppedRowNum() == 0;
+        }
+        assert readAll(f).equals(Arrays.asList("a,1,10", "a,2,20", "a,3,30", "b,1,10", "b,2,20")) : readAll(f);
+    }
+
+    /**
+     * 测试内存预算很小时每次写入都会刷出，默认拒绝包含不晚于已刷出时间戳的行的整个 Tablet，
+     * 报错中包含设备和行数，被拒绝的 Tablet 中的行都不写入，之后仍可继续写入
+     */
+    @Test
+    public void testRejectLateRows() throws IOException, WriteProcessException, ReadProcessException,
+            NoTableException, NoMeasurementException {
+        File f = new File("data/tsfile/device_sorting_2.tsfile");
+        try (ITsFileWriter writer = newWriter(f);
+             DeviceSortingTabletWriter sortingWriter = new DeviceSortingTabletWriter(writer, tableSchema, 1)) {
+            sortingWriter.write(tablet(new String[]{"a", "b"}, new long[]{5, 5}, new Long[]{50L, 50L}));
+            try {
+                sortingWriter.write(tablet(new String[]{"a", "b", "a", "b"}, new long[]{4, 6, 5, 5},
+                        new Long[]{40L, 60L, 55L, 55L}));
+                assert false : "预期报错但是没有报错";
+            } catch (WriteProcessException e) {
+                String expected = "Rejected tablet: 2 rows of device [a] are not later than its last written time 5, "
+                        + "1 rows of device [b] are not later than its last written time 5";
+                assert expected.equals(e.getMessage()) : "实际报错：" + e.getMessage();
+            }
+            sortingWriter.write(tablet(new String[]{"a", "b"}, new long[]{7, 6}, new Long[]{null, 60L}));
+            assert sortingWriter.getDroppedRowNum() == 0;
+        }
+        assert readAll(f).equals(Arrays.asList("a,5,50", "a,7,null", "b,5,50", "b,6,60")) : readAll(f);
+    }
+
+    /**
+     * 测试显式选择丢弃策略时，早于或等于已刷出时间戳的行被丢弃并计数，同一时间戳保留先刷出的行
+     */
+    @Test
+    public void testDropLateRows() throws IOException, WriteProcessException, ReadProcessException,
+            NoTableException, NoMeasurementException {
+        File f = new File("data/tsfile/device_sorting_4.tsfile");
+        try (ITsFileWriter writer = newWriter(f);
+             DeviceSortingTabletWriter sortingWriter = new DeviceSortingTabletWriter(writer, tableSchema, 1, 1024,
+                     DeviceSortingTabletWriter.LateRowPolicy.DROP)) {
+            sortingWriter.write(tablet(new String[]{"a", "b"}, new long[]{5, 5}, new Long[]{50L, 50L}));
+            sortingWriter.write(tablet(new String[]{"a", "b", "a", "b"}, new long[]{4, 6, 7, 5},
+                    new Long[]{40L, 60L, null, 55L}));
+            assert sortingWriter.getDroppedRowNum() == 2 : "丢弃行数不一致：" + sortingWriter.getDroppedRowNum();
+        }
+        assert readAll(f).equals(Arrays.asList("a,5,50", "a,7,null", "b,5,50", "b,6,60")) : readAll(f);
+    }
+
+    /**
+     * 测试列数与表结构不一致
+     */
+    @Test
+    public void testColumnMismatch() throws IOException, WriteProcessException {
+        File f = new File("data/tsfile/device_sorting_3.tsfile");
+        try (ITsFileWriter writer = newWriter(f);
+             DeviceSortingTabletWriter sortingWriter = new DeviceSortingTabletWriter(writer, tableSchema, 1024)) {
+            sortingWriter.write(new Tablet(Arrays.asList("Tag1"), Arrays.asList(TSDataType.STRING)));
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Tablet has 1 columns, but the table schema has 2") : "实际报错：" + e.getMessage();
+        }
+    }
+
+    private ITsFileWriter newWriter(File f) throws IOException {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        f.getParentFile().mkdirs();
+        return new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build();
+    }
+
+    private Tablet tablet(String[] tags, long[] times, Long[] values) {
+        Tablet tablet = new Tablet(columnNameList, dataTypeList);
+        for (int row = 0; row < tags.length; row++) {
+            tablet.addTimestamp(row, times[row]);
+            tablet.addValue(row, "Tag1", tags[row]);
+            if (values[row] != null) {
+                tablet.addValue(row, "S1", (long) values[row]);
+            }
+        }
+        return tablet;
+    }
+
+    /**
+     * 读出全部数据，每行格式为 Tag1,Time,S1
+     */
+    private List<String> readAll(File f) throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        List<String> rows = new ArrayList<>();
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             ResultSet resultSet = reader.query(tableName, columnNameList, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            while (resultSet.next()) {
+                rows.add(resultSet.getString("Tag1") + "," + resultSet.getLong("Time") + ","
+                        + (resultSet.isNull("S1") ? "null" : resultSet.getLong("S1")));
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,127 @@
+package utils.write;
+
+import org.apache.tsfile.enums.ColumnCategory;
+import org.apache.tsfile.enums.TSDataType;
+import org.apache.tsfile.exception.read.ReadProcessException;
+import org.apache.tsfile.exception.write.NoMeasurementException;
+import org.apache.tsfile.exception.write.NoTableException;
+import org.apache.tsfile.exception.write.WriteProcessException;
+import org.apache.tsfile.file.metadata.ColumnSchemaBuilder;
+import org.apache.tsfile.file.metadata.TableSchema;
+import org.apache.tsfile.read.query.dataset.ResultSet;
+import org.apache.tsfile.read.v4.ITsFileReader;
+import org.apache.tsfile.read.v4.TsFileReaderBuilder;
+import org.apache.tsfile.write.v4.ITsFileWriter;
+import org.apache.tsfile.write.v4.TsFileWriterBuilder;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestSparseTabletLoader {
+
+    private final String tableName = "table1";
+    private final List<String> columnNameList = Arrays.asList("Tag1", "S1", "S2", "S3");
+    private final TableSchema tableSchema = new TableSchema(tableName, Arrays.asList(
+            new ColumnSchemaBuilder().name("Tag1").dataType(TSDataType.STRING).category(ColumnCategory.TAG).build(),
+            new ColumnSchemaBuilder().name("S1").dataType(TSDataType.INT64).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S2").dataType(TSDataType.DOUBLE).category(ColumnCategory.FIELD).build(),
+            new ColumnSchemaBuilder().name("S3").dataType(TSDataType.STRING).category(ColumnCategory.FIELD).build()));
+
+    /**
+     * 测试稀疏行输入，每批 2 行，验证复用 Tablet 后上一批的值不会残留到下一批
+     */
+    @Test
+    public void testSparseRows() throws IOException, WriteProcessException, ReadProcessException,
+            NoTableException, NoMeasurementException {
+        File f = new File("data/tsfile/sparse_loader_1.tsfile");
+        try (ITsFileWriter writer = newWriter(f);
+             SparseTabletLoader loader = new SparseTabletLoader(writer::write, tableSchema, 2)) {
+            int tag = loader.columnIndex("Tag1");
+            int s1 = loader.columnIndex("S1");
+            int s2 = loader.columnIndex("S2");
+            int s3 = loader.columnIndex("S3");
+            loader.addRow(1, new int[]{tag, s1, s2, s3}, new Object[]{"a", 10L, 1.5, "x"});
+            loader.addRow(2, new int[]{tag, s1}, new Object[]{"a", 20L});
+            // 与 table.csv 第 15、16 行类似：只有 TAG 或者全部为空
+            loader.addRow(3, new int[]{tag}, new Object[]{"a"});
+            loader.addRow(4, new int[]{tag, s3}, new Object[]{"a", null});
+            loader.addRow(5, new int[]{tag, s2}, new Object[]{"a", 5.5});
+            assert loader.getRowNum() == 5 : "加载行数不一致：" + loader.getRowNum();
+            assert loader.getCellNum() == 10 : "非空单元格数不一致：" + loader.getCellNum();
+        }
+        assert readAll(f).equals(Arrays.asList(
+                "a,1,10,1.5,x", "a,2,20,null,null", "a,3,null,null,null", "a,4,null,null,null", "a,5,null,5.5,null"))
+                : readAll(f);
+    }
+
+    /**
+     * 测试三元组输入，相同时间戳的连续三元组组成一行
+     */
+    @Test
+    public void testTriples() throws IOException, WriteProcessException, ReadProcessException,
+            NoTableException, NoMeasurementException {
+        File f = new File("data/tsfile/sparse_loader_2.tsfile");
+        try (ITsFileWriter writer = newWriter(f);
+             SparseTabletLoader loader = new SparseTabletLoader(writer::write, tableSchema)) {
+            loader.add(1, 0, "b");
+            loader.addLong(1, 1, 10L);
+            loader.add(2, 0, "b");
+            loader.addDouble(2, 2, 2.5);
+            loader.add(2, 3, "y");
+            loader.add(3, 0, "b");
+        }
+        assert readAll(f).equals(Arrays.asList("b,1,10,null,null", "b,2,null,2.5,y", "b,3,null,null,null"))
+                : readAll(f);
+    }
+
+    /**
+     * 测试未知列名和未开始行时写值
+     */
+    @Test
+    public void testIllegalInput() throws IOException {
+        SparseTabletLoader loader = new SparseTabletLoader(tablet -> {
+        }, tableSchema);
+        try {
+            loader.columnIndex("S4");
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Unknown column: S4") : "实际报错：" + e.getMessage();
+        }
+        try {
+            loader.setLong(1, 10L);
+            assert false : "预期报错但是没有报错";
+        } catch (IllegalStateException e) {
+            assert e.getMessage().equals("beginRow must be called before setting values") : "实际报错：" + e.getMessage();
+        }
+    }
+
+    private ITsFileWriter newWriter(File f) throws IOException {
+        if (f.exists()) {
+            Files.delete(f.toPath());
+        }
+        f.getParentFile().mkdirs();
+        return new TsFileWriterBuilder().file(f).tableSchema(tableSchema).build();
+    }
+
+    /**
+     * 读出全部数据，每行格式为 Tag1,Time,S1,S2,S3
+     */
+    private List<String> readAll(File f) throws IOException, ReadProcessException, NoTableException, NoMeasurementException {
+        List<String> rows = new ArrayList<>();
+        try (ITsFileReader reader = new TsFileReaderBuilder().file(f).build();
+             ResultSet resultSet = reader.query(tableName, columnNameList, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            while (resultSet.next()) {
+                rows.add(resultSet.getString("Tag1") + "," + resultSet.getLong("Time") + ","
+                        + (resultSet.isNull("S1") ? "null" : resultSet.getLong("S1")) + ","
+                        + (resultSet.isNull("S2") ? "null" : resultSet.getDouble("S2")) + ","
+                        + (resultSet.isNull("S3") ? "null" : resultSet.getString("S3")));
+            }
+        }
+        return rows;
+    }
+}